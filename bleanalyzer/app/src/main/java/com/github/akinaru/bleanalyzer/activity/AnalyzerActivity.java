@@ -40,10 +40,13 @@ import android.widget.Toast;
 import com.github.akinaru.bleanalyzer.R;
 import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
 import com.github.akinaru.bleanalyzer.chart.DataAxisFormatter;
+import com.github.akinaru.bleanalyzer.chart.SecondAxisLabels;
 import com.github.akinaru.bleanalyzer.inter.IADListener;
 import com.github.akinaru.bleanalyzer.inter.IBtActivity;
 import com.github.akinaru.bleanalyzer.inter.IScheduledMeasureListener;
 import com.github.akinaru.bleanalyzer.service.BtAnalyzerService;
+import com.github.akinaru.bleanalyzer.service.ScanSessionManager;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
@@ -56,6 +59,7 @@ import com.github.mikephil.charting.interfaces.datasets.IBarDataSet;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.String.valueOf;
 
@@ -281,6 +285,11 @@ public class AnalyzerActivity extends BaseActivity implements IADListener, ISche
         }
     }
 
+    /**
+     * x axis labels shared by every chart rebuild
+     */
+    private final SecondAxisLabels secondLabels = new SecondAxisLabels();
+
     /**
      * update data for visualization chart
      *
@@ -291,11 +300,10 @@ public class AnalyzerActivity extends BaseActivity implements IADListener, ISche
 
         mChart.setVisibility(View.VISIBLE);
 
-        ArrayList<String> xVals = new ArrayList<String>();
-        ArrayList<BarEntry> yVals1 = new ArrayList<BarEntry>();
+        ArrayList<String> xVals = secondLabels.get(valueList.size());
+        ArrayList<BarEntry> yVals1 = new ArrayList<BarEntry>(valueList.size());
 
         for (int i = 0; i < valueList.size(); i++) {
-            xVals.add(i + "s");
             yVals1.add(new BarEntry(valueList.get(i), i));
         }
 
@@ -349,15 +357,20 @@ public class AnalyzerActivity extends BaseActivity implements IADListener, ISche
     protected void onPause() {
         super.onPause();
         if (mService != null) {
-            if (mService.isScanning()) {
+            if (mService.isScanAcquired(getScanSubscriber())) {
                 hideProgressBar();
-                mService.stopScan();
+                mService.releaseScan(getScanSubscriber());
                 nvDrawer.getMenu().findItem(R.id.scan_btn_nv).setIcon(R.drawable.ic_looks);
                 nvDrawer.getMenu().findItem(R.id.scan_btn_nv).setTitle(getResources().getString(R.string.menu_title_start_scan));
             }
         }
     }
 
+    @Override
+    protected String getScanSubscriber() {
+        return ScanSessionManager.SUBSCRIBER_ANALYZER;
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
 
@@ -390,6 +403,8 @@ public class AnalyzerActivity extends BaseActivity implements IADListener, ISche
             mService.setADListener(AnalyzerActivity.this);
             mService.setScheduledMeasureListener(AnalyzerActivity.this);
             mService.setBtDevice(btDevice);
+            //scan may already be running : only restart measurements for the tracked device
+            mService.setMeasurementTask();
             triggerNewScan();
         }
 
@@ -398,18 +413,44 @@ public class AnalyzerActivity extends BaseActivity implements IADListener, ISche
         }
     };
 
+    /**
+     * last frame received from tracked device, displayed by frameUpdateTask
+     */
+    private volatile long lastFrameTime;
+    private volatile ILongHistory lastFrameHistory;
+    private volatile int lastFrameRssi;
+
+    /**
+     * set while a frame display update is posted on UI thread : frames received meanwhile are coalesced
+     */
+    private final AtomicBoolean frameUpdatePending = new AtomicBoolean(false);
+
+    private final Runnable frameUpdateTask = new Runnable() {
+        @Override
+        public void run() {
+            frameUpdatePending.set(false);
+
+            long time = lastFrameTime;
+            ILongHistory history = lastFrameHistory;
+            int rssi = lastFrameRssi;
+
+            lastPacketReceivedTv.setText(sf.format(time));
+            totalPacketReceiveTv.setText("" + history.getTotalCount());
+            bluetoothRssi.setText("" +rssi);
+            Log.i("Rssi " , " Rssi" +btDevice.getDeviceRssi());
+        }
+    };
+
     @Override
-    public void onADframeReceived(final long time, final List<Long> history, final int rssi) {
+    public void onADframeReceived(long time, ILongHistory history, int rssi) {
 
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                lastPacketReceivedTv.setText(sf.format(time));
-                totalPacketReceiveTv.setText("" + history.size());
-                bluetoothRssi.setText("" +rssi);
-                Log.i("Rssi " , " Rssi" +btDevice.getDeviceRssi());
-            }
-        });
+        lastFrameTime = time;
+        lastFrameHistory = history;
+        lastFrameRssi = rssi;
+
+        if (frameUpdatePending.compareAndSet(false, true)) {
+            runOnUiThread(frameUpdateTask);
+        }
     }
 
     @Override
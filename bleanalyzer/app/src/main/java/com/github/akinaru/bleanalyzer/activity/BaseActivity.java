@@ -220,7 +220,7 @@ public abstract class BaseActivity extends AppCompatActivity implements IBtActiv
     @Override
     public void toggleScan() {
 
-        if (mService != null && mService.isScanning()) {
+        if (mService != null && mService.isScanAcquired(getScanSubscriber())) {
             Log.v(TAG, "scanning stopped...");
             runOnUiThread(new Runnable() {
                 @Override
@@ -231,7 +231,7 @@ public abstract class BaseActivity extends AppCompatActivity implements IBtActiv
                 }
             });
             hideProgressBar();
-            mService.stopScan();
+            mService.releaseScan(getScanSubscriber());
         } else {
             Log.v(TAG, "scanning ...");
             runOnUiThread(new Runnable() {
@@ -247,16 +247,21 @@ public abstract class BaseActivity extends AppCompatActivity implements IBtActiv
 
     }
 
+    /**
+     * name under which this activity subscribes to the shared scan
+     *
+     * @return
+     */
+    protected abstract String getScanSubscriber();
+
     /**
      * trigger a BLE scan
      */
     public void triggerNewScan() {
 
-        if (mService != null && !mService.isScanning()) {
+        if (mService != null) {
             Log.v(TAG, "start scan");
-            mService.disconnectall();
-            mService.startScan();
-
+            mService.acquireScan(getScanSubscriber());
         }
         runOnUiThread(new Runnable() {
             @Override
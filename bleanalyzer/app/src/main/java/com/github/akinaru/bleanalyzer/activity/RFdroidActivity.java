@@ -22,12 +22,10 @@ import android.Manifest;
 import android.app.ProgressDialog;
 import android.app.UiModeManager;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
@@ -36,6 +34,7 @@ import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.IBinder;
 import android.support.v7.app.ActionBarDrawerToggle;
 import android.util.Log;
@@ -52,16 +51,21 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.github.akinaru.bleanalyzer.R;
-import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEvents;
 import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IBluetoothEventListener;
 import com.github.akinaru.bleanalyzer.bluetooth.listener.IPushListener;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.SimpleBluetoothEventListener;
 import com.github.akinaru.bleanalyzer.bluetooth.rfduino.IRfduinoDevice;
 import com.github.akinaru.bleanalyzer.chart.DataAxisFormatter;
+import com.github.akinaru.bleanalyzer.chart.SecondAxisLabels;
 import com.github.akinaru.bleanalyzer.chart.DataChartType;
 import com.github.akinaru.bleanalyzer.inter.IADListener;
 import com.github.akinaru.bleanalyzer.inter.IBtActivity;
 import com.github.akinaru.bleanalyzer.inter.IScheduledMeasureListener;
 import com.github.akinaru.bleanalyzer.service.BtAnalyzerService;
+import com.github.akinaru.bleanalyzer.service.ScanSessionManager;
+import com.github.akinaru.bleanalyzer.utils.HandlerExecutor;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
 import com.github.mikephil.charting.charts.BarChart;
 import com.github.mikephil.charting.components.XAxis;
 import com.github.mikephil.charting.components.YAxis;
@@ -76,6 +80,7 @@ import org.adw.library.widgets.discreteseekbar.DiscreteSeekBar;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Rfdroid device activity
@@ -127,8 +132,6 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
         setLayout(R.layout.activity_rfdroid);
         super.onCreate(savedInstanceState);
 
-        registerReceiver(mGattUpdateReceiver, makeGattUpdateIntentFilter());
-
         if (!setupBluetooth()) {
             return;
         }
@@ -328,12 +331,6 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
 
                     final String deviceAddress = btDevice.getDeviceAddress();
 
-                    if (mService.isScanning()) {
-
-                        scanMenuItem.setIcon(R.drawable.ic_bluetooth);
-                        mService.stopScan();
-                    }
-
                     if (!mService.getConnectionList().containsKey(deviceAddress) ||
                             !mService.getConnectionList().get(deviceAddress).isConnected()) {
 
@@ -481,18 +478,22 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
     public void onStopTrackingTouch(SeekBar seekBar) {
     }
 
+    /**
+     * x axis labels shared by every chart rebuild
+     */
+    private final SecondAxisLabels secondLabels = new SecondAxisLabels();
+
     private void setData(List<Integer> valueList, String format) {
 
         mChart.setVisibility(View.VISIBLE);
 
-        ArrayList<String> xVals = new ArrayList<String>();
-        ArrayList<BarEntry> yVals1 = new ArrayList<BarEntry>();
+        int count = valueList != null ? valueList.size() : 0;
 
-        if (valueList != null) {
-            for (int i = 0; i < valueList.size(); i++) {
-                xVals.add(i + "s");
-                yVals1.add(new BarEntry(valueList.get(i), i));
-            }
+        ArrayList<String> xVals = secondLabels.get(count);
+        ArrayList<BarEntry> yVals1 = new ArrayList<BarEntry>(count);
+
+        for (int i = 0; i < count; i++) {
+            yVals1.add(new BarEntry(valueList.get(i), i));
         }
 
         String legend = getResources().getString(R.string.caption_receptin_rate);
@@ -549,7 +550,7 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
      */
     public void triggerNewScan() {
 
-        if (mService != null && !mService.isScanning()) {
+        if (mService != null && !mService.isScanAcquired(getScanSubscriber())) {
 
             if (scanImage != null)
                 scanImage.setVisibility(View.GONE);
@@ -557,20 +558,27 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
                 progressBar.setVisibility(View.VISIBLE);
 
             Log.v(TAG, "start scan");
-            mService.disconnectall();
-            mService.startScan();
+            mService.acquireScan(getScanSubscriber());
 
-        } else {
-            Toast.makeText(RFdroidActivity.this, getResources().getString(R.string.toast_already_scanning), Toast.LENGTH_SHORT).show();
+        } else if (mService != null) {
+            //advertising interval may have changed : restart measurements without restarting the radio
+            mService.setMeasurementTask();
         }
     }
 
+    @Override
+    protected String getScanSubscriber() {
+        return ScanSessionManager.SUBSCRIBER_RFDROID;
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
         Log.v(TAG, "onDestroy");
         //currentService.disconnect(deviceAddress);
-        unregisterReceiver(mGattUpdateReceiver);
+        if (mService != null) {
+            mService.getEventBus().unsubscribe(mBluetoothListener);
+        }
 
         try {
             if (mBound) {
@@ -602,36 +610,49 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
         if (mService != null) {
             mService.disconnectall();
 
-            if (mService.isScanning()) {
+            if (mService.isScanAcquired(getScanSubscriber())) {
                 progressBar.setVisibility(View.GONE);
                 scanImage.setVisibility(View.VISIBLE);
-                mService.stopScan();
+                mService.releaseScan(getScanSubscriber());
             }
         }
         closeDialog();
     }
 
-    private final BroadcastReceiver mGattUpdateReceiver = new BroadcastReceiver() {
+    /**
+     * listener receiving bluetooth events on UI thread
+     */
+    private final IBluetoothEventListener mBluetoothListener = new SimpleBluetoothEventListener() {
+
         @Override
-        public void onReceive(Context context, Intent intent) {
+        public void onScanStart() {
+            Log.v(TAG, "Scan has started");
+        }
 
-            final String action = intent.getAction();
+        @Override
+        public void onScanEnd() {
+            Log.v(TAG, "Scan has ended");
+        }
 
-            if (BluetoothEvents.BT_EVENT_SCAN_START.equals(action)) {
-                Log.v(TAG, "Scan has started");
-            } else if (BluetoothEvents.BT_EVENT_SCAN_END.equals(action)) {
-                Log.v(TAG, "Scan has ended");
-            } else if (BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED.equals(action)) {
-                Log.v(TAG, "New device has been discovered");
+        @Override
+        public void onDevicesDiscovered(List<BluetoothObject> devices) {
+
+            for (int i = 0; i < devices.size(); i++) {
 
-                BluetoothObject btDeviceTmp = BluetoothObject.parseArrayList(intent);
+                BluetoothObject btDeviceTmp = devices.get(i);
+
+                //batches also contain updates of devices already discovered
+                if (btDevice != null && btDevice.getDeviceAddress().equals(btDeviceTmp.getDeviceAddress())) {
+                    continue;
+                }
 
-                if (btDeviceTmp != null &&
-                        btDeviceTmp.getAdvertizingInterval() != -1 &&
+                if (btDeviceTmp.getAdvertizingInterval() != -1 &&
                         discreteSeekBar != null &&
                         intervalTv != null &&
                         globalReceptionRateTv != null) {
 
+                    Log.v(TAG, "New device has been discovered");
+
                     btDevice = btDeviceTmp;
 
                     if (deviceFoundDialog != null)
@@ -642,48 +663,44 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
                     intervalTv.setText(getResources().getString(R.string.interval) + " - " + btDevice.getAdvertizingInterval() + "ms");
                     globalReceptionRateTv.setText("0%");
                 }
+            }
+        }
 
-            } else if (BluetoothEvents.BT_EVENT_DEVICE_DISCONNECTED.equals(action)) {
-
-                Log.v(TAG, "Device disconnected");
-
-                BluetoothObject btDevice = BluetoothObject.parseArrayList(intent);
-
-                if (btDevice != null) {
-                    closeDialog();
-                }
-
-            } else if (BluetoothEvents.BT_EVENT_DEVICE_CONNECTED.equals(action)) {
+        @Override
+        public void onDeviceDisconnected(BluetoothObject btDevice) {
+            Log.v(TAG, "Device disconnected");
+            closeDialog();
+        }
 
-                Log.v(TAG, "device connected");
+        @Override
+        public void onDeviceConnected(BluetoothObject btDevice) {
 
-                BluetoothObject btDevice = BluetoothObject.parseArrayList(intent);
+            Log.v(TAG, "device connected");
 
-                if (btDevice != null && !btDevice.getDeviceAddress().equals("")) {
+            if (btDevice != null && !btDevice.getDeviceAddress().equals("")) {
 
-                    final String deviceAddress = btDevice.getDeviceAddress();
+                final String deviceAddress = btDevice.getDeviceAddress();
 
 
-                    if (mService.getConnectionList().get(deviceAddress).getDevice() instanceof IRfduinoDevice) {
+                if (mService.getConnectionList().get(deviceAddress).getDevice() instanceof IRfduinoDevice) {
 
-                        IRfduinoDevice device = (IRfduinoDevice) mService.getConnectionList().get(deviceAddress).getDevice();
+                    IRfduinoDevice device = (IRfduinoDevice) mService.getConnectionList().get(deviceAddress).getDevice();
 
-                        device.setAdvertisingInterval(adInterval, new IPushListener() {
-                            @Override
-                            public void onPushFailure() {
-                                Log.v(TAG, "onPushFailure");
-                                mService.disconnect(deviceAddress);
-                                refreshViewOnError();
-                            }
+                    device.setAdvertisingInterval(adInterval, new IPushListener() {
+                        @Override
+                        public void onPushFailure() {
+                            Log.v(TAG, "onPushFailure");
+                            mService.disconnect(deviceAddress);
+                            refreshViewOnError();
+                        }
 
-                            @Override
-                            public void onPushSuccess() {
-                                Log.v(TAG, "onPushSuccess");
-                                mService.disconnect(deviceAddress);
-                                refreshViewOnSucccess();
-                            }
-                        });
-                    }
+                        @Override
+                        public void onPushSuccess() {
+                            Log.v(TAG, "onPushSuccess");
+                            mService.disconnect(deviceAddress);
+                            refreshViewOnSucccess();
+                        }
+                    });
                 }
             }
         }
@@ -754,6 +771,7 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
             Log.v(TAG, "Connected to service");
 
             mService = ((BtAnalyzerService.LocalBinder) service).getService();
+            mService.getEventBus().subscribe(mBluetoothListener, new HandlerExecutor(new Handler(Looper.getMainLooper())));
             mService.clearScanningList();
             mService.setADListener(RFdroidActivity.this);
             mService.setScheduledMeasureListener(RFdroidActivity.this);
@@ -773,35 +791,43 @@ public class RFdroidActivity extends BaseActivity implements SeekBar.OnSeekBarCh
     };
 
     /**
-     * add filter to intent to receive notification from bluetooth service
-     *
-     * @return intent filter
+     * last frame received from tracked device, displayed by frameUpdateTask
      */
-    private static IntentFilter makeGattUpdateIntentFilter() {
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_SCAN_START);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_SCAN_END);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_DEVICE_CONNECTED);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_DEVICE_DISCONNECTED);
-        return intentFilter;
-    }
+    private volatile long lastFrameTime;
+    private volatile ILongHistory lastFrameHistory;
 
-    @Override
-    public void onADframeReceived(final long time, final List<Long> history, int rssi) {
+    /**
+     * set while a frame display update is posted on UI thread : frames received meanwhile are coalesced
+     */
+    private final AtomicBoolean frameUpdatePending = new AtomicBoolean(false);
 
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                lastPacketReceivedTv.setText(sf.format(time));
-                if (btDevice != null && history.size() > 0) {
-                    totalPacketReceiveTv.setText("" + history.size() + " / " + ((time - history.get(0)) / btDevice.getAdvertizingInterval()));
-                } else {
-                    totalPacketReceiveTv.setText("" + history.size());
-                    btDevice.getDeviceRssi();
-                }
+    private final Runnable frameUpdateTask = new Runnable() {
+        @Override
+        public void run() {
+            frameUpdatePending.set(false);
+
+            long time = lastFrameTime;
+            ILongHistory history = lastFrameHistory;
+
+            lastPacketReceivedTv.setText(sf.format(time));
+            if (btDevice != null && history.getTotalCount() > 0) {
+                totalPacketReceiveTv.setText("" + history.getTotalCount() + " / " + ((time - history.getFirstTimestamp()) / btDevice.getAdvertizingInterval()));
+            } else {
+                totalPacketReceiveTv.setText("" + history.getTotalCount());
+                btDevice.getDeviceRssi();
             }
-        });
+        }
+    };
+
+    @Override
+    public void onADframeReceived(long time, ILongHistory history, int rssi) {
+
+        lastFrameTime = time;
+        lastFrameHistory = history;
+
+        if (frameUpdatePending.compareAndSet(false, true)) {
+            runOnUiThread(frameUpdateTask);
+        }
     }
 
     @Override
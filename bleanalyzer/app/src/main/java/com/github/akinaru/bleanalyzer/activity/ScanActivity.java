@@ -20,17 +20,15 @@ package com.github.akinaru.bleanalyzer.activity;
 
 import android.Manifest;
 import android.bluetooth.BluetoothDevice;
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
@@ -41,15 +39,18 @@ import android.widget.FrameLayout;
 import android.widget.Toast;
 
 import com.github.akinaru.bleanalyzer.R;
+import com.github.akinaru.bleanalyzer.adapter.ScanDeviceModel;
 import com.github.akinaru.bleanalyzer.adapter.ScanItemArrayAdapter;
-import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEvents;
 import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IBluetoothEventListener;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.SimpleBluetoothEventListener;
 import com.github.akinaru.bleanalyzer.common.SimpleDividerItemDecoration;
 import com.github.akinaru.bleanalyzer.inter.IBtActivity;
 import com.github.akinaru.bleanalyzer.inter.IViewHolderClickListener;
 import com.github.akinaru.bleanalyzer.service.BtAnalyzerService;
+import com.github.akinaru.bleanalyzer.service.ScanSessionManager;
+import com.github.akinaru.bleanalyzer.utils.HandlerExecutor;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -77,7 +78,7 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
     /**
      * list of filtered HCI packet (this is cleared when filter is cancelled)
      */
-    private List<BluetoothObject> scanList = new ArrayList<>();
+    private ScanDeviceModel scanList = new ScanDeviceModel();
 
     /**
      * swipe refresh layout used to make refresh animation when scrolling top of recyclerview
@@ -101,16 +102,11 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
      */
     private boolean mFirstPacketReceived = true;
 
-    private Handler handler = null;
-
     protected void onCreate(Bundle savedInstanceState) {
 
         setLayout(R.layout.activity_scan);
         super.onCreate(savedInstanceState);
 
-        //register bluetooth event broadcast receiver
-        registerReceiver(mBluetoothReceiver, makeGattUpdateIntentFilter());
-
         if (!setupBluetooth()) {
             return;
         }
@@ -118,25 +114,6 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
         //setup recyclerview
         scanningRecyclerView = (RecyclerView) findViewById(R.id.scan_list);
 
-        scanList = new ArrayList<>();
-
-        Runnable runnable = null;
-        handler = new Handler();
-        runnable = new Runnable() {
-            @Override
-            public void run() {
-                if (mService != null)
-                    mService.clearScanningList();
-
-                scanList.clear();
-                scanningAdapter.notifyDataSetChanged();
-
-                handler.postDelayed(this, 4000);
-            }
-        };
-        handler.post(runnable);
-
-
         scanningAdapter = new ScanItemArrayAdapter(ScanActivity.this, scanList, new IViewHolderClickListener() {
             @Override
             public void onClick(View v) {
@@ -145,12 +122,7 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
 
                 BluetoothObject btDevice = scanList.get(index);
 
-                if (mService.getBtDevice() == null || (btDevice != null && !btDevice.getDeviceAddress().equals(mService.getBtDevice().getDeviceAddress()))) {
-                    if (!mService.isScanning())
-                        triggerNewScan();
-                } else {
-                    mService.stopScan();
-                }
+                //scan is kept running : analyzer acquires it before this activity releases it
                 //launch packet description activity
                 Intent intent = new Intent(ScanActivity.this, AnalyzerActivity.class);
                 intent.putExtra("deviceAddress", btDevice.getDeviceAddress());
@@ -183,12 +155,11 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
                     @Override
                     public void run() {
                         if (mService != null)
-                            mService.clearScanningList();
+                            mService.refreshScan();
                         mFirstPacketReceived = true;
                         mDisplayFrame.setVisibility(View.GONE);
                         mWaitingFrame.setVisibility(View.VISIBLE);
                         scanList.clear();
-                        scanningAdapter.notifyDataSetChanged();
                         mSwipeRefreshLayout.setRefreshing(false);
                     }
                 });
@@ -251,24 +222,24 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
     }
 
 
+    @Override
+    protected String getScanSubscriber() {
+        return ScanSessionManager.SUBSCRIBER_SCAN_LIST;
+    }
+
     /**
      * trigger a BLE scan
      */
     public void triggerNewScan() {
 
-        if (mService != null && !mService.isScanning()) {
+        if (mService != null) {
             Log.v(TAG, "start scan");
-            mService.disconnectall();
-            mService.startScan();
-
-            scanningAdapter.notifyDataSetChanged();
+            mService.acquireScan(getScanSubscriber());
         }
         runOnUiThread(new Runnable() {
             @Override
             public void run() {
                 showProgressBar();
-
-                scanningAdapter.notifyDataSetChanged();
             }
         });
     }
@@ -277,7 +248,9 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
     protected void onDestroy() {
         super.onDestroy();
         Log.v(TAG, "onDestroy");
-        unregisterReceiver(mBluetoothReceiver);
+        if (mService != null) {
+            mService.getEventBus().unsubscribe(mBluetoothListener);
+        }
         try {
             if (mBound) {
                 unbindService(mServiceConnection);
@@ -299,60 +272,49 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
         super.onPause();
 
         if (mService != null) {
-            if (mService.isScanning()) {
-                hideProgressBar();
-                mService.stopScan();
-            }
+            hideProgressBar();
+            mService.releaseScan(getScanSubscriber());
         }
     }
 
     /**
-     * broadcast receiver to receive bluetooth events
+     * listener receiving bluetooth events on UI thread
      */
-    private final BroadcastReceiver mBluetoothReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
+    private final IBluetoothEventListener mBluetoothListener = new SimpleBluetoothEventListener() {
 
-            final String action = intent.getAction();
-
-            if (BluetoothEvents.BT_EVENT_SCAN_START.equals(action)) {
-                Log.v(TAG, "Scan has started");
-            } else if (BluetoothEvents.BT_EVENT_SCAN_END.equals(action)) {
-                Log.v(TAG, "Scan has ended");
-            } else if (BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED.equals(action)) {
-                Log.v(TAG, "New device has been discovered");
-                scanningAdapter.notifyDataSetChanged();
+        @Override
+        public void onScanStart() {
+            Log.v(TAG, "Scan has started");
+        }
 
-                final BluetoothObject btDeviceTmp = BluetoothObject.parseArrayList(intent);
+        @Override
+        public void onScanEnd() {
+            Log.v(TAG, "Scan has ended");
+        }
 
-                if (btDeviceTmp != null) {
+        @Override
+        public void onDevicesDiscovered(List<BluetoothObject> devices) {
+            Log.v(TAG, devices.size() + " devices discovered or updated");
+
+            if (mFirstPacketReceived) {
+                mFirstPacketReceived = false;
+                //display recyclerview + swipe refresh view
+                mWaitingFrame.setVisibility(View.GONE);
+                mDisplayFrame.setVisibility(View.VISIBLE);
+            }
+            scanList.putAll(devices);
+        }
 
-                    runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (mFirstPacketReceived) {
-                                mFirstPacketReceived = false;
-                                //display recyclerview + swipe refresh view
-                                mWaitingFrame.setVisibility(View.GONE);
-                                mDisplayFrame.setVisibility(View.VISIBLE);
-                            }
-                            if (scanningAdapter != null) {
-                                for (int i = 0; i < scanList.size(); i++) {
-                                    if (btDeviceTmp.getDeviceAddress().equals(scanList.get(i).getDeviceAddress()))
-                                        return;
-                                }
-                                scanList.add(btDeviceTmp);
-                                scanningAdapter.notifyDataSetChanged();
-                            }
-                        }
-                    });
-                }
+        @Override
+        public void onDevicesLost(List<BluetoothObject> devices) {
+            Log.v(TAG, devices.size() + " devices lost");
 
-            } else if (BluetoothEvents.BT_EVENT_DEVICE_DISCONNECTED.equals(action)) {
-                Log.v(TAG, "Device disconnected");
+            scanList.removeAll(devices);
+        }
 
-            } else if (BluetoothEvents.BT_EVENT_DEVICE_CONNECTED.equals(action)) {
-            }
+        @Override
+        public void onDeviceDisconnected(BluetoothObject device) {
+            Log.v(TAG, "Device disconnected");
         }
     };
 
@@ -366,8 +328,9 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
 
             Log.v(TAG, "connected to service");
             mService = ((BtAnalyzerService.LocalBinder) service).getService();
+            mService.getEventBus().subscribe(mBluetoothListener, new HandlerExecutor(new Handler(Looper.getMainLooper())));
             mService.setSelectionningDevice(true);
-            mService.clearScanningList();
+            mService.refreshScan();
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
@@ -384,20 +347,4 @@ public class ScanActivity extends BaseActivity implements IBtActivity {
         public void onServiceDisconnected(ComponentName name) {
         }
     };
-
-    /**
-     * add filter to intent to receive notification from bluetooth service
-     *
-     * @return intent filter
-     */
-    private static IntentFilter makeGattUpdateIntentFilter() {
-        Log.i("start " , "starting ");
-        IntentFilter intentFilter = new IntentFilter();
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_SCAN_START);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_SCAN_END);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_DEVICE_CONNECTED);
-        intentFilter.addAction(BluetoothEvents.BT_EVENT_DEVICE_DISCONNECTED);
-        return intentFilter;
-    }
 }
\ No newline at end of file
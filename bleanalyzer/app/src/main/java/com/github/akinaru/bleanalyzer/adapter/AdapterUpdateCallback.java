@@ -0,0 +1,56 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.adapter;
+
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Forward list updates to a RecyclerView adapter as granular item notifications
+ *
+ * @author Bertrand Martel
+ */
+public class AdapterUpdateCallback implements ListUpdateCallback {
+
+    private final RecyclerView.Adapter<?> adapter;
+
+    public AdapterUpdateCallback(RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        adapter.notifyItemRangeInserted(position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        adapter.notifyItemRangeRemoved(position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        adapter.notifyItemMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        adapter.notifyItemRangeChanged(position, count, payload);
+    }
+}
@@ -39,7 +39,6 @@ public class OpenSourceItemAdapter extends BaseAdapter {
             {"DiscreteSeekBar", "https://github.com/AnderWeb/discreteSeekBar"},
             {"MPAndroidChart",
                     "https://github.com/PhilJay/MPAndroidChart"},
-            {"nv-bluetooth", "https://github.com/TakahikoKawasaki/nv-bluetooth"},
             {"RFDuino", "https://github.com/RFduino/RFduino"},
             {"rfduino-makefile", "https://github.com/bertrandmartel/rfduino-makefile"}
     };
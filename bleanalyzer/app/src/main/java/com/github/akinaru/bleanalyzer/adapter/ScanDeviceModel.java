@@ -0,0 +1,211 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.adapter;
+
+import android.support.v7.util.BatchingListUpdateCallback;
+import android.support.v7.util.ListUpdateCallback;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.utils.IndexedTreeMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Scanned devices ordered by address and indexed by address
+ * <p/>
+ * insertion, update, removal, lookup and position of a device are O(log n). Devices discovered or lost during a
+ * discovery window are applied in address order so that changes of adjacent rows are reported as one range
+ * notification and only affected rows are rebound
+ *
+ * @author Bertrand Martel
+ */
+public class ScanDeviceModel {
+
+    private final static Comparator<BluetoothObject> ADDRESS_ORDER = new Comparator<BluetoothObject>() {
+        @Override
+        public int compare(BluetoothObject device1, BluetoothObject device2) {
+            return device1.getDeviceAddress().compareTo(device2.getDeviceAddress());
+        }
+    };
+
+    /**
+     * devices by address
+     */
+    private final IndexedTreeMap<String, BluetoothObject> devices = new IndexedTreeMap<>();
+
+    /**
+     * devices of current batch sorted by address
+     */
+    private final ArrayList<BluetoothObject> batch = new ArrayList<>();
+
+    private BatchingListUpdateCallback updates = new BatchingListUpdateCallback(new NoOpUpdateCallback());
+
+    /**
+     * set callback notified of item changes (usually forwarding to adapter)
+     *
+     * @param callback
+     */
+    public void setUpdateCallback(ListUpdateCallback callback) {
+        updates = new BatchingListUpdateCallback((callback != null) ? callback : new NoOpUpdateCallback());
+    }
+
+    public int size() {
+        return devices.size();
+    }
+
+    public BluetoothObject get(int position) {
+        return devices.getAt(position);
+    }
+
+    public BluetoothObject get(String deviceAddress) {
+        return devices.get(deviceAddress);
+    }
+
+    /**
+     * position of a device
+     *
+     * @param deviceAddress device address
+     * @return position or -1 if device is not in model
+     */
+    public int indexOf(String deviceAddress) {
+        return devices.indexOf(deviceAddress);
+    }
+
+    /**
+     * insert a new device or update an existing one (name, rssi, advertising interval)
+     *
+     * @param device new or updated device
+     */
+    public void put(BluetoothObject device) {
+        putDevice(device);
+        updates.dispatchLastEvent();
+    }
+
+    /**
+     * insert or update a batch of devices
+     *
+     * @param devices new or updated devices
+     */
+    public void putAll(List<BluetoothObject> devices) {
+        sortBatch(devices);
+        for (int i = 0; i < batch.size(); i++) {
+            putDevice(batch.get(i));
+        }
+        batch.clear();
+        updates.dispatchLastEvent();
+    }
+
+    /**
+     * remove a device
+     *
+     * @param deviceAddress device address
+     * @return true if device was in model
+     */
+    public boolean remove(String deviceAddress) {
+        boolean removed = removeDevice(deviceAddress);
+        updates.dispatchLastEvent();
+        return removed;
+    }
+
+    /**
+     * remove a batch of devices
+     *
+     * @param devices devices to remove, those not in model are ignored
+     */
+    public void removeAll(List<BluetoothObject> devices) {
+        sortBatch(devices);
+        for (int i = 0; i < batch.size(); i++) {
+            removeDevice(batch.get(i).getDeviceAddress());
+        }
+        batch.clear();
+        updates.dispatchLastEvent();
+    }
+
+    /**
+     * remove all devices
+     */
+    public void clear() {
+        int count = devices.size();
+        if (count > 0) {
+            devices.clear();
+            updates.onRemoved(0, count);
+            updates.dispatchLastEvent();
+        }
+    }
+
+    private void sortBatch(List<BluetoothObject> devices) {
+        batch.clear();
+        batch.addAll(devices);
+        Collections.sort(batch, ADDRESS_ORDER);
+    }
+
+    private void putDevice(BluetoothObject device) {
+
+        BluetoothObject previous = devices.put(device.getDeviceAddress(), device);
+
+        if (previous == null) {
+            updates.onInserted(devices.indexOf(device.getDeviceAddress()), 1);
+        } else if (!sameContent(previous, device)) {
+            updates.onChanged(devices.indexOf(device.getDeviceAddress()), 1, null);
+        }
+    }
+
+    private boolean removeDevice(String deviceAddress) {
+
+        int position = devices.indexOf(deviceAddress);
+
+        if (position < 0) {
+            return false;
+        }
+        devices.remove(deviceAddress);
+        updates.onRemoved(position, 1);
+        return true;
+    }
+
+    private static boolean sameContent(BluetoothObject oldItem, BluetoothObject newItem) {
+        return oldItem.getDeviceRssi() == newItem.getDeviceRssi() &&
+                oldItem.getAdvertizingInterval() == newItem.getAdvertizingInterval() &&
+                oldItem.getDeviceName().equals(newItem.getDeviceName());
+    }
+
+    /**
+     * callback used when no one listens to model changes
+     */
+    private static class NoOpUpdateCallback implements ListUpdateCallback {
+
+        @Override
+        public void onInserted(int position, int count) {
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+        }
+    }
+}
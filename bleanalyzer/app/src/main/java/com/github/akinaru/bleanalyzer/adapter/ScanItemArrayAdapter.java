@@ -30,9 +30,6 @@ import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
 import com.github.akinaru.bleanalyzer.inter.IADListener;
 import com.github.akinaru.bleanalyzer.inter.IViewHolderClickListener;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import static java.lang.String.valueOf;
 
 /**
@@ -43,19 +40,19 @@ import static java.lang.String.valueOf;
 public class ScanItemArrayAdapter extends RecyclerView.Adapter<ScanItemArrayAdapter.ViewHolder> {
 
     /**
-     * list of devices
+     * scanned devices
      */
-    private List<BluetoothObject> scanningList = new ArrayList<>();
+    private ScanDeviceModel scanningList;
 
     private Context mContext;
 
     private IViewHolderClickListener mListener;
 
-    public ScanItemArrayAdapter(Context context, List<BluetoothObject> objects, IViewHolderClickListener listener) {
+    public ScanItemArrayAdapter(Context context, ScanDeviceModel objects, IViewHolderClickListener listener) {
         this.mContext = context;
         this.scanningList = objects;
         this.mListener = listener;
-
+        this.scanningList.setUpdateCallback(new AdapterUpdateCallback(this));
     }
 
 
@@ -69,16 +66,9 @@ public class ScanItemArrayAdapter extends RecyclerView.Adapter<ScanItemArrayAdap
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
         BluetoothObject item = scanningList.get(position);
-        if(filterDevice(item.getDeviceName())) {
-            holder.deviceName.setText(item.getDeviceName());
-            holder.deviceAddress.setText(item.getDeviceAddress());
-            holder.deviceRssi.setText(valueOf(item.getDeviceRssi()));
-
-        }
-    }
-
-    private boolean filterDevice(String name){
-        return name.startsWith("DK_IoT") || name.startsWith("KX_IoT");
+        holder.deviceName.setText(item.getDeviceName());
+        holder.deviceAddress.setText(item.getDeviceAddress());
+        holder.deviceRssi.setText(valueOf(item.getDeviceRssi()));
     }
 
     @Override
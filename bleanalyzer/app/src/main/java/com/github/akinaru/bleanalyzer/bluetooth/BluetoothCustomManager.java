@@ -21,47 +21,35 @@ package com.github.akinaru.bleanalyzer.bluetooth;
 import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothManager;
 import android.content.Context;
-import android.content.Intent;
 import android.os.Handler;
 import android.util.Log;
 
 import com.github.akinaru.bleanalyzer.bluetooth.connection.BluetoothDeviceConn;
+import com.github.akinaru.bleanalyzer.bluetooth.connection.DeviceInitExecutor;
 import com.github.akinaru.bleanalyzer.bluetooth.connection.IBluetoothDeviceConn;
-import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEvents;
-import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
-import com.github.akinaru.bleanalyzer.bluetooth.listener.IPushListener;
-import com.github.akinaru.bleanalyzer.constant.JsonConstants;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+import com.github.akinaru.bleanalyzer.bluetooth.rfduino.RfduinoDevice;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.IScanSourceFactory;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.IScannerBackend;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.ScanConfig;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.ScannerBackendFactory;
+import com.github.akinaru.bleanalyzer.capture.CaptureWriter;
 import com.github.akinaru.bleanalyzer.inter.IADListener;
 import com.github.akinaru.bleanalyzer.inter.IMeasurement;
-import com.github.akinaru.bleanalyzer.utils.ManualResetEvent;
-import com.neovisionaries.bluetooth.ble.advertising.ADManufacturerSpecific;
-import com.neovisionaries.bluetooth.ble.advertising.ADPayloadParser;
-import com.neovisionaries.bluetooth.ble.advertising.ADStructure;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import static java.lang.String.valueOf;
-
 
 /**
  * Bluetooth android API processing : contains all android bluetooth api
@@ -74,31 +62,6 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
 
     private final static String TAG = BluetoothCustomManager.class.getName();
 
-    // set init pool size
-    private static final int CORE_POOL_SIZE = 1;
-
-    // set max pool size
-    private static final int MAXIMUM_POOL_SIZE = 1;
-
-    // Sets the amount of time an idle thread will wait for a task before terminating
-    private static final int KEEP_ALIVE_TIME = 5;
-
-    // set time unit in seconds
-    private static final TimeUnit KEEP_ALIVE_TIME_UNIT = TimeUnit.SECONDS;
-
-    LinkedBlockingQueue gattWorkingQueue = new LinkedBlockingQueue<Runnable>();
-
-    /*
-     * Creates a new pool of Thread objects for the download work queue
-     */
-    ThreadPoolExecutor gattThreadPool = new ThreadPoolExecutor(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE,
-            KEEP_ALIVE_TIME, KEEP_ALIVE_TIME_UNIT, gattWorkingQueue);
-
-    /**
-     * timeout for waiting for response frame from the device
-     */
-    private final static int BT_TIMEOUT = 2000;
-
     /**
      * set bluetooth scan period
      */
@@ -109,13 +72,6 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
      */
     private HashMap<String, IBluetoothDeviceConn> bluetoothConnectionList = new HashMap<>();
 
-    private HashMap<String, BluetoothDevice> scanningList = new HashMap<>();
-
-    /**
-     * event manager used to block / release process
-     */
-    private ManualResetEvent eventManager = new ManualResetEvent(false);
-
     /**
      * Bluetooth adapter
      */
@@ -132,18 +88,62 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
     private volatile boolean scanning = false;
 
     /**
-     * Callback for Bluetooth adapter
-     * This will be called when a bluetooth device has been discovered
+     * radio scan backend (BluetoothLeScanner or legacy LeScanCallback)
+     */
+    private IScannerBackend scannerBackend = null;
+
+    private volatile ScanConfig scanConfig = ScanConfig.DEFAULT;
+
+    /**
+     * factory of scan source replacing the radio scanner, null to scan with the radio
      */
-    private BluetoothAdapter.LeScanCallback scanCallback = null;
+    private IScanSourceFactory scanSourceFactory = null;
+
+    /**
+     * receive frames from scanner backend
+     */
+    private final IScanFrameListener scanFrameListener = new IScanFrameListener() {
+
+        @Override
+        public void onScanFrame(BluetoothDevice device, int rssi, byte[] scanRecord, long ageMillis) {
+            dispatcher.onFrame(device.getAddress(), device, null, rssi, scanRecord, ageMillis);
+        }
+
+        @Override
+        public void onScanFrame(String address, String name, int rssi, byte[] scanRecord, long ageMillis) {
+            dispatcher.onFrame(address, null, name, rssi, scanRecord, ageMillis);
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            onScannerFailure(errorCode);
+        }
+    };
 
     private Context context = null;
-    private IADListener adListener = null;
 
-    private IMeasurement measurement = null;
+    /**
+     * bus publishing scan and connection events
+     */
+    private final BluetoothEventBus eventBus = new BluetoothEventBus();
 
     private ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
 
+    /**
+     * shared executor running device initializations after service discovery
+     */
+    private final DeviceInitExecutor deviceInitExecutor = new DeviceInitExecutor(DeviceInitExecutor.DEFAULT_POOL_SIZE);
+
+    /**
+     * device drivers selected by discovered service
+     */
+    private final DeviceDriverRegistry driverRegistry = new DeviceDriverRegistry();
+
+    /**
+     * frame dispatch to measurement and discovery events
+     */
+    private final ScanDispatcher<BluetoothDevice> dispatcher;
+
     private HashMap<String, ScheduledFuture<?>> waitingForDisconnectionList = new HashMap<>();
 
     /**
@@ -151,7 +151,14 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
      */
     public BluetoothCustomManager(Context context, IMeasurement measurement) {
         this.context = context;
-        this.measurement = measurement;
+        this.dispatcher = new ScanDispatcher<>(measurement, eventBus, executor, new IDeviceNameResolver<BluetoothDevice>() {
+            @Override
+            public String getName(BluetoothDevice device) {
+                return device.getName();
+            }
+        });
+
+        driverRegistry.register(RfduinoDevice.RFDUINO_SERVICE, RfduinoDevice.factory());
     }
 
 
@@ -167,141 +174,169 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
         mHandler = null;
         mHandler = new Handler();
 
-        scanCallback = new BluetoothAdapter.LeScanCallback() {
-
-            @Override
-            public void onLeScan(BluetoothDevice device, int rssi, final byte[] scanRecord) {
-
-                if (device.getAddress() != null &&
-                        device.getName() != null) {
-
-                    if (device.getName().equals("RFdroid")) {
-                        dispatchRFdroid(device, rssi, scanRecord);
-                    } else {
-                        dispatchBtDevices(device, rssi, scanRecord);
-                    }
-                }
-            }
-        };
+        if (scanSourceFactory == null) {
+            scannerBackend = createBackend();
+        }
     }
 
-    private void dispatchRFdroid(BluetoothDevice device, int rssi, final byte[] scanRecord) {
-
-        if (scanningList.containsKey(device.getAddress())) {
-
-            if (adListener != null && measurement.getBtDevice() != null && measurement.getBtDevice().getDeviceAddress().equals(device.getAddress())) {
-
-                long ts = new Date().getTime();
-                measurement.getHistoryList().add(ts);
-                adListener.onADframeReceived(ts, measurement.getHistoryList(), rssi);
-            }
+    /**
+     * create radio scanner, or scan source if a scan source factory is set
+     *
+     * @return
+     */
+    private IScannerBackend createBackend() {
+        IScannerBackend backend;
+        if (scanSourceFactory != null) {
+            backend = scanSourceFactory.create(scanFrameListener);
         } else {
-            Log.i(TAG, "found a RFdroid");
-
-            List<ADStructure> structures = ADPayloadParser.getInstance().parse(scanRecord);
-
-            int advInterval = -1;
-
-            for (ADStructure structure : structures) {
-
-                if (structure instanceof ADManufacturerSpecific) {
-
-                    ADManufacturerSpecific data = (ADManufacturerSpecific) structure;
-
-                    if (data.getData().length == 9) {
+            backend = ScannerBackendFactory.create(mBluetoothAdapter, scanConfig, scanFrameListener);
+        }
+        Log.i(TAG, "using " + backend.getName() + " scanner");
+        return backend;
+    }
 
-                        byte[] name = new byte[7];
-                        System.arraycopy(data.getData(), 0, name, 0, 7);
+    /**
+     * replace radio scanner by another scan source (simulation, replay). Scan source is restarted if scanning
+     *
+     * @param factory scan source factory or null to scan with the radio again
+     */
+    public synchronized void setScanSourceFactory(IScanSourceFactory factory) {
 
-                        String nameStr = new String(name);
-                        if (nameStr.equals("RFdroid")) {
-                            advInterval = (data.getData()[7] << 8) + (data.getData()[8] & 0xFF);
-                            Log.i(TAG, "current scan interval : " + advInterval);
-                        }
-                    }
-                }
-            }
+        scanSourceFactory = factory;
 
-            if (advInterval != -1) {
+        if (factory == null && mBluetoothAdapter == null) {
+            return;
+        }
+        replaceBackend();
+    }
 
-                scanningList.put(device.getAddress(), device);
+    /**
+     * recreate scanner, restarting it if it was scanning
+     */
+    private void replaceBackend() {
+        boolean restart = scannerBackend != null && scannerBackend.isScanning();
+        if (restart) {
+            scannerBackend.stop();
+        }
+        scannerBackend = createBackend();
+        scannerBackend.setDeviceFilter(dispatcher.getDeviceFilter());
+        if (restart) {
+            scannerBackend.start();
+        }
+    }
 
-                if (!measurement.isSelectionningDevice())
-                    measurement.setBtDevice(new BluetoothObject(device.getAddress(), device.getName(), (int) (advInterval * 0.625), (short) rssi));
+    /**
+     * stop scan when scanner could not start, even after falling back to legacy scanner
+     *
+     * @param errorCode scan failure code
+     */
+    private synchronized void onScannerFailure(int errorCode) {
 
-                try {
-                    JSONObject object = new JSONObject();
-                    object.put(JsonConstants.BT_ADDRESS, device.getAddress());
-                    object.put(JsonConstants.BT_DEVICE_NAME, device.getName());
-                    object.put(JsonConstants.BT_ADVERTISING_INTERVAL, (int) (advInterval * 0.625));
+        Log.e(TAG, "scan failed with error " + errorCode);
+        if (scanning) {
+            stopScan();
+        }
+    }
 
-                    ArrayList<String> deviceInfo = new ArrayList<>();
-                    deviceInfo.add(object.toString());
+    /**
+     * set scan configuration. Scanner is recreated, and restarted if scanning
+     *
+     * @param config scan configuration
+     */
+    public synchronized void setScanConfig(ScanConfig config) {
 
-                    broadcastUpdateStringList(BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED, deviceInfo);
+        scanConfig = config;
 
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-            }
+        if (mBluetoothAdapter == null || scanSourceFactory != null) {
+            return;
         }
+        replaceBackend();
+    }
 
+    public ScanConfig getScanConfig() {
+        return scanConfig;
     }
 
-    private void dispatchBtDevices(BluetoothDevice device, int rssi, final byte[] scanRecord) {
+    /**
+     * record every scanned frame, before any filtering, to a capture log
+     *
+     * @param writer capture writer or null to stop recording
+     */
+    public void setCaptureWriter(CaptureWriter writer) {
+        dispatcher.setCaptureWriter(writer);
+    }
 
-        if (scanningList.containsKey(device.getAddress())) {
+    public CaptureWriter getCaptureWriter() {
+        return dispatcher.getCaptureWriter();
+    }
 
-            if (adListener != null && measurement.getBtDevice() != null && measurement.getBtDevice().getDeviceAddress().equals(device.getAddress())) {
+    /**
+     * clear list adapter (usually before rescanning)
+     */
+    public void clearScanningList() {
+        dispatcher.clear();
+    }
 
-                long ts = new Date().getTime();
-                measurement.getHistoryList().add(ts);
-                adListener.onADframeReceived(ts, measurement.getHistoryList(), rssi);
+    /**
+     * set filter applied to scanned devices before any dispatch. Devices already discovered which do not match the new
+     * filter expire after their time to live
+     *
+     * @param filter device filter
+     */
+    public synchronized void setDeviceFilter(DeviceFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter must not be null, use DeviceFilter.ACCEPT_ALL");
+        }
+        dispatcher.setDeviceFilter(filter);
+
+        if (scannerBackend != null) {
+            scannerBackend.setDeviceFilter(filter);
+            //controller filters are only applied when scan starts
+            if (scanSourceFactory == null && scanConfig.isHardwareFilters() && scannerBackend.isScanning()) {
+                scannerBackend.stop();
+                scannerBackend.start();
             }
-        } else {
-
-            Log.i(TAG, "found a new Bluetooth device : " + device.getName() + " : " + device.getAddress() +" : " + " device Rssi " +rssi );
-
-            scanningList.put(device.getAddress(), device);
-
-            try {
-                JSONObject object = new JSONObject();
-                object.put(JsonConstants.BT_ADDRESS, device.getAddress());
-                object.put(JsonConstants.BT_DEVICE_NAME, device.getName());
-                object.put(JsonConstants.BT_ADVERTISING_INTERVAL, -1);
-                object.put(JsonConstants.BT_DEVICE_RSSI, rssi);
-
-                ArrayList<String> deviceInfo = new ArrayList<>();
-                deviceInfo.add(object.toString());
+        }
+    }
 
-                broadcastUpdateStringList(BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED, deviceInfo);
+    public DeviceFilter getDeviceFilter() {
+        return dispatcher.getDeviceFilter();
+    }
 
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * set time to live of a device not seen anymore, after which it is removed from scanning list
+     *
+     * @param ttlMillis time to live in milliseconds
+     */
+    public void setDeviceTimeToLive(int ttlMillis) {
+        dispatcher.setDeviceTimeToLive(ttlMillis);
     }
 
     /**
-     * clear list adapter (usually before rescanning)
+     * set window over which device discoveries and updates are batched
+     *
+     * @param windowMillis batch window in milliseconds
      */
-    public void clearScanningList() {
-        scanningList.clear();
+    public void setDiscoveryBatchWindow(int windowMillis) {
+        dispatcher.setDiscoveryBatchWindow(windowMillis);
     }
 
     /**
      * Scan new Bluetooth device
      */
     @SuppressLint("NewApi")
-    public boolean scanLeDevice() {
+    public synchronized boolean scanLeDevice() {
 
         if (!scanning) {
 
-            broadcastUpdate(BluetoothEvents.BT_EVENT_SCAN_START);
+            eventBus.postScanStart();
 
             scanning = true;
 
-            return mBluetoothAdapter.startLeScan(scanCallback);
+            dispatcher.start();
+
+            scannerBackend.setDeviceFilter(dispatcher.getDeviceFilter());
+            return scannerBackend.start();
         }
         return false;
     }
@@ -310,12 +345,15 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
      * Stop Bluetooth LE scanning
      */
     @SuppressLint("NewApi")
-    public void stopScan() {
-        mHandler.removeCallbacksAndMessages(null);
+    public synchronized void stopScan() {
+        if (mHandler != null) {
+            mHandler.removeCallbacksAndMessages(null);
+        }
         scanning = false;
-        mBluetoothAdapter.stopLeScan(scanCallback);
+        scannerBackend.stop();
+        dispatcher.stop();
         //notify end of scan
-        broadcastUpdate(BluetoothEvents.BT_EVENT_SCAN_END);
+        eventBus.postScanEnd();
     }
 
     public boolean isScanning() {
@@ -363,140 +401,23 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
     }
 
     @Override
-    public ManualResetEvent getEventManager() {
-        return eventManager;
+    public BluetoothEventBus getEventBus() {
+        return eventBus;
     }
 
-    /**
-     * Send broadcast data through broadcast receiver
-     *
-     * @param action action to be sent
-     */
-    @Override
-    public void broadcastUpdate(final String action) {
-        final Intent intent = new Intent(action);
-        context.sendBroadcast(intent);
-    }
-
-    /**
-     * broadcast characteristic value
-     *
-     * @param action action to be sent (data available)
-     */
-    @Override
-    public void broadcastUpdateStringList(String action, ArrayList<String> valueList) {
-
-        String valueName = "";
-        final Intent intent = new Intent(action);
-        intent.putStringArrayListExtra(valueName, valueList);
-        context.sendBroadcast(intent);
-    }
-
-    @SuppressLint("NewApi")
     @Override
-    public void writeCharacteristic(String characUid, byte[] value, BluetoothGatt gatt, IPushListener listener) {
-
-        if (gatt != null && characUid != null && value != null) {
-
-            gattThreadPool.execute(new GattTask(gatt, characUid, value, listener) {
-                @Override
-                public void run() {
-
-                    BluetoothGattCharacteristic charac = GattUtils.getCharacteristic(getGatt().getServices(), getUid());
-                    //charac.setWriteType(BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
-                    charac.setValue(getValue());
-
-                    getGatt().writeCharacteristic(charac);
-
-                    long startTime = System.currentTimeMillis();
-                    eventManager.reset();
-                    try {
-                        eventManager.waitOne(BT_TIMEOUT);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                    long endTime = System.currentTimeMillis();
-
-                    if ((endTime - startTime) >= BT_TIMEOUT) {
-                        if (getListener() != null) {
-                            getListener().onPushFailure();
-                        }
-                    } else {
-                        if (getListener() != null) {
-                            getListener().onPushSuccess();
-                        }
-                    }
-                }
-            });
-            gattThreadPool.execute(new Runnable() {
-                @Override
-                public void run() {
-
-
-                }
-            });
-        } else
-            Log.e(TAG, "Error int writeCharacteristic() input argument NULL");
+    public ScheduledExecutorService getScheduler() {
+        return executor;
     }
 
-    @SuppressLint("NewApi")
     @Override
-    public void readCharacteristic(String characUid, BluetoothGatt gatt) {
-
-        if (gatt != null && characUid != null) {
-
-            gattThreadPool.execute(new GattTask(gatt, characUid, null, null) {
-                @Override
-                public void run() {
-
-                    BluetoothGattCharacteristic charac = GattUtils.getCharacteristic(getGatt().getServices(), getUid());
-
-                    getGatt().readCharacteristic(charac);
-                    eventManager.reset();
-                    try {
-                        eventManager.waitOne(BT_TIMEOUT);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            });
-        } else
-            Log.e(TAG, "Error int writeCharacteristic() input argument NULL");
+    public DeviceInitExecutor getDeviceInitExecutor() {
+        return deviceInitExecutor;
     }
 
-    @SuppressLint("NewApi")
     @Override
-    public void writeDescriptor(String descriptorUid, BluetoothGatt gatt, byte[] value, String serviceUid, String characUid) {
-
-        if (gatt != null && descriptorUid != null) {
-
-            gattThreadPool.execute(new GattTask(gatt, descriptorUid, value, serviceUid, characUid) {
-                @Override
-                public void run() {
-
-                    BluetoothGattDescriptor descriptor = getGatt().getService(UUID.fromString(getDescriptorServiceUid()))
-                            .getCharacteristic(UUID.fromString(getDescriptorCharacUid())).getDescriptor(UUID.fromString(getUid()));
-
-                    descriptor.setValue(getValue());
-
-                    getGatt().writeDescriptor(descriptor);
-                    eventManager.reset();
-                    try {
-                        eventManager.waitOne(BT_TIMEOUT);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-
-                }
-            });
-            gattThreadPool.execute(new Runnable() {
-                @Override
-                public void run() {
-
-                }
-            });
-        } else
-            Log.e(TAG, "Error int writeCharacteristic() input argument NULL");
+    public DeviceDriverRegistry getDriverRegistry() {
+        return driverRegistry;
     }
 
     @Override
@@ -555,10 +476,10 @@ public class BluetoothCustomManager implements IBluetoothCustomManager {
     }
 
     public HashMap<String, BluetoothDevice> getScanningList() {
-        return scanningList;
+        return dispatcher.getScanningList();
     }
 
     public void setADListener(IADListener ADListener) {
-        this.adListener = ADListener;
+        dispatcher.setADListener(ADListener);
     }
 }
@@ -0,0 +1,93 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Registry of device drivers by service UUID
+ * <p/>
+ * after service discovery the driver of a device is selected by looking up each discovered service in a hash map,
+ * so that selection cost depends on the number of services of the device and not on the number of drivers. The map
+ * is copied on registration and read without locking
+ *
+ * @author Bertrand Martel
+ */
+public class DeviceDriverRegistry {
+
+    private volatile HashMap<UUID, IDeviceFactory> factories = new HashMap<>();
+
+    /**
+     * register a driver for devices exposing a service
+     *
+     * @param serviceUuid service identifying the device type
+     * @param factory     driver factory
+     */
+    public synchronized void register(UUID serviceUuid, IDeviceFactory factory) {
+        HashMap<UUID, IDeviceFactory> updated = new HashMap<>(factories);
+        updated.put(serviceUuid, factory);
+        factories = updated;
+    }
+
+    /**
+     * unregister driver of a service
+     *
+     * @param serviceUuid service identifying the device type
+     */
+    public synchronized void unregister(UUID serviceUuid) {
+        HashMap<UUID, IDeviceFactory> updated = new HashMap<>(factories);
+        updated.remove(serviceUuid);
+        factories = updated;
+    }
+
+    /**
+     * driver registered for a service
+     *
+     * @param serviceUuid service uuid
+     * @return factory or null if no driver is registered
+     */
+    public IDeviceFactory find(UUID serviceUuid) {
+        return factories.get(serviceUuid);
+    }
+
+    /**
+     * select driver of a device from its discovered services, first service with a driver wins
+     *
+     * @param services discovered services
+     * @return factory or null if no driver matches
+     */
+    @SuppressLint("NewApi")
+    public IDeviceFactory find(List<BluetoothGattService> services) {
+
+        HashMap<UUID, IDeviceFactory> current = factories;
+
+        for (int i = 0; i < services.size(); i++) {
+            IDeviceFactory factory = current.get(services.get(i).getUuid());
+            if (factory != null) {
+                return factory;
+            }
+        }
+        return null;
+    }
+}
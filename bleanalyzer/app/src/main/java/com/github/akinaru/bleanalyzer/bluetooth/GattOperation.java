@@ -0,0 +1,210 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.bluetooth.connection.GattIndex;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IPushListener;
+
+import java.util.UUID;
+
+/**
+ * GATT operation (read/write characteristic, write descriptor) executed by the operation queue of a connection
+ * <p/>
+ * start() only issues the asynchronous request : the operation is completed by the BluetoothGattCallback callback
+ * matching its type and uuids or by the queue timeout, its listener is then notified of success or failure
+ *
+ * @author Bertrand Martel
+ */
+public abstract class GattOperation {
+
+    private final static String TAG = GattOperation.class.getName();
+
+    public enum Type {
+        READ_CHARACTERISTIC,
+        WRITE_CHARACTERISTIC,
+        WRITE_DESCRIPTOR
+    }
+
+    private final Type type;
+
+    private final UUID characUuid;
+
+    /**
+     * descriptor uuid for descriptor operations, null otherwise
+     */
+    private final UUID descriptorUuid;
+
+    private final byte[] value;
+
+    private final IPushListener listener;
+
+    protected GattOperation(Type type, UUID characUuid, UUID descriptorUuid, byte[] value, IPushListener listener) {
+        this.type = type;
+        this.characUuid = characUuid;
+        this.descriptorUuid = descriptorUuid;
+        this.value = value;
+        this.listener = listener;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public UUID getCharacUuid() {
+        return characUuid;
+    }
+
+    public UUID getDescriptorUuid() {
+        return descriptorUuid;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public IPushListener getListener() {
+        return listener;
+    }
+
+    /**
+     * issue the request on gatt connection
+     *
+     * @param gatt  gatt connection
+     * @param index characteristic/descriptor index of the connection
+     * @return false if request could not be issued (operation fails immediately)
+     */
+    public abstract boolean start(BluetoothGatt gatt, GattIndex index);
+
+    /**
+     * check if a gatt callback completes this operation
+     *
+     * @param type           operation type of the callback
+     * @param characUuid     characteristic of the callback
+     * @param descriptorUuid descriptor of the callback or null
+     * @return
+     */
+    public boolean matches(Type type, UUID characUuid, UUID descriptorUuid) {
+        return this.type == type && this.characUuid.equals(characUuid) &&
+                (this.descriptorUuid == null ? descriptorUuid == null : this.descriptorUuid.equals(descriptorUuid));
+    }
+
+    /**
+     * notify listener of operation result
+     *
+     * @param success
+     */
+    public void complete(boolean success) {
+        if (listener != null) {
+            if (success) {
+                listener.onPushSuccess();
+            } else {
+                listener.onPushFailure();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + characUuid + (descriptorUuid != null ? " " + descriptorUuid : "");
+    }
+
+    /**
+     * write a characteristic value
+     *
+     * @param characUuid characteristic uuid
+     * @param value      value to write
+     * @param listener   result listener (may be null)
+     * @return
+     */
+    public static GattOperation writeCharacteristic(UUID characUuid, byte[] value, IPushListener listener) {
+
+        return new GattOperation(Type.WRITE_CHARACTERISTIC, characUuid, null, value, listener) {
+
+            @SuppressLint("NewApi")
+            @Override
+            public boolean start(BluetoothGatt gatt, GattIndex index) {
+                BluetoothGattCharacteristic charac = index.getCharacteristic(getCharacUuid());
+                if (charac == null) {
+                    Log.e(TAG, "characteristic " + getCharacUuid() + " not found");
+                    return false;
+                }
+                charac.setValue(getValue());
+                return gatt.writeCharacteristic(charac);
+            }
+        };
+    }
+
+    /**
+     * read a characteristic value (value is delivered to device characteristic listener)
+     *
+     * @param characUuid characteristic uuid
+     * @param listener   result listener (may be null)
+     * @return
+     */
+    public static GattOperation readCharacteristic(UUID characUuid, IPushListener listener) {
+
+        return new GattOperation(Type.READ_CHARACTERISTIC, characUuid, null, null, listener) {
+
+            @SuppressLint("NewApi")
+            @Override
+            public boolean start(BluetoothGatt gatt, GattIndex index) {
+                BluetoothGattCharacteristic charac = index.getCharacteristic(getCharacUuid());
+                if (charac == null) {
+                    Log.e(TAG, "characteristic " + getCharacUuid() + " not found");
+                    return false;
+                }
+                return gatt.readCharacteristic(charac);
+            }
+        };
+    }
+
+    /**
+     * write a descriptor value
+     *
+     * @param characUuid     characteristic uuid
+     * @param descriptorUuid descriptor uuid
+     * @param value          value to write
+     * @param listener       result listener (may be null)
+     * @return
+     */
+    public static GattOperation writeDescriptor(UUID characUuid, UUID descriptorUuid, byte[] value,
+                                                IPushListener listener) {
+
+        return new GattOperation(Type.WRITE_DESCRIPTOR, characUuid, descriptorUuid, value, listener) {
+
+            @SuppressLint("NewApi")
+            @Override
+            public boolean start(BluetoothGatt gatt, GattIndex index) {
+                BluetoothGattDescriptor descriptor = index.getDescriptor(getCharacUuid(), getDescriptorUuid());
+                if (descriptor == null) {
+                    Log.e(TAG, "descriptor " + getDescriptorUuid() + " not found for " + getCharacUuid());
+                    return false;
+                }
+                descriptor.setValue(getValue());
+                return gatt.writeDescriptor(descriptor);
+            }
+        };
+    }
+}
@@ -18,14 +18,12 @@
  */
 package com.github.akinaru.bleanalyzer.bluetooth;
 
-import android.bluetooth.BluetoothGatt;
-
+import com.github.akinaru.bleanalyzer.bluetooth.connection.DeviceInitExecutor;
 import com.github.akinaru.bleanalyzer.bluetooth.connection.IBluetoothDeviceConn;
-import com.github.akinaru.bleanalyzer.bluetooth.listener.IPushListener;
-import com.github.akinaru.bleanalyzer.utils.ManualResetEvent;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 
 /**
@@ -35,17 +33,28 @@ import java.util.concurrent.ScheduledFuture;
  */
 public interface IBluetoothCustomManager {
 
-    ManualResetEvent getEventManager();
-
-    void broadcastUpdate(String action);
-
-    void broadcastUpdateStringList(String action, ArrayList<String> strList);
-
-    void writeCharacteristic(String characUid, byte[] value, BluetoothGatt gatt, IPushListener listener);
-
-    void readCharacteristic(String characUid, BluetoothGatt gatt);
-
-    void writeDescriptor(String descriptorUid, BluetoothGatt gatt, byte[] value, String serviceUid, String characUid);
+    BluetoothEventBus getEventBus();
+
+    /**
+     * shared scheduler (gatt operation timeouts, delayed connection tasks)
+     *
+     * @return
+     */
+    ScheduledExecutorService getScheduler();
+
+    /**
+     * shared executor running device initializations
+     *
+     * @return
+     */
+    DeviceInitExecutor getDeviceInitExecutor();
+
+    /**
+     * device drivers selected after service discovery
+     *
+     * @return
+     */
+    DeviceDriverRegistry getDriverRegistry();
 
     HashMap<String, IBluetoothDeviceConn> getConnectionList();
 
@@ -26,18 +26,14 @@ import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothProfile;
 import android.util.Log;
 
+import com.github.akinaru.bleanalyzer.bluetooth.GattOperation;
 import com.github.akinaru.bleanalyzer.bluetooth.IBluetoothCustomManager;
 import com.github.akinaru.bleanalyzer.bluetooth.IDevice;
-import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEvents;
+import com.github.akinaru.bleanalyzer.bluetooth.IDeviceFactory;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
 import com.github.akinaru.bleanalyzer.bluetooth.listener.IDeviceInitListener;
 import com.github.akinaru.bleanalyzer.bluetooth.listener.IPushListener;
-import com.github.akinaru.bleanalyzer.bluetooth.rfduino.RfduinoDevice;
-import com.github.akinaru.bleanalyzer.constant.JsonConstants;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.ArrayList;
 import java.util.UUID;
 
 /**
@@ -49,7 +45,12 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
 
     private final static String TAG = BluetoothDeviceConn.class.getName();
 
-    public final static String CLIENT_CHARACTERISTIC_CONFIG = "00002902-0000-1000-8000-00805f9b34fb";
+    public final static UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    /**
+     * Service Changed characteristic of Generic Attribute service : services must be discovered again
+     */
+    public final static UUID SERVICE_CHANGED = UUID.fromString("00002a05-0000-1000-8000-00805f9b34fb");
 
     /**
      * Bluetooth callback for gatt layer interaction
@@ -70,10 +71,28 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
 
     private IBluetoothCustomManager manager = null;
 
-    private IDevice device = null;
+    /**
+     * device driver, set from initialization thread and read from gatt callbacks
+     */
+    private volatile IDevice device = null;
 
     private boolean connected = false;
 
+    /**
+     * gatt link is up, initializations ending after disconnection are not notified
+     */
+    private volatile boolean gattConnected = false;
+
+    /**
+     * gatt operations of this connection, executed one at a time
+     */
+    private final GattOperationQueue operationQueue;
+
+    /**
+     * characteristic/descriptor index, null until services are discovered
+     */
+    private volatile GattIndex gattIndex = null;
+
     /**
      * Build Bluetooth device connection
      *
@@ -84,6 +103,7 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
         this.deviceAddr = address;
         this.deviceName = deviceName;
         this.manager = manager;
+        this.operationQueue = new GattOperationQueue(this, manager.getScheduler(), GattOperationQueue.DEFAULT_TIMEOUT);
 
         gattCallback = new BluetoothGattCallback() {
             @Override
@@ -92,27 +112,21 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
 
                 if (newState == BluetoothProfile.STATE_CONNECTED) {
 
+                    gattIndex = null;
+                    gattConnected = true;
                     Log.i(TAG, "Connected to GATT server.");
                     Log.i(TAG, "Attempting to start service discovery:" + gatt.discoverServices());
 
                 } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
 
                     connected = false;
+                    gattConnected = false;
+                    gattIndex = null;
                     Log.i(TAG, "Disconnected from GATT server.");
 
-                    try {
-                        JSONObject object = new JSONObject();
-                        object.put(JsonConstants.BT_ADDRESS, getAddress());
-                        object.put(JsonConstants.BT_DEVICE_NAME, getDeviceName());
-
-                        ArrayList<String> values = new ArrayList<String>();
-                        values.add(object.toString());
+                    operationQueue.clear();
 
-                        //when device is fully intitialized broadcast service discovery
-                        manager.broadcastUpdateStringList(BluetoothEvents.BT_EVENT_DEVICE_DISCONNECTED, values);
-                    } catch (JSONException e) {
-                        e.printStackTrace();
-                    }
+                    manager.getEventBus().postDeviceDisconnected(new BluetoothObject(getAddress(), getDeviceName(), -1, 0));
 
                     if (manager.getWaitingMap().containsKey(deviceAddr)) {
                         manager.getWaitingMap().get(deviceAddr).cancel(true);
@@ -132,37 +146,50 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
 
                 if (status == BluetoothGatt.GATT_SUCCESS) {
 
-                    Runnable test = new Runnable() {
+                    gattIndex = new GattIndex(gatt.getServices());
+                    Log.v(TAG, gattIndex.size() + " characteristics indexed");
+
+                    //indications of Service Changed trigger a new discovery
+                    BluetoothGattCharacteristic serviceChanged = gattIndex.getCharacteristic(SERVICE_CHANGED);
+                    if (serviceChanged != null) {
+                        gatt.setCharacteristicNotification(serviceChanged, true);
+                        operationQueue.enqueue(GattOperation.writeDescriptor(SERVICE_CHANGED, CLIENT_CHARACTERISTIC_CONFIG,
+                                BluetoothGattDescriptor.ENABLE_INDICATION_VALUE, null));
+                    }
+
+                    final IDeviceFactory factory = manager.getDriverRegistry().find(gatt.getServices());
+
+                    if (factory == null) {
+                        Log.i(TAG, "no driver for " + deviceAddr + ", generic connection");
+                        device = null;
+                        connected = true;
+                        manager.getEventBus().postDeviceConnected(new BluetoothObject(getAddress(), getDeviceName(), -1, 0));
+                        return;
+                    }
+
+                    manager.getDeviceInitExecutor().submit(deviceAddr, new IDeviceInitTask() {
                         @Override
-                        public void run() {
+                        public void run(IDeviceInitListener completion) {
 
-                            //you can improve this by using reflection
-                            device = new RfduinoDevice(BluetoothDeviceConn.this);
+                            final IDevice created = factory.create(BluetoothDeviceConn.this);
+                            device = created;
 
-                            device.addInitListener(new IDeviceInitListener() {
+                            created.addInitListener(completion);
+                            created.addInitListener(new IDeviceInitListener() {
                                 @Override
                                 public void onInit() {
-                                    try {
-                                        JSONObject object = new JSONObject();
-                                        object.put(JsonConstants.BT_ADDRESS, getAddress());
-                                        object.put(JsonConstants.BT_DEVICE_NAME, getDeviceName());
-
-                                        ArrayList<String> values = new ArrayList<String>();
-                                        values.add(object.toString());
-
-                                        connected = true;
-                                        //when device is fully intitialized broadcast service discovery
-                                        manager.broadcastUpdateStringList(BluetoothEvents.BT_EVENT_DEVICE_CONNECTED, values);
-                                    } catch (JSONException e) {
-                                        e.printStackTrace();
+                                    //pending operations fail on disconnection or when a newer device replaces this one
+                                    if (!gattConnected || device != created) {
+                                        return;
                                     }
+                                    connected = true;
+                                    //when device is fully intitialized notify connection
+                                    manager.getEventBus().postDeviceConnected(new BluetoothObject(getAddress(), getDeviceName(), -1, 0));
                                 }
                             });
-                            device.init();
+                            created.init();
                         }
-                    };
-                    Thread testThread = new Thread(test);
-                    testThread.start();
+                    });
 
                 } else {
                     Log.w(TAG, "onServicesDiscovered received: " + status);
@@ -171,7 +198,8 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
 
             @Override
             public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-                //manager.getEventManager().set();
+                operationQueue.onCompletion(gatt, GattOperation.Type.WRITE_CHARACTERISTIC,
+                        characteristic.getUuid(), null, status);
                 if (device != null) {
                     device.notifyCharacteristicWriteReceived(characteristic);
                 }
@@ -182,7 +210,8 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
             public void onCharacteristicRead(BluetoothGatt gatt,
                                              BluetoothGattCharacteristic characteristic,
                                              int status) {
-                manager.getEventManager().set();
+                operationQueue.onCompletion(gatt, GattOperation.Type.READ_CHARACTERISTIC,
+                        characteristic.getUuid(), null, status);
                 if (device != null) {
                     Log.i(TAG, "onCharacteristicRead");
                     device.notifyCharacteristicReadReceived(characteristic);
@@ -191,14 +220,21 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
 
             @Override
             public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-                manager.getEventManager().set();
+                operationQueue.onCompletion(gatt, GattOperation.Type.WRITE_DESCRIPTOR,
+                        descriptor.getCharacteristic().getUuid(), descriptor.getUuid(), status);
             }
 
             @Override
             // Characteristic notification
             public void onCharacteristicChanged(BluetoothGatt gatt,
                                                 BluetoothGattCharacteristic characteristic) {
-                manager.getEventManager().set();
+                if (SERVICE_CHANGED.equals(characteristic.getUuid())) {
+                    Log.i(TAG, "services changed, discovering services again");
+                    gattIndex = null;
+                    operationQueue.clear();
+                    gatt.discoverServices();
+                    return;
+                }
                 if (device != null) {
                     Log.i(TAG, "onCharacteristicChanged");
                     device.notifyCharacteristicChangeReceived(characteristic);
@@ -231,36 +267,49 @@ public class BluetoothDeviceConn implements IBluetoothDeviceConn {
         return connected;
     }
 
-    @SuppressLint("NewApi")
     @Override
-    public void writeCharacteristic(String service, String charac, byte[] value, IPushListener listener) {
-        manager.writeCharacteristic(charac, value, gatt, listener);
+    public GattIndex getGattIndex() {
+        return gattIndex;
+    }
+
+    @Override
+    public void writeCharacteristic(UUID service, UUID charac, byte[] value, IPushListener listener) {
+
+        if (charac != null && value != null) {
+            operationQueue.enqueue(GattOperation.writeCharacteristic(charac, value, listener));
+        } else {
+            Log.e(TAG, "Error in writeCharacteristic() input argument NULL");
+        }
     }
 
-    @SuppressLint("NewApi")
     @Override
-    public void readCharacteristic(String service, String charac) {
-        manager.readCharacteristic(charac, gatt);
+    public void readCharacteristic(UUID service, UUID charac) {
+
+        if (charac != null) {
+            operationQueue.enqueue(GattOperation.readCharacteristic(charac, null));
+        } else {
+            Log.e(TAG, "Error in readCharacteristic() input argument NULL");
+        }
     }
 
     @SuppressLint("NewApi")
     @Override
     public void enableDisableNotification(UUID service, UUID charac, boolean enable) {
 
-        if (gatt.getService(service) != null &&
-                gatt.getService(service).getCharacteristic(charac) != null)
-            gatt.setCharacteristicNotification(gatt.getService(service).getCharacteristic(charac), enable);
+        GattIndex index = gattIndex;
+        BluetoothGattCharacteristic characteristic = (index != null) ? index.getCharacteristic(charac) : null;
+
+        if (characteristic != null)
+            gatt.setCharacteristicNotification(characteristic, enable);
         else {
             Log.e(TAG, "error inconsistent service or characteristic");
         }
     }
 
-    @SuppressLint("NewApi")
     @Override
-    public void enableGattNotifications(String serviceUid, String characUid) {
-
-        String descriptorStr = CLIENT_CHARACTERISTIC_CONFIG;
-        manager.writeDescriptor(descriptorStr, gatt, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE, serviceUid, characUid);
+    public void enableGattNotifications(UUID service, UUID charac, IPushListener listener) {
+        operationQueue.enqueue(GattOperation.writeDescriptor(charac, CLIENT_CHARACTERISTIC_CONFIG,
+                BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE, listener));
     }
 
     public BluetoothGatt getGatt() {
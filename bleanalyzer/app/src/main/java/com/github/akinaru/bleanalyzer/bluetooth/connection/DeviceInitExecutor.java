@@ -0,0 +1,286 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.connection;
+
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IDeviceInitListener;
+
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor running device initializations after service discovery
+ * <p/>
+ * initializations of a device run one at a time : a task only holds a thread while starting, but the device is not
+ * released before its completion listener is called (device ready or its GATT operations failed). A device has at
+ * most one pending initialization, a new one (reconnection) replacing it, so that the pool queue holds at most one
+ * task per device : reconnection storms neither spawn threads nor grow the queue beyond the number of devices.
+ * Queue depth and initialization latency (from submission to device ready) are tracked
+ *
+ * @author Bertrand Martel
+ */
+public class DeviceInitExecutor {
+
+    private final static String TAG = DeviceInitExecutor.class.getName();
+
+    /**
+     * default number of initialization threads
+     */
+    public final static int DEFAULT_POOL_SIZE = 2;
+
+    /**
+     * time an idle thread waits for a task before terminating in seconds
+     */
+    private final static int KEEP_ALIVE_TIME = 5;
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * devices being initialized or waiting for initialization by address
+     */
+    private final HashMap<String, DeviceTasks> devices = new HashMap<>();
+
+    private int queueDepth;
+
+    private int maxQueueDepth;
+
+    private long initCount;
+
+    private long supersededCount;
+
+    private long totalLatency;
+
+    private long maxLatency;
+
+    /**
+     * @param poolSize number of initialization threads
+     */
+    public DeviceInitExecutor(int poolSize) {
+
+        final AtomicInteger threadCount = new AtomicInteger();
+
+        pool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "device-init-" + threadCount.incrementAndGet());
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * submit initialization of a device, replacing its pending initialization if any
+     *
+     * @param deviceAddress device address
+     * @param init          initialization task
+     */
+    public void submit(String deviceAddress, IDeviceInitTask init) {
+
+        DeviceTasks tasks;
+
+        synchronized (this) {
+
+            tasks = devices.get(deviceAddress);
+            if (tasks == null) {
+                tasks = new DeviceTasks(deviceAddress);
+                devices.put(deviceAddress, tasks);
+            }
+
+            if (tasks.pending != null) {
+                supersededCount++;
+            } else {
+                queueDepth++;
+                maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+            }
+            tasks.pending = init;
+            tasks.submitTime = System.nanoTime();
+
+            if (tasks.running) {
+                return;
+            }
+            tasks.running = true;
+        }
+        pool.execute(tasks);
+    }
+
+    /**
+     * number of initializations waiting to run
+     *
+     * @return
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * highest number of initializations waiting to run
+     *
+     * @return
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * number of initializations completed
+     *
+     * @return
+     */
+    public synchronized long getInitCount() {
+        return initCount;
+    }
+
+    /**
+     * number of initializations replaced by a newer one before running
+     *
+     * @return
+     */
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    /**
+     * mean latency from submission to device ready in milliseconds
+     *
+     * @return
+     */
+    public synchronized long getMeanInitLatency() {
+        return (initCount != 0) ? totalLatency / initCount : 0;
+    }
+
+    /**
+     * highest latency from submission to device ready in milliseconds
+     *
+     * @return
+     */
+    public synchronized long getMaxInitLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * initializations of a device, executed on the pool one at a time
+     */
+    private class DeviceTasks implements Runnable {
+
+        private final String deviceAddress;
+
+        private IDeviceInitTask pending;
+
+        private long submitTime;
+
+        /**
+         * an initialization is running or waiting for its completion
+         */
+        private boolean running;
+
+        DeviceTasks(String deviceAddress) {
+            this.deviceAddress = deviceAddress;
+        }
+
+        @Override
+        public void run() {
+
+            IDeviceInitTask init;
+            long start;
+
+            synchronized (DeviceInitExecutor.this) {
+                init = pending;
+                start = submitTime;
+                pending = null;
+                queueDepth--;
+            }
+
+            Completion completion = new Completion(this, start);
+
+            try {
+                init.run(completion);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "initialization of " + deviceAddress + " failed", e);
+                completion.onInit();
+            }
+        }
+
+        /**
+         * run pending initialization if any, else release the device
+         */
+        private void next() {
+
+            boolean again;
+
+            synchronized (DeviceInitExecutor.this) {
+                again = (pending != null);
+                if (!again) {
+                    running = false;
+                    devices.remove(deviceAddress);
+                }
+            }
+
+            //requeue rather than loop so that other devices are not starved
+            if (again) {
+                pool.execute(this);
+            }
+        }
+    }
+
+    /**
+     * end of an initialization, recording its latency and releasing the device once
+     */
+    private class Completion implements IDeviceInitListener {
+
+        private final DeviceTasks tasks;
+
+        private final long submitTime;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Completion(DeviceTasks tasks, long submitTime) {
+            this.tasks = tasks;
+            this.submitTime = submitTime;
+        }
+
+        @Override
+        public void onInit() {
+
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+
+            long latency = (System.nanoTime() - submitTime) / 1000000L;
+            int depth;
+
+            synchronized (DeviceInitExecutor.this) {
+                initCount++;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+                depth = queueDepth;
+            }
+
+            Log.v(TAG, tasks.deviceAddress + " initialized in " + latency + "ms, queue depth : " + depth);
+
+            tasks.next();
+        }
+    }
+}
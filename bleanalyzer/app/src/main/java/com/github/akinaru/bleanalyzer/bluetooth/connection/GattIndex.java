@@ -0,0 +1,109 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.connection;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Index of the characteristics and descriptors of a connection, built once after service discovery
+ * <p/>
+ * lookups are hash lookups on pre-parsed UUID without allocation. When a characteristic UUID is present in several
+ * services, the first one discovered is indexed
+ *
+ * @author Bertrand Martel
+ */
+public class GattIndex {
+
+    private final HashMap<UUID, BluetoothGattCharacteristic> characteristics = new HashMap<>();
+
+    /**
+     * descriptors by characteristic UUID then descriptor UUID
+     */
+    private final HashMap<UUID, HashMap<UUID, BluetoothGattDescriptor>> descriptors = new HashMap<>();
+
+    /**
+     * @param services discovered services
+     */
+    @SuppressLint("NewApi")
+    public GattIndex(List<BluetoothGattService> services) {
+
+        for (int i = 0; i < services.size(); i++) {
+
+            List<BluetoothGattCharacteristic> characList = services.get(i).getCharacteristics();
+
+            for (int j = 0; j < characList.size(); j++) {
+
+                BluetoothGattCharacteristic charac = characList.get(j);
+
+                if (characteristics.containsKey(charac.getUuid())) {
+                    continue;
+                }
+                characteristics.put(charac.getUuid(), charac);
+
+                List<BluetoothGattDescriptor> descriptorList = charac.getDescriptors();
+
+                if (!descriptorList.isEmpty()) {
+                    HashMap<UUID, BluetoothGattDescriptor> characDescriptors = new HashMap<>();
+                    for (int k = 0; k < descriptorList.size(); k++) {
+                        characDescriptors.put(descriptorList.get(k).getUuid(), descriptorList.get(k));
+                    }
+                    descriptors.put(charac.getUuid(), characDescriptors);
+                }
+            }
+        }
+    }
+
+    /**
+     * retrieve a characteristic
+     *
+     * @param characUuid characteristic uuid
+     * @return characteristic or null if not found
+     */
+    public BluetoothGattCharacteristic getCharacteristic(UUID characUuid) {
+        return characteristics.get(characUuid);
+    }
+
+    /**
+     * retrieve a descriptor of a characteristic
+     *
+     * @param characUuid     characteristic uuid
+     * @param descriptorUuid descriptor uuid
+     * @return descriptor or null if not found
+     */
+    public BluetoothGattDescriptor getDescriptor(UUID characUuid, UUID descriptorUuid) {
+        HashMap<UUID, BluetoothGattDescriptor> characDescriptors = descriptors.get(characUuid);
+        return (characDescriptors != null) ? characDescriptors.get(descriptorUuid) : null;
+    }
+
+    /**
+     * number of indexed characteristics
+     *
+     * @return
+     */
+    public int size() {
+        return characteristics.size();
+    }
+}
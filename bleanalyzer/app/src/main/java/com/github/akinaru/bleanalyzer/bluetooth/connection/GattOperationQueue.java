@@ -0,0 +1,219 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.connection;
+
+import android.bluetooth.BluetoothGatt;
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.bluetooth.GattOperation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking GATT operation queue of a connection
+ * <p/>
+ * Android GATT allows only one request in flight per connection : operations are started one at a time, the next
+ * one being started when the in-flight operation is completed from a gatt callback or when it times out. No thread
+ * is blocked waiting for a response and connections to different devices proceed independently
+ * <p/>
+ * a callback completes the in-flight operation only if it comes from the gatt connection the operation was issued
+ * on and matches its type and uuids, so that notifications or late responses of timed out operations are ignored
+ *
+ * @author Bertrand Martel
+ */
+public class GattOperationQueue {
+
+    private final static String TAG = GattOperationQueue.class.getName();
+
+    /**
+     * default time to wait for the response of an operation in milliseconds
+     */
+    public final static int DEFAULT_TIMEOUT = 2000;
+
+    private final IBluetoothDeviceConn conn;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final long timeout;
+
+    private final ArrayDeque<GattOperation> pending = new ArrayDeque<>();
+
+    /**
+     * operation waiting for its gatt callback
+     */
+    private GattOperation current;
+
+    /**
+     * gatt connection in-flight operation was issued on
+     */
+    private BluetoothGatt currentGatt;
+
+    private ScheduledFuture<?> currentTimeout;
+
+    /**
+     * @param conn      connection operations are issued on
+     * @param scheduler scheduler used for operation timeouts
+     * @param timeout   time to wait for the response of an operation in milliseconds
+     */
+    public GattOperationQueue(IBluetoothDeviceConn conn, ScheduledExecutorService scheduler, long timeout) {
+        this.conn = conn;
+        this.scheduler = scheduler;
+        this.timeout = timeout;
+    }
+
+    /**
+     * queue an operation, starting it right away if connection is idle
+     *
+     * @param operation
+     */
+    public void enqueue(GattOperation operation) {
+        List<GattOperation> failed;
+        synchronized (this) {
+            pending.add(operation);
+            if (current != null) {
+                return;
+            }
+            failed = startNext();
+        }
+        notifyFailed(failed);
+    }
+
+    /**
+     * complete in-flight operation if it matches a gatt callback and start the next one
+     *
+     * @param gatt           gatt connection of the callback
+     * @param type           operation type of the callback
+     * @param characUuid     characteristic of the callback
+     * @param descriptorUuid descriptor of the callback or null
+     * @param status         gatt status of the callback
+     * @return false if callback does not match in-flight operation
+     */
+    public boolean onCompletion(BluetoothGatt gatt, GattOperation.Type type, UUID characUuid, UUID descriptorUuid,
+                                int status) {
+        GattOperation done;
+        List<GattOperation> failed;
+        synchronized (this) {
+            if (current == null || gatt != currentGatt || !current.matches(type, characUuid, descriptorUuid)) {
+                return false;
+            }
+            done = current;
+            current = null;
+            currentGatt = null;
+            currentTimeout.cancel(false);
+            failed = startNext();
+        }
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            Log.w(TAG, "operation " + done + " failed on " + conn.getAddress() + " with status " + status);
+        }
+        done.complete(status == BluetoothGatt.GATT_SUCCESS);
+        notifyFailed(failed);
+        return true;
+    }
+
+    /**
+     * fail in-flight and pending operations (connection lost)
+     */
+    public void clear() {
+        List<GattOperation> failed = new ArrayList<>();
+        synchronized (this) {
+            if (current != null) {
+                currentTimeout.cancel(false);
+                failed.add(current);
+                current = null;
+                currentGatt = null;
+            }
+            failed.addAll(pending);
+            pending.clear();
+        }
+        notifyFailed(failed);
+    }
+
+    /**
+     * number of queued operations including in-flight operation
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return pending.size() + (current != null ? 1 : 0);
+    }
+
+    private void onTimeout(GattOperation operation) {
+        List<GattOperation> failed;
+        synchronized (this) {
+            if (current != operation) {
+                return;
+            }
+            Log.w(TAG, "operation " + operation + " timed out on " + conn.getAddress());
+            current = null;
+            currentGatt = null;
+            failed = startNext();
+        }
+        operation.complete(false);
+        notifyFailed(failed);
+    }
+
+    /**
+     * start pending operations until one is in flight, must be called with lock held
+     *
+     * @return operations which could not be issued or null
+     */
+    private List<GattOperation> startNext() {
+
+        List<GattOperation> failed = null;
+
+        while (current == null && !pending.isEmpty()) {
+
+            final GattOperation operation = pending.poll();
+            BluetoothGatt gatt = conn.getBluetoothGatt();
+            GattIndex index = conn.getGattIndex();
+
+            if (gatt != null && index != null && operation.start(gatt, index)) {
+                current = operation;
+                currentGatt = gatt;
+                currentTimeout = scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        onTimeout(operation);
+                    }
+                }, timeout, TimeUnit.MILLISECONDS);
+            } else {
+                Log.e(TAG, "operation " + operation + " could not be issued on " + conn.getAddress());
+                if (failed == null) {
+                    failed = new ArrayList<>();
+                }
+                failed.add(operation);
+            }
+        }
+        return failed;
+    }
+
+    private static void notifyFailed(List<GattOperation> failed) {
+        if (failed != null) {
+            for (int i = 0; i < failed.size(); i++) {
+                failed.get(i).complete(false);
+            }
+        }
+    }
+}
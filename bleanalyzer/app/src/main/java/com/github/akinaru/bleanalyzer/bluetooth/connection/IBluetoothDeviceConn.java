@@ -46,26 +46,40 @@ public interface IBluetoothDeviceConn {
 
     boolean isConnected();
 
+    /**
+     * characteristic/descriptor index of the connection
+     *
+     * @return index or null if services are not discovered
+     */
+    GattIndex getGattIndex();
+
     /**
      * write to a characteristic
      *
-     * @param serviceSmartliteControlUUID
-     * @param characteristicSmartliteSettingsUUID
+     * @param service
+     * @param charac
      * @param value
      */
-    void writeCharacteristic(String serviceSmartliteControlUUID, String characteristicSmartliteSettingsUUID, byte[] value, IPushListener listener);
+    void writeCharacteristic(UUID service, UUID charac, byte[] value, IPushListener listener);
 
     /**
      * read from a characteristic
      *
-     * @param serviceName
-     * @param characteristicName
+     * @param service
+     * @param charac
      */
-    void readCharacteristic(String serviceName, String characteristicName);
+    void readCharacteristic(UUID service, UUID charac);
 
     void enableDisableNotification(UUID service, UUID charac, boolean enable);
 
-    void enableGattNotifications(String service, String charac);
+    /**
+     * enable notifications on remote device by writing client characteristic configuration descriptor
+     *
+     * @param service
+     * @param charac
+     * @param listener listener called when descriptor is written or write failed
+     */
+    void enableGattNotifications(UUID service, UUID charac, IPushListener listener);
 
     IBluetoothCustomManager getManager();
 
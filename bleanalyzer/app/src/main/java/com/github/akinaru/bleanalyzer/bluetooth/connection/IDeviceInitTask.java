@@ -0,0 +1,38 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.connection;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IDeviceInitListener;
+
+/**
+ * Device initialization run by DeviceInitExecutor
+ *
+ * @author Bertrand Martel
+ */
+public interface IDeviceInitTask {
+
+    /**
+     * start initialization of the device, which may end asynchronously
+     *
+     * @param completion listener to call once the device is ready or its initialization failed, the device is not
+     *                   initialized again until then
+     */
+    void run(IDeviceInitListener completion);
+
+}
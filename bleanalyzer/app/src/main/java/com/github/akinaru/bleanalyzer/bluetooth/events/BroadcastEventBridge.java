@@ -0,0 +1,114 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.events;
+
+import android.content.Context;
+import android.content.Intent;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IBluetoothEventListener;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compatibility bridge republishing event bus events as global broadcasts
+ * <p/>
+ * intents carry BluetoothEvents actions with device info serialized as json (see parseIntent)
+ *
+ * @author Bertrand Martel
+ */
+public class BroadcastEventBridge implements IBluetoothEventListener {
+
+    private final Context context;
+
+    public BroadcastEventBridge(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void onScanStart() {
+        context.sendBroadcast(new Intent(BluetoothEvents.BT_EVENT_SCAN_START));
+    }
+
+    @Override
+    public void onScanEnd() {
+        context.sendBroadcast(new Intent(BluetoothEvents.BT_EVENT_SCAN_END));
+    }
+
+    @Override
+    public void onDevicesDiscovered(List<BluetoothObject> devices) {
+        for (int i = 0; i < devices.size(); i++) {
+            broadcastDevice(BluetoothEvents.BT_EVENT_DEVICE_DISCOVERED, devices.get(i));
+        }
+    }
+
+    @Override
+    public void onDevicesLost(List<BluetoothObject> devices) {
+        for (int i = 0; i < devices.size(); i++) {
+            broadcastDevice(BluetoothEvents.BT_EVENT_DEVICE_LOST, devices.get(i));
+        }
+    }
+
+    @Override
+    public void onDeviceConnected(BluetoothObject device) {
+        broadcastDevice(BluetoothEvents.BT_EVENT_DEVICE_CONNECTED, device);
+    }
+
+    @Override
+    public void onDeviceDisconnected(BluetoothObject device) {
+        broadcastDevice(BluetoothEvents.BT_EVENT_DEVICE_DISCONNECTED, device);
+    }
+
+    private void broadcastDevice(String action, BluetoothObject device) {
+
+        try {
+            ArrayList<String> valueList = new ArrayList<>();
+            valueList.add(device.toJson());
+
+            Intent intent = new Intent(action);
+            intent.putStringArrayListExtra("", valueList);
+            context.sendBroadcast(intent);
+
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * parse device info carried by a broadcast intent
+     *
+     * @param intent broadcast intent
+     * @return device info or null if intent does not carry valid device info
+     */
+    public static BluetoothObject parseIntent(Intent intent) {
+
+        ArrayList<String> actionsStr = intent.getStringArrayListExtra("");
+
+        if (actionsStr != null && actionsStr.size() > 0) {
+            try {
+                return BluetoothObject.fromJson(actionsStr.get(0));
+            } catch (JSONException e) {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.listener;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * Listener for frames delivered by a scan source, radio scanners deliver Android Bluetooth devices
+ *
+ * @author Bertrand Martel
+ */
+public interface IScanFrameListener extends IScanRecordListener {
+
+    /**
+     * advertising frame received
+     *
+     * @param device     emitting device
+     * @param rssi       received signal strength
+     * @param scanRecord raw advertising payload
+     * @param ageMillis  time elapsed since frame reception (frames batched by controller are delivered late)
+     */
+    void onScanFrame(BluetoothDevice device, int rssi, byte[] scanRecord, long ageMillis);
+
+    /**
+     * scan could not be started
+     *
+     * @param errorCode backend specific error code
+     */
+    void onScanFailed(int errorCode);
+}
@@ -22,6 +22,8 @@ import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothGattCharacteristic;
 import android.util.Log;
 
+import com.github.akinaru.bleanalyzer.bluetooth.IDevice;
+import com.github.akinaru.bleanalyzer.bluetooth.IDeviceFactory;
 import com.github.akinaru.bleanalyzer.bluetooth.connection.BluetoothDeviceAbstr;
 import com.github.akinaru.bleanalyzer.bluetooth.connection.IBluetoothDeviceConn;
 import com.github.akinaru.bleanalyzer.bluetooth.listener.ICharacteristicListener;
@@ -40,13 +42,27 @@ public class RfduinoDevice extends BluetoothDeviceAbstr implements IRfduinoDevic
 
     private String TAG = RfduinoDevice.this.getClass().getName();
 
-    public final static String RFDUINO_SERVICE = "00002220-0000-1000-8000-00805f9b34fb";
-    public final static String RFDUINO_RECEIVE_CHARAC = "00002221-0000-1000-8000-00805f9b34fb";
-    public final static String RFDUINO_SEND_CHARAC = "00002222-0000-1000-8000-00805f9b34fb";
+    public final static UUID RFDUINO_SERVICE = UUID.fromString("00002220-0000-1000-8000-00805f9b34fb");
+    public final static UUID RFDUINO_RECEIVE_CHARAC = UUID.fromString("00002221-0000-1000-8000-00805f9b34fb");
+    public final static UUID RFDUINO_SEND_CHARAC = UUID.fromString("00002222-0000-1000-8000-00805f9b34fb");
 
     private ArrayList<IDeviceInitListener> initListenerList = new ArrayList<>();
 
-    private boolean init = false;
+    private volatile boolean init = false;
+
+    /**
+     * create a factory of RFduino drivers
+     *
+     * @return
+     */
+    public static IDeviceFactory factory() {
+        return new IDeviceFactory() {
+            @Override
+            public IDevice create(IBluetoothDeviceConn conn) {
+                return new RfduinoDevice(conn);
+            }
+        };
+    }
 
     /**
      * @param conn
@@ -78,9 +94,25 @@ public class RfduinoDevice extends BluetoothDeviceAbstr implements IRfduinoDevic
 
         Log.i(TAG, "initializing RFduino");
 
-        conn.enableDisableNotification(UUID.fromString(RFDUINO_SERVICE), UUID.fromString(RFDUINO_RECEIVE_CHARAC), true);
-        conn.enableGattNotifications(RFDUINO_SERVICE, RFDUINO_RECEIVE_CHARAC);
+        conn.enableDisableNotification(RFDUINO_SERVICE, RFDUINO_RECEIVE_CHARAC, true);
+
+        //device is ready once the descriptor write has completed
+        conn.enableGattNotifications(RFDUINO_SERVICE, RFDUINO_RECEIVE_CHARAC, new IPushListener() {
+            @Override
+            public void onPushSuccess() {
+                init = true;
+                notifyInit();
+            }
+
+            @Override
+            public void onPushFailure() {
+                Log.e(TAG, "enabling RFduino notifications failed");
+                notifyInit();
+            }
+        });
+    }
 
+    private void notifyInit() {
         for (int i = 0; i < initListenerList.size(); i++) {
             initListenerList.get(i).onInit();
         }
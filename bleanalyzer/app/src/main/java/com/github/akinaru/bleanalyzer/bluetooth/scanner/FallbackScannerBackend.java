@@ -0,0 +1,153 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.bluetooth.BluetoothDevice;
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+
+/**
+ * Scanner backend scanning with a primary scanner and switching to a secondary scanner if primary scan fails
+ * <p/>
+ * BluetoothLeScanner may fail to register a scan (too many scanners, controller error) where legacy scan still works.
+ * Failures of the secondary scanner are forwarded to the listener.
+ *
+ * @author Bertrand Martel
+ */
+public class FallbackScannerBackend implements IScannerBackend {
+
+    private final static String TAG = FallbackScannerBackend.class.getSimpleName();
+
+    private final IScanSourceFactory secondaryFactory;
+
+    private final IScanFrameListener listener;
+
+    private IScannerBackend current;
+
+    private DeviceFilter deviceFilter = DeviceFilter.ACCEPT_ALL;
+
+    /**
+     * scan has been started and not stopped since
+     */
+    private boolean started = false;
+
+    private boolean fallback = false;
+
+    /**
+     * Build fallback scanner backend, primary scanner is created immediately
+     *
+     * @param primaryFactory   factory of primary scanner
+     * @param secondaryFactory factory of scanner used once primary scanner has failed
+     * @param listener         frame listener
+     */
+    public FallbackScannerBackend(IScanSourceFactory primaryFactory, IScanSourceFactory secondaryFactory,
+                                  final IScanFrameListener listener) {
+
+        this.secondaryFactory = secondaryFactory;
+        this.listener = listener;
+
+        current = primaryFactory.create(new IScanFrameListener() {
+
+            @Override
+            public void onScanFrame(BluetoothDevice device, int rssi, byte[] scanRecord, long ageMillis) {
+                listener.onScanFrame(device, rssi, scanRecord, ageMillis);
+            }
+
+            @Override
+            public void onScanFrame(String address, String name, int rssi, byte[] scanRecord, long ageMillis) {
+                listener.onScanFrame(address, name, rssi, scanRecord, ageMillis);
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                if (!fallBack(errorCode)) {
+                    listener.onScanFailed(errorCode);
+                }
+            }
+        });
+    }
+
+    /**
+     * replace failed primary scanner by secondary scanner if scan is still wanted
+     *
+     * @param errorCode primary scanner error code
+     * @return true if secondary scanner has started
+     */
+    private synchronized boolean fallBack(int errorCode) {
+
+        if (!started || fallback) {
+            return false;
+        }
+        Log.w(TAG, "scanner failed with error " + errorCode + ", falling back to secondary scanner");
+
+        current.stop();
+        current = secondaryFactory.create(listener);
+        current.setDeviceFilter(deviceFilter);
+        fallback = true;
+        started = current.start();
+        return started;
+    }
+
+    /**
+     * check if primary scanner has been replaced by secondary scanner
+     *
+     * @return
+     */
+    public synchronized boolean isFallback() {
+        return fallback;
+    }
+
+    @Override
+    public synchronized void setDeviceFilter(DeviceFilter filter) {
+        deviceFilter = filter;
+        current.setDeviceFilter(filter);
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (!current.start()) {
+            return false;
+        }
+        started = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        started = false;
+        current.stop();
+    }
+
+    @Override
+    public synchronized boolean isScanning() {
+        return current.isScanning();
+    }
+
+    @Override
+    public synchronized void flush() {
+        current.flush();
+    }
+
+    @Override
+    public synchronized String getName() {
+        return current.getName();
+    }
+}
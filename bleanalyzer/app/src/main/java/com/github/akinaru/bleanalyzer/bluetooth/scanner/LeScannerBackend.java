@@ -0,0 +1,206 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Build;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Scanner backend using BluetoothLeScanner (API 21+)
+ * <p/>
+ * supports controller side filtering (ScanFilter) and batching (report delay) so that the application is not woken
+ * up for every frame
+ *
+ * @author Bertrand Martel
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class LeScannerBackend implements IScannerBackend {
+
+    private final static String TAG = LeScannerBackend.class.getSimpleName();
+
+    private final BluetoothAdapter adapter;
+
+    private final ScanConfig config;
+
+    private final IScanFrameListener listener;
+
+    private volatile DeviceFilter deviceFilter = DeviceFilter.ACCEPT_ALL;
+
+    private volatile boolean scanning = false;
+
+    private BluetoothLeScanner scanner = null;
+
+    /**
+     * callback registered to BluetoothLeScanner
+     */
+    final ScanCallback scanCallback = new ScanCallback() {
+
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            dispatch(result, SystemClock.elapsedRealtimeNanos());
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            long now = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < results.size(); i++) {
+                dispatch(results.get(i), now);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.e(TAG, "scan failed : " + errorCode);
+            scanning = false;
+            listener.onScanFailed(errorCode);
+        }
+    };
+
+    public LeScannerBackend(BluetoothAdapter adapter, ScanConfig config, IScanFrameListener listener) {
+        this.adapter = adapter;
+        this.config = config;
+        this.listener = listener;
+    }
+
+    private void dispatch(ScanResult result, long nowNanos) {
+        ScanRecord record = result.getScanRecord();
+        listener.onScanFrame(result.getDevice(), result.getRssi(), record != null ? record.getBytes() : null,
+                Math.max(0, (nowNanos - result.getTimestampNanos()) / 1000000L));
+    }
+
+    @Override
+    public void setDeviceFilter(DeviceFilter filter) {
+        deviceFilter = filter;
+    }
+
+    @Override
+    public boolean start() {
+
+        if (scanning) {
+            return false;
+        }
+
+        scanner = adapter.getBluetoothLeScanner();
+
+        if (scanner == null) {
+            //bluetooth is off
+            return false;
+        }
+
+        ScanSettings.Builder settings = new ScanSettings.Builder()
+                .setScanMode(config.getScanMode());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            settings.setMatchMode(config.getMatchMode());
+        }
+
+        if (config.getReportDelay() > 0) {
+            if (adapter.isOffloadedScanBatchingSupported()) {
+                settings.setReportDelay(config.getReportDelay());
+            } else {
+                Log.w(TAG, "controller batching not supported, frames are delivered immediately");
+            }
+        }
+
+        List<ScanFilter> filters = config.isHardwareFilters() ? buildFilters(deviceFilter) : null;
+
+        scanner.startScan(filters, settings.build(), scanCallback);
+        scanning = true;
+        return true;
+    }
+
+    /**
+     * translate device filter into controller filters. Controller filters are OR-ed whereas device filter criteria are
+     * AND-ed : a single criterion is offloaded, the others are still checked by the device filter
+     *
+     * @param filter device filter
+     * @return controller filters or null to receive all frames
+     */
+    static List<ScanFilter> buildFilters(DeviceFilter filter) {
+
+        List<ScanFilter> filters = new ArrayList<>();
+
+        int[] manufacturerIds = filter.getManufacturerIds();
+
+        if (manufacturerIds != null) {
+            for (int companyId : manufacturerIds) {
+                filters.add(new ScanFilter.Builder().setManufacturerData(companyId, new byte[0]).build());
+            }
+            return filters;
+        }
+
+        List<UUID> serviceUuids = filter.getServiceUuids();
+
+        if (serviceUuids != null) {
+            for (UUID uuid : serviceUuids) {
+                filters.add(new ScanFilter.Builder().setServiceUuid(new ParcelUuid(uuid)).build());
+            }
+            return filters;
+        }
+        return null;
+    }
+
+    @Override
+    public void stop() {
+        scanning = false;
+        if (scanner != null) {
+            try {
+                scanner.stopScan(scanCallback);
+            } catch (IllegalStateException e) {
+                //bluetooth has been turned off
+                Log.w(TAG, "stop scan : " + e.getMessage());
+            }
+            scanner = null;
+        }
+    }
+
+    @Override
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    @Override
+    public void flush() {
+        if (scanning && scanner != null && config.getReportDelay() > 0) {
+            scanner.flushPendingScanResults(scanCallback);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "le-scanner";
+    }
+}
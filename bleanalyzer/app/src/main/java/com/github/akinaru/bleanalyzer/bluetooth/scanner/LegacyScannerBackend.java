@@ -0,0 +1,86 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+
+/**
+ * Scanner backend using deprecated BluetoothAdapter.startLeScan (all API levels), frames are delivered one by one
+ *
+ * @author Bertrand Martel
+ */
+@SuppressWarnings("deprecation")
+public class LegacyScannerBackend implements IScannerBackend {
+
+    private final BluetoothAdapter adapter;
+
+    private volatile boolean scanning = false;
+
+    private final BluetoothAdapter.LeScanCallback scanCallback;
+
+    public LegacyScannerBackend(BluetoothAdapter adapter, final IScanFrameListener listener) {
+
+        this.adapter = adapter;
+
+        scanCallback = new BluetoothAdapter.LeScanCallback() {
+
+            @Override
+            public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+                listener.onScanFrame(device, rssi, scanRecord, 0);
+            }
+        };
+    }
+
+    @Override
+    public void setDeviceFilter(DeviceFilter filter) {
+    }
+
+    @Override
+    public boolean start() {
+        if (scanning) {
+            return false;
+        }
+        scanning = adapter.startLeScan(scanCallback);
+        return scanning;
+    }
+
+    @Override
+    public void stop() {
+        scanning = false;
+        adapter.stopLeScan(scanCallback);
+    }
+
+    @Override
+    public boolean isScanning() {
+        return scanning;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public String getName() {
+        return "legacy";
+    }
+}
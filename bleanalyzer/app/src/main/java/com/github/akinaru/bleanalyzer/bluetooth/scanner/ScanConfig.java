@@ -0,0 +1,156 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+/**
+ * Immutable scan configuration built from a Builder
+ * <p/>
+ * scan mode, match mode and report delay are only honoured by the BluetoothLeScanner backend (API 21+)
+ *
+ * @author Bertrand Martel
+ */
+public class ScanConfig {
+
+    /**
+     * scan modes (same values as android.bluetooth.le.ScanSettings)
+     */
+    public final static int SCAN_MODE_LOW_POWER = 0;
+    public final static int SCAN_MODE_BALANCED = 1;
+    public final static int SCAN_MODE_LOW_LATENCY = 2;
+
+    /**
+     * match modes (same values as android.bluetooth.le.ScanSettings, API 23+)
+     */
+    public final static int MATCH_MODE_AGGRESSIVE = 1;
+    public final static int MATCH_MODE_STICKY = 2;
+
+    public final static ScanConfig DEFAULT = new Builder().build();
+
+    private final int scanMode;
+
+    private final int matchMode;
+
+    private final long reportDelay;
+
+    private final boolean hardwareFilters;
+
+    private final boolean forceLegacy;
+
+    private ScanConfig(Builder builder) {
+        scanMode = builder.scanMode;
+        matchMode = builder.matchMode;
+        reportDelay = builder.reportDelay;
+        hardwareFilters = builder.hardwareFilters;
+        forceLegacy = builder.forceLegacy;
+    }
+
+    public int getScanMode() {
+        return scanMode;
+    }
+
+    public int getMatchMode() {
+        return matchMode;
+    }
+
+    /**
+     * delay during which controller batches frames before delivering them, 0 for immediate delivery
+     *
+     * @return
+     */
+    public long getReportDelay() {
+        return reportDelay;
+    }
+
+    /**
+     * define if device filter is offloaded to controller as ScanFilters when scan starts
+     *
+     * @return
+     */
+    public boolean isHardwareFilters() {
+        return hardwareFilters;
+    }
+
+    public boolean isForceLegacy() {
+        return forceLegacy;
+    }
+
+    /**
+     * Build a scan configuration
+     */
+    public static class Builder {
+
+        private int scanMode = SCAN_MODE_LOW_LATENCY;
+
+        private int matchMode = MATCH_MODE_AGGRESSIVE;
+
+        private long reportDelay = 0;
+
+        private boolean hardwareFilters = false;
+
+        private boolean forceLegacy = false;
+
+        public Builder setScanMode(int scanMode) {
+            if (scanMode < SCAN_MODE_LOW_POWER || scanMode > SCAN_MODE_LOW_LATENCY) {
+                throw new IllegalArgumentException("invalid scan mode : " + scanMode);
+            }
+            this.scanMode = scanMode;
+            return this;
+        }
+
+        public Builder setMatchMode(int matchMode) {
+            if (matchMode != MATCH_MODE_AGGRESSIVE && matchMode != MATCH_MODE_STICKY) {
+                throw new IllegalArgumentException("invalid match mode : " + matchMode);
+            }
+            this.matchMode = matchMode;
+            return this;
+        }
+
+        /**
+         * @param reportDelayMillis controller batching delay in milliseconds, 0 to disable batching
+         * @return
+         */
+        public Builder setReportDelay(long reportDelayMillis) {
+            if (reportDelayMillis < 0) {
+                throw new IllegalArgumentException("report delay must be positive");
+            }
+            this.reportDelay = reportDelayMillis;
+            return this;
+        }
+
+        public Builder setHardwareFilters(boolean hardwareFilters) {
+            this.hardwareFilters = hardwareFilters;
+            return this;
+        }
+
+        /**
+         * use BluetoothAdapter.startLeScan even if BluetoothLeScanner is available
+         *
+         * @param forceLegacy
+         * @return
+         */
+        public Builder setForceLegacy(boolean forceLegacy) {
+            this.forceLegacy = forceLegacy;
+            return this;
+        }
+
+        public ScanConfig build() {
+            return new ScanConfig(this);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.bluetooth.BluetoothAdapter;
+import android.os.Build;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+
+/**
+ * Select scanner backend according to API level and configuration, or create simulated scan sources
+ *
+ * @author Bertrand Martel
+ */
+public class ScannerBackendFactory {
+
+    /**
+     * create scanner backend : BluetoothLeScanner on API 21+ unless legacy is forced, falling back to legacy scanner
+     * if BluetoothLeScanner fails
+     *
+     * @param adapter  bluetooth adapter
+     * @param config   scan configuration
+     * @param listener frame listener
+     * @return
+     */
+    public static IScannerBackend create(BluetoothAdapter adapter, ScanConfig config, IScanFrameListener listener) {
+        return create(Build.VERSION.SDK_INT, adapter, config, listener);
+    }
+
+    static IScannerBackend create(int sdkVersion, BluetoothAdapter adapter, ScanConfig config, IScanFrameListener listener) {
+        if (sdkVersion >= Build.VERSION_CODES.LOLLIPOP && !config.isForceLegacy()) {
+            return new FallbackScannerBackend(leScanner(adapter, config), legacyScanner(adapter), listener);
+        }
+        return new LegacyScannerBackend(adapter, listener);
+    }
+
+    private static IScanSourceFactory leScanner(final BluetoothAdapter adapter, final ScanConfig config) {
+        return new IScanSourceFactory() {
+            @Override
+            public IScannerBackend create(IScanFrameListener listener) {
+                return new LeScannerBackend(adapter, config, listener);
+            }
+        };
+    }
+
+    private static IScanSourceFactory legacyScanner(final BluetoothAdapter adapter) {
+        return new IScanSourceFactory() {
+            @Override
+            public IScannerBackend create(IScanFrameListener listener) {
+                return new LegacyScannerBackend(adapter, listener);
+            }
+        };
+    }
+
+    /**
+     * create a factory of simulated sources for the specified population
+     *
+     * @param population simulated population
+     * @param clock      clock used to schedule frames (should be the clock used to timestamp frames)
+     * @return
+     */
+    public static IScanSourceFactory simulated(final SimulatedPopulation population, final IClock clock) {
+        return new IScanSourceFactory() {
+            @Override
+            public IScannerBackend create(IScanFrameListener listener) {
+                return new SimulatedScannerBackend(population, clock, listener);
+            }
+        };
+    }
+}
@@ -0,0 +1,278 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADCursor;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.IScanSourceFactory;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.IScannerBackend;
+import com.github.akinaru.bleanalyzer.inter.IReplayListener;
+import com.github.akinaru.bleanalyzer.utils.AddressUtils;
+import com.github.akinaru.bleanalyzer.utils.LongObjectHashMap;
+import com.github.akinaru.bleanalyzer.utils.VirtualClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scan source replaying a capture log through the frame listener
+ * <p/>
+ * the virtual clock is set to each recorded timestamp before its frame is delivered, and measurement ticks are
+ * emitted at recorded time boundaries, so computed rates match the original run whatever the replay speed.
+ * Frames are paced on wall clock time divided by speed, or delivered as fast as possible
+ *
+ * @author Bertrand Martel
+ */
+public class ReplayEngine implements IScannerBackend {
+
+    private final static String TAG = ReplayEngine.class.getSimpleName();
+
+    public final static double SPEED_REAL_TIME = 1;
+
+    public final static double SPEED_AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    /**
+     * default period of measurement ticks in virtual time
+     */
+    public final static long DEFAULT_TICK_PERIOD = 1000;
+
+    private final static String NO_NAME = "";
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private final double speed;
+
+    private final long tickPeriod;
+
+    private final VirtualClock clock;
+
+    private final IScanFrameListener frameListener;
+
+    private final IReplayListener replayListener;
+
+    private Player player = null;
+
+    /**
+     * create a factory of replay sources for a capture
+     *
+     * @param file           capture log
+     * @param speed          replay speed (SPEED_REAL_TIME, accelerated factor or SPEED_AS_FAST_AS_POSSIBLE)
+     * @param clock          clock used to timestamp frames and measurements, driven during replay
+     * @param replayListener listener receiving measurement ticks and end of replay
+     * @return
+     */
+    public static IScanSourceFactory factory(final File file, final double speed, final VirtualClock clock,
+                                             final IReplayListener replayListener) {
+        return new IScanSourceFactory() {
+            @Override
+            public IScannerBackend create(IScanFrameListener listener) {
+                return new ReplayEngine(file, speed, DEFAULT_TICK_PERIOD, clock, listener, replayListener);
+            }
+        };
+    }
+
+    public ReplayEngine(File file, double speed, long tickPeriod, VirtualClock clock, IScanFrameListener frameListener,
+                        IReplayListener replayListener) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("replay speed must be positive");
+        }
+        if (tickPeriod <= 0) {
+            throw new IllegalArgumentException("tick period must be positive");
+        }
+        this.file = file;
+        this.speed = speed;
+        this.tickPeriod = tickPeriod;
+        this.clock = clock;
+        this.frameListener = frameListener;
+        this.replayListener = replayListener;
+    }
+
+    @Override
+    public void setDeviceFilter(DeviceFilter filter) {
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (player != null) {
+            return false;
+        }
+        player = new Player();
+        new Thread(player, "capture-replay").start();
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (player != null) {
+            player.running = false;
+            player = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isScanning() {
+        return player != null;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    private class Player implements Runnable {
+
+        private volatile boolean running = true;
+
+        /**
+         * device names found in payloads, cached by address
+         */
+        private final LongObjectHashMap<String> names = new LongObjectHashMap<>();
+
+        private final LongObjectHashMap<String> addresses = new LongObjectHashMap<>();
+
+        private final ADCursor adCursor = new ADCursor();
+
+        @Override
+        public void run() {
+
+            long count = 0;
+            boolean completed = false;
+
+            CaptureReader reader = null;
+
+            try {
+                reader = new CaptureReader(file);
+
+                CaptureFrame frame = new CaptureFrame();
+
+                long firstTimestamp = -1;
+                long nextTick = 0;
+                long wallStart = System.nanoTime();
+
+                while (running && reader.next(frame)) {
+
+                    long ts = frame.getTimestamp();
+
+                    if (firstTimestamp == -1) {
+                        firstTimestamp = ts;
+                        nextTick = ts + tickPeriod;
+                    }
+
+                    while (running && ts >= nextTick) {
+                        waitFor(nextTick - firstTimestamp, wallStart);
+                        clock.setTime(nextTick);
+                        replayListener.onReplayTick(nextTick);
+                        nextTick += tickPeriod;
+                    }
+
+                    waitFor(ts - firstTimestamp, wallStart);
+
+                    if (!running) {
+                        break;
+                    }
+                    clock.setTime(ts);
+
+                    long address48 = frame.getAddress48();
+                    String name = resolveName(address48, frame.getPayload());
+
+                    frameListener.onScanFrame(resolveAddress(address48), name == NO_NAME ? null : name,
+                            frame.getRssi(), frame.getPayload(), 0);
+                    count++;
+                }
+
+                if (running && firstTimestamp != -1) {
+                    //last partial measurement window
+                    clock.setTime(nextTick);
+                    replayListener.onReplayTick(nextTick);
+                }
+                completed = running;
+
+            } catch (IOException e) {
+                Log.e(TAG, "replay of " + file.getName() + " failed", e);
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        Log.e(TAG, "capture close failed", e);
+                    }
+                }
+            }
+            replayListener.onReplayEnd(count, completed);
+        }
+
+        /**
+         * wait until wall clock time matches a recorded time offset at replay speed
+         */
+        private void waitFor(long recordedOffset, long wallStart) {
+
+            if (speed == SPEED_AS_FAST_AS_POSSIBLE) {
+                return;
+            }
+            long deadline = wallStart + (long) (TimeUnit.MILLISECONDS.toNanos(recordedOffset) / speed);
+            long remaining;
+
+            while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+
+        private String resolveAddress(long address48) {
+            String address = addresses.get(address48);
+            if (address == null) {
+                address = AddressUtils.format(address48);
+                addresses.put(address48, address);
+            }
+            return address;
+        }
+
+        /**
+         * local name advertised in payload, cached by address
+         */
+        private String resolveName(long address48, byte[] payload) {
+
+            String name = names.get(address48);
+
+            if (name == null || name == NO_NAME) {
+                name = NO_NAME;
+                adCursor.reset(payload);
+                while (adCursor.next()) {
+                    if (adCursor.isLocalName()) {
+                        name = new String(payload, adCursor.getOffset(), adCursor.getLength(), UTF8);
+                        break;
+                    }
+                }
+                names.put(address48, name);
+            }
+            return name;
+        }
+    }
+}
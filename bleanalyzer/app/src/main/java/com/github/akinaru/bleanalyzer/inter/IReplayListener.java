@@ -0,0 +1,42 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.inter;
+
+/**
+ * Listener for capture replay progress
+ *
+ * @author Bertrand Martel
+ */
+public interface IReplayListener {
+
+    /**
+     * virtual time reached a measurement tick
+     *
+     * @param timestamp virtual time in milliseconds
+     */
+    void onReplayTick(long timestamp);
+
+    /**
+     * replay is over
+     *
+     * @param frameCount number of frames replayed
+     * @param completed  true if the whole capture has been replayed, false if replay was stopped or failed
+     */
+    void onReplayEnd(long frameCount, boolean completed);
+}
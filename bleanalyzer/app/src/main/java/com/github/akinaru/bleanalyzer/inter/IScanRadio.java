@@ -18,37 +18,29 @@
  */
 package com.github.akinaru.bleanalyzer.inter;
 
-import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
-
-import java.util.List;
-
-public interface IMeasurement {
-
-    /**
-     * get list of total packet received timestamp
-     *
-     * @return
-     */
-    List<Long> getHistoryList();
+/**
+ * Radio scan driven by the scan session manager
+ *
+ * @author Bertrand Martel
+ */
+public interface IScanRadio {
 
     /**
-     * set the bluetooth device to track
+     * start radio scan
      *
-     * @param btDevice
+     * @return true if scan has been started
      */
-    void setBtDevice(BluetoothObject btDevice);
+    boolean startRadioScan();
 
     /**
-     * retrieve the tracked bluetooth device
-     *
-     * @return
+     * stop radio scan
      */
-    BluetoothObject getBtDevice();
+    void stopRadioScan();
 
     /**
-     * define if a tracked device has been selected by user
+     * get radio scan state
      *
      * @return
      */
-    boolean isSelectionningDevice();
+    boolean isRadioScanning();
 }
@@ -23,16 +23,35 @@ import android.bluetooth.BluetoothDevice;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.IBinder;
+import android.util.Log;
 
 import com.github.akinaru.bleanalyzer.bluetooth.BluetoothCustomManager;
 import com.github.akinaru.bleanalyzer.bluetooth.connection.IBluetoothDeviceConn;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
 import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BroadcastEventBridge;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.IScanSourceFactory;
+import com.github.akinaru.bleanalyzer.bluetooth.scanner.ScanConfig;
+import com.github.akinaru.bleanalyzer.capture.CaptureFormat;
+import com.github.akinaru.bleanalyzer.capture.CaptureWriter;
+import com.github.akinaru.bleanalyzer.capture.ReplayEngine;
 import com.github.akinaru.bleanalyzer.inter.IADListener;
-import com.github.akinaru.bleanalyzer.inter.IMeasurement;
+import com.github.akinaru.bleanalyzer.inter.IDeviceMeasureListener;
+import com.github.akinaru.bleanalyzer.inter.IReplayListener;
+import com.github.akinaru.bleanalyzer.inter.IScanRadio;
 import com.github.akinaru.bleanalyzer.inter.IScheduledMeasureListener;
-
-import java.util.ArrayList;
-import java.util.Date;
+import com.github.akinaru.bleanalyzer.measurement.DeviceMeasurement;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementEngine;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementSession;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
+import com.github.akinaru.bleanalyzer.utils.MonotonicClock;
+import com.github.akinaru.bleanalyzer.utils.VirtualClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,10 +65,44 @@ import java.util.concurrent.TimeUnit;
  *
  * @author Bertrand Martel
  */
-public class BtAnalyzerService extends Service implements IMeasurement {
+public class BtAnalyzerService extends Service {
 
     private String TAG = BtAnalyzerService.class.getSimpleName();
 
+    /**
+     * maximum number of packet timestamp retained in history of each device
+     */
+    private final static int HISTORY_MAX_CAPACITY = 16384;
+
+    /**
+     * default retention window for packet history of each device
+     */
+    private final static long HISTORY_DEFAULT_RETENTION = 60000;
+
+    /**
+     * width of frame counter buckets (counting resolution)
+     */
+    private final static int COUNTER_BUCKET_MILLIS = 50;
+
+    /**
+     * number of frame counter buckets (defines maximum measurement window)
+     */
+    private final static int COUNTER_BUCKET_COUNT = 1201;
+
+    /**
+     * directory of capture logs in application files directory
+     */
+    private final static String CAPTURE_DIRECTORY = "captures";
+
+    /**
+     * filter installed on creation, keeping only devices analyzed by this application
+     */
+    private final static DeviceFilter DEFAULT_FILTER = new DeviceFilter.Builder()
+            .addNamePrefix("DK_IoT")
+            .addNamePrefix("KX_IoT")
+            .addNamePrefix("RFdroid")
+            .build();
+
     /**
      * Service binder
      */
@@ -59,42 +112,78 @@ public class BtAnalyzerService extends Service implements IMeasurement {
         btManager.setADListener(listener);
     }
 
-    private IScheduledMeasureListener scheduledMeasureListener = null;
+    /**
+     * get read only history of the tracked device
+     *
+     * @return history or null if no device is tracked
+     */
+    public ILongHistory getHistory() {
+        return measurement.getHistory();
+    }
 
-    private BluetoothObject btDevice = null;
+    /**
+     * set window used to compute reception rate and packet count on each measurement
+     *
+     * @param windowMillis window in milliseconds, multiple of measurement resolution (50ms)
+     */
+    public void setMeasurementWindow(int windowMillis) {
+        measurement.setMeasurementWindow(windowMillis);
+    }
 
-    private boolean selectionning = false;
+    public int getMeasurementWindow() {
+        return measurement.getMeasurementWindow();
+    }
 
-    @Override
-    public List<Long> getHistoryList() {
-        return history;
+    /**
+     * set retention window of packet history. Total packet count and first packet timestamp are kept regardless
+     *
+     * @param retentionMillis retention window in milliseconds or LongRingBuffer.RETENTION_UNLIMITED
+     */
+    public void setHistoryRetention(long retentionMillis) {
+        measurement.setHistoryRetention(retentionMillis);
     }
 
-    @Override
     public void setBtDevice(BluetoothObject btDevice) {
-        this.btDevice = btDevice;
+        measurement.setBtDevice(btDevice);
     }
 
-    @Override
     public BluetoothObject getBtDevice() {
-        return btDevice;
+        return measurement.getBtDevice();
     }
 
-    @Override
     public boolean isSelectionningDevice() {
-        return selectionning;
+        return measurement.isSelectionningDevice();
     }
 
     public void setSelectionningDevice(boolean state) {
-        this.selectionning = state;
+        measurement.setSelectionningDevice(state);
     }
 
     public List<Integer> getGlobalSumPerSecond() {
-        return globalSumPerSecond;
+        return measurement.getGlobalSumPerSecond();
     }
 
     public List<Integer> getGlobalPacketReceivedPerSecond() {
-        return globalPacketReceivedPerSecond;
+        return measurement.getGlobalPacketReceivedPerSecond();
+    }
+
+    /**
+     * retrieve measurement of a device
+     *
+     * @param deviceAddress device address
+     * @return measurement or null if no packet has been received from this device
+     */
+    public DeviceMeasurement getDeviceMeasurement(String deviceAddress) {
+        return measurement.getDeviceMeasurement(deviceAddress);
+    }
+
+    /**
+     * live view of all measured devices
+     *
+     * @return
+     */
+    public Collection<DeviceMeasurement> getDeviceMeasurements() {
+        return measurement.getDeviceMeasurements();
     }
 
     /*
@@ -108,157 +197,143 @@ public class BtAnalyzerService extends Service implements IMeasurement {
 
     private BluetoothCustomManager btManager = null;
 
+    /**
+     * optional bridge republishing events as global broadcasts
+     */
+    private BroadcastEventBridge broadcastBridge = null;
+
     private ScheduledExecutorService executor;
 
     private ScheduledFuture<?> measurementTask;
 
-    private List<Long> history = new ArrayList<>();
-    private List<Integer> globalSumPerSecond = new ArrayList<>();
-    private List<Integer> globalPacketReceivedPerSecond = new ArrayList<>();
+    /**
+     * long-lived radio scan shared by all screens
+     */
+    private ScanSessionManager scanSession;
 
-    @Override
-    public void onCreate() {
+    /**
+     * system monotonic clock
+     */
+    private final IClock systemClock = new MonotonicClock();
 
-        //initiate bluetooth manager object used to manage all Android Bluetooth API
-        btManager = new BluetoothCustomManager(this, this);
+    /**
+     * clock shared by frame timestamps and measurement ticks, driven by capture replay
+     */
+    private final VirtualClock clock = new VirtualClock(systemClock);
 
-        //initialize bluetooth adapter
-        btManager.init(this);
-        executor = Executors.newScheduledThreadPool(1);
+    /**
+     * true while a capture is being replayed
+     */
+    private volatile boolean replaying = false;
 
-        setMeasurementTask();
-    }
+    /**
+     * identifies current replay : a stopped replay may notify its end after a new one has started
+     */
+    private volatile long replayGeneration = 0;
 
     /**
-     * start measurement task
+     * default filter was replaced by ACCEPT_ALL while a scan source is set
      */
-    public void setMeasurementTask() {
+    private boolean defaultFilterLifted = false;
 
-        stopMeasurement();
-        history.clear();
-        globalSumPerSecond.clear();
-        globalPacketReceivedPerSecond.clear();
+    /**
+     * create listener of a replay, ignoring notifications once another replay has started
+     *
+     * @param generation replay generation
+     * @return
+     */
+    private IReplayListener createReplayListener(final long generation) {
 
-        if (scheduledMeasureListener != null)
-            scheduledMeasureListener.onMeasureClear();
+        return new IReplayListener() {
 
-        measurementTask = executor.scheduleAtFixedRate(new Runnable() {
             @Override
-            public void run() {
-
-                if (btDevice != null && btDevice.getAdvertizingInterval() > 0 && history.size() > 0) {
-
-                    final long ts = new Date().getTime();
-                    final List<Long> historyCopy = new ArrayList<Long>(history);
-
-                    int packetReceptionRate = calculateReceptionRate(historyCopy, ts);
-
-                    int rateCurrentSecond = calculateRateLastMillis(1000, historyCopy, ts);
-
-                    globalSumPerSecond.add(rateCurrentSecond);
-
-                    int totalPacketReceived = calculateTotalPacketReceivedMillis(1000, historyCopy, ts);
-
-                    globalPacketReceivedPerSecond.add(totalPacketReceived);
-
-                    if (packetReceptionRate > 100)
-                        packetReceptionRate = 100;
-
-                    final int finalPacketReceptionRate = packetReceptionRate;
-
-                    if (scheduledMeasureListener != null) {
-                        scheduledMeasureListener.onNewMeasure(getSamplingTime(ts),
-                                finalPacketReceptionRate,
-                                globalSumPerSecond,
-                                globalPacketReceivedPerSecond,
-                                getAveragePacket(ts, historyCopy));
-                    }
-
-                } else if (btDevice != null && history.size() > 0) {
-
-                    final long ts = new Date().getTime();
-                    final List<Long> historyCopy = new ArrayList<Long>(history);
-
-                    int totalPacketReceived = calculateTotalPacketReceivedMillis(1000, historyCopy, ts);
-
-                    globalPacketReceivedPerSecond.add(totalPacketReceived);
-
-                    if (scheduledMeasureListener != null) {
-                        scheduledMeasureListener.onNewMeasure(getSamplingTime(ts),
-                                -1,
-                                null,
-                                globalPacketReceivedPerSecond,
-                                getAveragePacket(ts, historyCopy));
-                    }
-
+            public void onReplayTick(long timestamp) {
+                if (generation == replayGeneration) {
+                    measurement.tick(timestamp);
                 }
-
             }
-        }, 0, 1, TimeUnit.SECONDS);
-    }
 
-    private float getAveragePacket(long currentTS, List<Long> historyList) {
-
-        if (history.size() > 0) {
-            if ((currentTS - history.get(0)) != 0) {
-                return ((historyList.size() * 1000) / (float) ((currentTS - historyList.get(0))));
+            @Override
+            public void onReplayEnd(long frameCount, boolean completed) {
+                Log.v(TAG, "replay " + (completed ? "completed" : "interrupted") + " after " + frameCount + " frames");
+                finishReplay(generation);
             }
-            return 1;
-        }
-        return 0;
-    }
-
-    private long getSamplingTime(long ts) {
-        return (ts - history.get(0)) / 1000;
+        };
     }
 
-    private int calculateReceptionRate(List<Long> historyList, long ts) {
+    /**
+     * measurement of all devices indexed by address and of the tracked device
+     */
+    private final MeasurementSession measurement = new MeasurementSession(
+            new MeasurementEngine(HISTORY_MAX_CAPACITY, HISTORY_DEFAULT_RETENTION, COUNTER_BUCKET_MILLIS, COUNTER_BUCKET_COUNT),
+            clock);
+
+    private final Runnable measurementRunnable = new Runnable() {
+        @Override
+        public void run() {
+            measurement.tick();
+        }
+    };
 
-        if (btDevice.getAdvertizingInterval() >= (ts - historyList.get(0)))
-            return 100;
-        return (int) ((historyList.size() * 100) / ((ts - historyList.get(0)) / btDevice.getAdvertizingInterval()));
-    }
+    @Override
+    public void onCreate() {
 
-    private int calculateTotalPacketReceivedMillis(int millis, List<Long> historyList, long ts) {
+        //initiate bluetooth manager object used to manage all Android Bluetooth API
+        btManager = new BluetoothCustomManager(this, measurement);
 
-        long currentTS = ts - millis;
+        //initialize bluetooth adapter
+        btManager.init(this);
 
-        int count = 0;
-        boolean control = false;
+        btManager.setDeviceFilter(DEFAULT_FILTER);
+        executor = Executors.newScheduledThreadPool(1);
 
-        for (int i = historyList.size() - 1; i >= 0 && !control; i--) {
+        scanSession = new ScanSessionManager(new IScanRadio() {
+            @Override
+            public boolean startRadioScan() {
+                if (replaying) {
+                    return false;
+                }
+                setMeasurementTask();
+                return btManager.scanLeDevice();
+            }
 
-            if (historyList.get(i) <= currentTS)
-                control = true;
-            else {
-                count++;
+            @Override
+            public void stopRadioScan() {
+                if (replaying) {
+                    return;
+                }
+                stopMeasurement();
+                btManager.stopScan();
             }
-        }
-        return count;
-    }
 
-    private int calculateRateLastMillis(int millis, List<Long> historyList, long ts) {
+            @Override
+            public boolean isRadioScanning() {
+                return btManager.isScanning();
+            }
+        }, systemClock, executor);
 
-        long currentTS = ts - millis;
+        setMeasurementTask();
+    }
 
-        int count = 0;
-        boolean control = false;
+    /**
+     * start measurement task
+     */
+    public void setMeasurementTask() {
 
-        for (int i = historyList.size() - 1; i >= 0 && !control; i--) {
+        stopMeasurement();
+        measurement.clear();
 
-            if (historyList.get(i) <= currentTS)
-                control = true;
-            else {
-                count++;
-            }
-        }
-        return (int) ((count * 100) / (millis / btDevice.getAdvertizingInterval()));
+        measurementTask = executor.scheduleAtFixedRate(measurementRunnable, 0, 1, TimeUnit.SECONDS);
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        scanSession.releaseAll();
+        stopReplay();
+        stopCapture();
         stopMeasurement();
+        executor.shutdownNow();
     }
 
     @Override
@@ -281,7 +356,42 @@ public class BtAnalyzerService extends Service implements IMeasurement {
      * @param listener
      */
     public void setScheduledMeasureListener(IScheduledMeasureListener listener) {
-        scheduledMeasureListener = listener;
+        measurement.setScheduledMeasureListener(listener);
+    }
+
+    /**
+     * define a listener for per device measurement events
+     *
+     * @param listener
+     */
+    public void setDeviceMeasureListener(IDeviceMeasureListener listener) {
+        measurement.setDeviceMeasureListener(listener);
+    }
+
+    /**
+     * bus publishing scan and connection events
+     *
+     * @return
+     */
+    public BluetoothEventBus getEventBus() {
+        return btManager.getEventBus();
+    }
+
+    /**
+     * republish Bluetooth events as global broadcasts (BluetoothEvents actions) for receivers not using the event bus
+     *
+     * @param enabled
+     */
+    public void setBroadcastBridgeEnabled(boolean enabled) {
+        if (enabled) {
+            if (broadcastBridge == null) {
+                broadcastBridge = new BroadcastEventBridge(this);
+                btManager.getEventBus().subscribe(broadcastBridge);
+            }
+        } else if (broadcastBridge != null) {
+            btManager.getEventBus().unsubscribe(broadcastBridge);
+            broadcastBridge = null;
+        }
     }
 
     /**
@@ -294,11 +404,40 @@ public class BtAnalyzerService extends Service implements IMeasurement {
     }
 
     /**
-     * stop bluetooth scan
+     * acquire the shared scan for a subscriber : radio is started on first acquisition only
+     *
+     * @param subscriber subscriber name (ScanSessionManager.SUBSCRIBER_*)
+     * @return true if radio is scanning or its start has been scheduled
      */
-    public void stopScan() {
-        stopMeasurement();
-        btManager.stopScan();
+    public boolean acquireScan(String subscriber) {
+        return scanSession.acquire(subscriber);
+    }
+
+    /**
+     * release the shared scan for a subscriber : radio is stopped shortly after last subscriber has released it
+     *
+     * @param subscriber subscriber name (ScanSessionManager.SUBSCRIBER_*)
+     */
+    public void releaseScan(String subscriber) {
+        scanSession.release(subscriber);
+    }
+
+    /**
+     * check if a subscriber currently holds the shared scan
+     *
+     * @param subscriber subscriber name
+     * @return
+     */
+    public boolean isScanAcquired(String subscriber) {
+        return scanSession.isAcquired(subscriber);
+    }
+
+    /**
+     * logical refresh : clear scanned devices and restart measurements without restarting the radio
+     */
+    public void refreshScan() {
+        btManager.clearScanningList();
+        setMeasurementTask();
     }
 
     /**
@@ -321,20 +460,182 @@ public class BtAnalyzerService extends Service implements IMeasurement {
     }
 
     /**
-     * start Bluetooth scan
+     * clear bluetooth scanning list
+     */
+    public void clearScanningList() {
+        btManager.clearScanningList();
+    }
+
+    /**
+     * set radio scan configuration (scan mode, match mode, controller batching and filtering)
      *
-     * @return
+     * @param config scan configuration
      */
-    public boolean startScan() {
-        setMeasurementTask();
-        return btManager.scanLeDevice();
+    public void setScanConfig(ScanConfig config) {
+        btManager.setScanConfig(config);
     }
 
     /**
-     * clear bluetooth scanning list
+     * start recording every scanned frame to a new capture log in application files directory
+     *
+     * @return capture file
+     * @throws IOException
      */
-    public void clearScanningList() {
+    public File startCapture() throws IOException {
+        File dir = new File(getFilesDir(), CAPTURE_DIRECTORY);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        File file = new File(dir, "capture-" + System.currentTimeMillis() + CaptureFormat.EXTENSION);
+        startCapture(file);
+        return file;
+    }
+
+    /**
+     * start recording every scanned frame to a capture log, replacing current capture if any
+     *
+     * @param file capture file
+     * @throws IOException
+     */
+    public synchronized void startCapture(File file) throws IOException {
+        stopCapture();
+        //same time base as frame timestamps
+        btManager.setCaptureWriter(new CaptureWriter(file, clock.currentTimeMillis()));
+    }
+
+    /**
+     * stop recording scanned frames
+     *
+     * @return capture file or null if no capture was running
+     */
+    public synchronized File stopCapture() {
+
+        CaptureWriter writer = btManager.getCaptureWriter();
+        if (writer == null) {
+            return null;
+        }
+        btManager.setCaptureWriter(null);
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.e(TAG, "capture " + writer.getFile().getName() + " is incomplete", e);
+        }
+        Log.v(TAG, "capture stopped : " + writer.getFrameCount() + " frames, " + writer.getDroppedCount() + " dropped");
+        return writer.getFile();
+    }
+
+    public boolean isCapturing() {
+        return btManager.getCaptureWriter() != null;
+    }
+
+    /**
+     * replay a capture log through the scan and measurement pipeline in place of the radio scan. Measurements are
+     * computed on recorded time, so rates match the original run at any speed
+     *
+     * @param file  capture log
+     * @param speed ReplayEngine.SPEED_REAL_TIME, an acceleration factor or ReplayEngine.SPEED_AS_FAST_AS_POSSIBLE
+     */
+    public synchronized void startReplay(File file, double speed) {
+
+        if (replaying) {
+            stopReplay();
+        }
+        scanSession.releaseAll();
+        stopMeasurement();
         btManager.clearScanningList();
+        measurement.clear();
+
+        replaying = true;
+        replayGeneration++;
+        btManager.setScanSourceFactory(ReplayEngine.factory(file, speed, clock, createReplayListener(replayGeneration)));
+        btManager.scanLeDevice();
+    }
+
+    /**
+     * interrupt capture replay
+     */
+    public void stopReplay() {
+        finishReplay(replayGeneration);
+    }
+
+    public boolean isReplaying() {
+        return replaying;
+    }
+
+    /**
+     * stop replay source and give scan back to the radio. Replayed measurements are kept until next scan
+     *
+     * @param generation generation of the replay to stop, ignored if it is not the current one
+     */
+    private synchronized void finishReplay(long generation) {
+        if (!replaying || generation != replayGeneration) {
+            return;
+        }
+        replaying = false;
+        btManager.stopScan();
+        setScanSource(null);
+        clock.release();
+        scanSession.resume();
+    }
+
+    /**
+     * replace radio scanner by another scan source, for instance ScannerBackendFactory.simulated(population, getClock())
+     * <p/>
+     * simulated devices are not named like analyzed devices : default filter is lifted until radio is used again. A
+     * filter set with setDeviceFilter() is kept
+     *
+     * @param factory scan source factory or null to scan with the radio
+     */
+    public synchronized void setScanSource(IScanSourceFactory factory) {
+        if (factory != null && btManager.getDeviceFilter() == DEFAULT_FILTER) {
+            btManager.setDeviceFilter(DeviceFilter.ACCEPT_ALL);
+            defaultFilterLifted = true;
+        } else if (factory == null && defaultFilterLifted) {
+            btManager.setDeviceFilter(DEFAULT_FILTER);
+            defaultFilterLifted = false;
+        }
+        btManager.setScanSourceFactory(factory);
+    }
+
+    /**
+     * clock shared by frame timestamps and measurement ticks
+     *
+     * @return
+     */
+    public IClock getClock() {
+        return clock;
+    }
+
+    /**
+     * set filter applied to scanned devices before any processing
+     *
+     * @param filter device filter (DeviceFilter.ACCEPT_ALL to disable filtering)
+     */
+    public synchronized void setDeviceFilter(DeviceFilter filter) {
+        defaultFilterLifted = false;
+        btManager.setDeviceFilter(filter);
+    }
+
+    public DeviceFilter getDeviceFilter() {
+        return btManager.getDeviceFilter();
+    }
+
+    /**
+     * set time to live of a device not seen anymore, after which it is reported as lost
+     *
+     * @param ttlMillis time to live in milliseconds
+     */
+    public void setDeviceTimeToLive(int ttlMillis) {
+        btManager.setDeviceTimeToLive(ttlMillis);
+    }
+
+    /**
+     * set window over which device discoveries and updates are batched before being published
+     *
+     * @param windowMillis batch window in milliseconds
+     */
+    public void setDiscoveryBatchWindow(int windowMillis) {
+        btManager.setDiscoveryBatchWindow(windowMillis);
     }
 
     /**
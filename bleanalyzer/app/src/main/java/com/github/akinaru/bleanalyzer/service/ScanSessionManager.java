@@ -0,0 +1,231 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.service;
+
+import android.util.Log;
+
+import com.github.akinaru.bleanalyzer.inter.IScanRadio;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single long-lived radio scan shared by all logical subscribers
+ * <p/>
+ * each screen acquires the scan under its own subscriber name and releases it when it does not need it anymore :
+ * the radio is started on first acquisition and stopped a short delay after last release, so that navigating
+ * between screens does not restart it. Radio starts are rate limited to stay under Android scan throttling
+ * (5 starts per 30 seconds), a start exceeding the budget is deferred instead of being silently dropped by the system.
+ *
+ * @author Bertrand Martel
+ */
+public class ScanSessionManager {
+
+    private final static String TAG = ScanSessionManager.class.getSimpleName();
+
+    public final static String SUBSCRIBER_SCAN_LIST = "scanList";
+
+    public final static String SUBSCRIBER_ANALYZER = "analyzer";
+
+    public final static String SUBSCRIBER_RFDROID = "rfdroid";
+
+    /**
+     * maximum number of radio starts in a throttle window (one start of Android budget is kept for scan
+     * configuration changes and scanner fallback which restart the radio outside of the session)
+     */
+    public final static int MAX_RADIO_STARTS = 4;
+
+    /**
+     * Android scan throttle window
+     */
+    public final static long THROTTLE_WINDOW = 30000;
+
+    /**
+     * delay before stopping the radio after last subscriber has released the scan
+     */
+    public final static long DEFAULT_STOP_DELAY = 2000;
+
+    private final IScanRadio radio;
+
+    private final IClock clock;
+
+    private final ScheduledExecutorService executor;
+
+    private final Set<String> subscribers = new HashSet<>();
+
+    /**
+     * timestamps of last radio starts (circular)
+     */
+    private final long[] startTimes = new long[MAX_RADIO_STARTS];
+
+    private int startIndex = 0;
+
+    private int startCount = 0;
+
+    private ScheduledFuture<?> pendingStart = null;
+
+    private ScheduledFuture<?> pendingStop = null;
+
+    private long stopDelay = DEFAULT_STOP_DELAY;
+
+    private final Runnable startRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ScanSessionManager.this) {
+                pendingStart = null;
+                if (!subscribers.isEmpty()) {
+                    ensureRadio();
+                }
+            }
+        }
+    };
+
+    private final Runnable stopRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (ScanSessionManager.this) {
+                pendingStop = null;
+                if (subscribers.isEmpty() && radio.isRadioScanning()) {
+                    Log.v(TAG, "no more scan subscriber, stopping radio");
+                    radio.stopRadioScan();
+                }
+            }
+        }
+    };
+
+    public ScanSessionManager(IScanRadio radio, IClock clock, ScheduledExecutorService executor) {
+        this.radio = radio;
+        this.clock = clock;
+        this.executor = executor;
+    }
+
+    /**
+     * acquire the scan for a subscriber, starting the radio if needed
+     *
+     * @param subscriber subscriber name
+     * @return true if radio is scanning or its start has been scheduled
+     */
+    public synchronized boolean acquire(String subscriber) {
+        subscribers.add(subscriber);
+        if (pendingStop != null) {
+            pendingStop.cancel(false);
+            pendingStop = null;
+        }
+        return ensureRadio();
+    }
+
+    /**
+     * release the scan for a subscriber. Radio is stopped after stop delay if no subscriber is left
+     *
+     * @param subscriber subscriber name
+     */
+    public synchronized void release(String subscriber) {
+        if (!subscribers.remove(subscriber) || !subscribers.isEmpty()) {
+            return;
+        }
+        if (pendingStart != null) {
+            pendingStart.cancel(false);
+            pendingStart = null;
+        }
+        if (pendingStop == null && radio.isRadioScanning()) {
+            pendingStop = executor.schedule(stopRunnable, stopDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * release the scan for all subscribers and stop the radio immediately
+     */
+    public synchronized void releaseAll() {
+        subscribers.clear();
+        if (pendingStart != null) {
+            pendingStart.cancel(false);
+            pendingStart = null;
+        }
+        if (pendingStop != null) {
+            pendingStop.cancel(false);
+            pendingStop = null;
+        }
+        if (radio.isRadioScanning()) {
+            radio.stopRadioScan();
+        }
+    }
+
+    /**
+     * start the radio again if subscribers hold the scan (radio has been used by something else meanwhile)
+     */
+    public synchronized void resume() {
+        if (!subscribers.isEmpty()) {
+            ensureRadio();
+        }
+    }
+
+    public synchronized boolean isAcquired(String subscriber) {
+        return subscribers.contains(subscriber);
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * set delay before stopping the radio after last subscriber has released the scan
+     *
+     * @param delayMillis delay in milliseconds
+     */
+    public synchronized void setStopDelay(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("stop delay must be positive");
+        }
+        stopDelay = delayMillis;
+    }
+
+    /**
+     * start the radio now if start budget allows it, or schedule it when oldest start leaves the throttle window
+     */
+    private boolean ensureRadio() {
+
+        if (radio.isRadioScanning() || pendingStart != null) {
+            return true;
+        }
+
+        long now = clock.currentTimeMillis();
+        long delay = startCount < MAX_RADIO_STARTS ? 0 : startTimes[startIndex] + THROTTLE_WINDOW - now;
+
+        if (delay > 0) {
+            Log.v(TAG, "scan start budget exhausted, deferring radio start by " + delay + "ms");
+            pendingStart = executor.schedule(startRunnable, delay, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        if (!radio.startRadioScan()) {
+            //nothing started (replay, adapter off) : budget is kept for next acquisition or resume
+            return false;
+        }
+        startTimes[startIndex] = now;
+        startIndex = (startIndex + 1) % MAX_RADIO_STARTS;
+        if (startCount < MAX_RADIO_STARTS) {
+            startCount++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.adapter;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Batched updates of scanned devices model and their notifications
+ *
+ * @author Bertrand Martel
+ */
+public class ScanDeviceModelTest {
+
+    /**
+     * rows of an adapter maintained from notifications only, inserted rows are bound (null until then) when checked
+     */
+    private static class Rows implements ListUpdateCallback {
+
+        private final ArrayList<String> addresses = new ArrayList<>();
+
+        private int notificationCount;
+
+        private int changedCount;
+
+        @Override
+        public void onInserted(int position, int count) {
+            notificationCount++;
+            addresses.addAll(position, Collections.<String>nCopies(count, null));
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notificationCount++;
+            addresses.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            throw new AssertionError("rows never move");
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notificationCount++;
+            changedCount += count;
+        }
+    }
+
+    private ScanDeviceModel model;
+
+    private Rows rows;
+
+    @Before
+    public void setUp() {
+        model = new ScanDeviceModel();
+        rows = new Rows();
+        model.setUpdateCallback(rows);
+    }
+
+    private static BluetoothObject device(String address, int rssi) {
+        return new BluetoothObject(address, "device", 100, rssi);
+    }
+
+    private static List<BluetoothObject> devices(int rssi, String... addresses) {
+        List<BluetoothObject> list = new ArrayList<>();
+        for (String address : addresses) {
+            list.add(device(address, rssi));
+        }
+        return list;
+    }
+
+    private void assertRows(String... expected) {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < model.size(); i++) {
+            addresses.add(model.get(i).getDeviceAddress());
+        }
+        assertEquals(Arrays.asList(expected), addresses);
+        assertEquals(addresses.size(), rows.addresses.size());
+
+        for (int i = 0; i < addresses.size(); i++) {
+            //rows already bound must have been moved to the position of their device
+            if (rows.addresses.get(i) != null) {
+                assertEquals(addresses.get(i), rows.addresses.get(i));
+            }
+            rows.addresses.set(i, addresses.get(i));
+        }
+    }
+
+    @Test
+    public void insertionsAreMergedInAddressOrder() {
+
+        model.putAll(devices(-50, "00:05", "00:01", "00:03"));
+        assertRows("00:01", "00:03", "00:05");
+        assertEquals(1, rows.notificationCount);
+
+        rows.notificationCount = 0;
+        model.putAll(devices(-50, "00:06", "00:00", "00:04", "00:02"));
+        assertRows("00:00", "00:01", "00:02", "00:03", "00:04", "00:05", "00:06");
+        assertEquals(4, rows.notificationCount);
+    }
+
+    @Test
+    public void updatesAreNotifiedInPlace() {
+
+        model.putAll(devices(-50, "00:01", "00:02", "00:03"));
+        rows.notificationCount = 0;
+
+        model.putAll(devices(-60, "00:01", "00:02", "00:04"));
+        model.put(device("00:03", -50));
+
+        assertRows("00:01", "00:02", "00:03", "00:04");
+        assertEquals(2, rows.changedCount);
+        assertEquals(2, rows.notificationCount);
+        assertEquals(-60, model.get("00:02").getDeviceRssi());
+    }
+
+    @Test
+    public void duplicateInsertionKeepsLatest() {
+
+        model.putAll(Arrays.asList(device("00:02", -50), device("00:01", -50), device("00:02", -70)));
+
+        assertRows("00:01", "00:02");
+        assertEquals(-70, model.get(1).getDeviceRssi());
+    }
+
+    @Test
+    public void removalsAreCompactedInOnePass() {
+
+        model.putAll(devices(-50, "00:01", "00:02", "00:03", "00:04", "00:05", "00:06"));
+        rows.notificationCount = 0;
+
+        model.removeAll(devices(-50, "00:03", "00:02", "00:06", "00:09"));
+        assertRows("00:01", "00:04", "00:05");
+        assertEquals(2, rows.notificationCount);
+
+        assertEquals(1, model.indexOf("00:04"));
+        assertEquals(-1, model.indexOf("00:03"));
+        assertEquals(true, model.remove("00:01"));
+        assertEquals(false, model.remove("00:01"));
+        assertRows("00:04", "00:05");
+    }
+
+    @Test
+    public void clearRemovesAllRows() {
+
+        model.putAll(devices(-50, "00:01", "00:02"));
+        model.clear();
+
+        assertRows();
+        model.put(device("00:01", -50));
+        assertRows("00:01");
+    }
+}
@@ -0,0 +1,139 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.connection;
+
+import android.os.Build;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IDeviceInitListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Device initializations held until their completion
+ *
+ * @author Bertrand Martel
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.LOLLIPOP)
+public class DeviceInitExecutorTest {
+
+    private final static String ADDRESS = "00:11:22:33:44:55";
+
+    private final static long TIMEOUT = 2000;
+
+    /**
+     * time given to an initialization which must not start
+     */
+    private final static long NOT_STARTED_DELAY = 200;
+
+    private DeviceInitExecutor executor;
+
+    /**
+     * completion listeners of started initializations
+     */
+    private final BlockingQueue<IDeviceInitListener> started = new LinkedBlockingQueue<>();
+
+    /**
+     * initialization ending asynchronously, when the test calls its completion listener
+     */
+    private final IDeviceInitTask asyncInit = new IDeviceInitTask() {
+        @Override
+        public void run(IDeviceInitListener completion) {
+            started.add(completion);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        executor = new DeviceInitExecutor(DeviceInitExecutor.DEFAULT_POOL_SIZE);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        IDeviceInitListener completion;
+        while ((completion = started.poll()) != null) {
+            completion.onInit();
+        }
+    }
+
+    @Test
+    public void reconnectionWaitsForCompletion() throws InterruptedException {
+
+        executor.submit(ADDRESS, asyncInit);
+        IDeviceInitListener first = started.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(first);
+
+        executor.submit(ADDRESS, asyncInit);
+        assertNull(started.poll(NOT_STARTED_DELAY, TimeUnit.MILLISECONDS));
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(0, executor.getInitCount());
+
+        first.onInit();
+        //a second call is ignored
+        first.onInit();
+
+        assertNotNull(started.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(1, executor.getInitCount());
+    }
+
+    @Test
+    public void otherDevicesAreNotHeld() throws InterruptedException {
+
+        executor.submit(ADDRESS, asyncInit);
+        executor.submit("66:77:88:99:AA:BB", asyncInit);
+
+        assertNotNull(started.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNotNull(started.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void failedInitReleasesDevice() throws InterruptedException {
+
+        final CountDownLatch failing = new CountDownLatch(1);
+
+        executor.submit(ADDRESS, new IDeviceInitTask() {
+            @Override
+            public void run(IDeviceInitListener completion) {
+                failing.countDown();
+                throw new IllegalStateException("driver failure");
+            }
+        });
+        assertTrue(failing.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        executor.submit(ADDRESS, asyncInit);
+
+        assertNotNull(started.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+}
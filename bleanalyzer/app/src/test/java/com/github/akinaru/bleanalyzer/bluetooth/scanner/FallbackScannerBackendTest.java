@@ -0,0 +1,224 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.Build;
+
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Fallback to secondary scanner on primary scan failure
+ *
+ * @author Bertrand Martel
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.LOLLIPOP)
+public class FallbackScannerBackendTest {
+
+    private final static int SCAN_FAILED_APPLICATION_REGISTRATION_FAILED = 2;
+
+    /**
+     * scanner started or not as requested, failing on demand
+     */
+    private static class FakeScanner implements IScannerBackend {
+
+        private final String name;
+
+        private final boolean startResult;
+
+        private IScanFrameListener listener;
+
+        private DeviceFilter filter;
+
+        private boolean scanning;
+
+        private int startCount;
+
+        private int stopCount;
+
+        FakeScanner(String name, boolean startResult) {
+            this.name = name;
+            this.startResult = startResult;
+        }
+
+        IScanSourceFactory factory() {
+            return new IScanSourceFactory() {
+                @Override
+                public IScannerBackend create(IScanFrameListener frameListener) {
+                    listener = frameListener;
+                    return FakeScanner.this;
+                }
+            };
+        }
+
+        void fail(int errorCode) {
+            scanning = false;
+            listener.onScanFailed(errorCode);
+        }
+
+        @Override
+        public void setDeviceFilter(DeviceFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean start() {
+            startCount++;
+            scanning = startResult;
+            return startResult;
+        }
+
+        @Override
+        public void stop() {
+            stopCount++;
+            scanning = false;
+        }
+
+        @Override
+        public boolean isScanning() {
+            return scanning;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final List<Integer> failures = new ArrayList<>();
+
+    private final List<String> frames = new ArrayList<>();
+
+    private final IScanFrameListener listener = new IScanFrameListener() {
+        @Override
+        public void onScanFrame(BluetoothDevice device, int rssi, byte[] scanRecord, long ageMillis) {
+        }
+
+        @Override
+        public void onScanFrame(String address, String name, int rssi, byte[] scanRecord, long ageMillis) {
+            frames.add(address);
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            failures.add(errorCode);
+        }
+    };
+
+    @Test
+    public void primaryFailureStartsSecondary() {
+
+        FakeScanner primary = new FakeScanner("primary", true);
+        FakeScanner secondary = new FakeScanner("secondary", true);
+        DeviceFilter filter = new DeviceFilter.Builder().setRssiFloor(-80).build();
+
+        FallbackScannerBackend backend = new FallbackScannerBackend(primary.factory(), secondary.factory(), listener);
+        backend.setDeviceFilter(filter);
+
+        assertTrue(backend.start());
+        primary.listener.onScanFrame("C0:FF:EE:00:00:01", null, -60, null, 0);
+        primary.fail(SCAN_FAILED_APPLICATION_REGISTRATION_FAILED);
+
+        assertTrue(backend.isFallback());
+        assertTrue(backend.isScanning());
+        assertEquals("secondary", backend.getName());
+        assertEquals(1, primary.stopCount);
+        assertEquals(1, secondary.startCount);
+        assertSame(filter, secondary.filter);
+        assertTrue(failures.isEmpty());
+
+        //secondary scanner delivers frames to the listener directly
+        assertSame(listener, secondary.listener);
+        secondary.listener.onScanFrame("C0:FF:EE:00:00:02", null, -60, null, 0);
+        assertEquals(2, frames.size());
+
+        backend.stop();
+        assertEquals(1, secondary.stopCount);
+        assertTrue(backend.start());
+        assertEquals(2, secondary.startCount);
+        assertEquals(1, primary.startCount);
+    }
+
+    @Test
+    public void secondaryStartFailureIsForwarded() {
+
+        FakeScanner primary = new FakeScanner("primary", true);
+        FakeScanner secondary = new FakeScanner("secondary", false);
+
+        FallbackScannerBackend backend = new FallbackScannerBackend(primary.factory(), secondary.factory(), listener);
+
+        assertTrue(backend.start());
+        primary.fail(SCAN_FAILED_APPLICATION_REGISTRATION_FAILED);
+
+        assertTrue(backend.isFallback());
+        assertFalse(backend.isScanning());
+        assertEquals(1, failures.size());
+        assertEquals(SCAN_FAILED_APPLICATION_REGISTRATION_FAILED, (int) failures.get(0));
+    }
+
+    @Test
+    public void failureAfterStopIsForwarded() {
+
+        FakeScanner primary = new FakeScanner("primary", true);
+        FakeScanner secondary = new FakeScanner("secondary", true);
+
+        FallbackScannerBackend backend = new FallbackScannerBackend(primary.factory(), secondary.factory(), listener);
+
+        assertTrue(backend.start());
+        backend.stop();
+        primary.fail(SCAN_FAILED_APPLICATION_REGISTRATION_FAILED);
+
+        assertFalse(backend.isFallback());
+        assertEquals(0, secondary.startCount);
+        assertEquals(1, failures.size());
+    }
+
+    @Test
+    public void primaryStartFailureDoesNotFallBack() {
+
+        //BluetoothLeScanner is not available when bluetooth is off : legacy scan would not start either
+        FakeScanner primary = new FakeScanner("primary", false);
+        FakeScanner secondary = new FakeScanner("secondary", true);
+
+        FallbackScannerBackend backend = new FallbackScannerBackend(primary.factory(), secondary.factory(), listener);
+
+        assertFalse(backend.start());
+        assertFalse(backend.isFallback());
+        assertEquals(0, secondary.startCount);
+    }
+}
@@ -0,0 +1,123 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Build;
+import android.os.SystemClock;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Frames delivered by BluetoothLeScanner callback
+ *
+ * @author Bertrand Martel
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.LOLLIPOP)
+public class LeScannerBackendTest {
+
+    private final List<Integer> rssiList = new ArrayList<>();
+
+    private final List<Long> ageList = new ArrayList<>();
+
+    private final List<Integer> failures = new ArrayList<>();
+
+    private final LeScannerBackend backend = new LeScannerBackend(null, ScanConfig.DEFAULT, new IScanFrameListener() {
+        @Override
+        public void onScanFrame(BluetoothDevice device, int rssi, byte[] scanRecord, long ageMillis) {
+            rssiList.add(rssi);
+            ageList.add(ageMillis);
+        }
+
+        @Override
+        public void onScanFrame(String address, String name, int rssi, byte[] scanRecord, long ageMillis) {
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            failures.add(errorCode);
+        }
+    });
+
+    private static ScanResult result(int rssi, long timestampNanos) {
+        return new ScanResult(null, null, rssi, timestampNanos);
+    }
+
+    @Test
+    public void batchResultsAreDispatchedInOrder() {
+
+        long now = SystemClock.elapsedRealtimeNanos();
+
+        backend.scanCallback.onBatchScanResults(Arrays.asList(
+                result(-50, now - 300000000L),
+                result(-60, now - 200000000L),
+                result(-70, now - 100000000L)));
+
+        assertEquals(Arrays.asList(-50, -60, -70), rssiList);
+
+        //age is computed from batch delivery time
+        assertTrue(ageList.get(0) >= 300);
+        assertTrue(ageList.get(1) >= 200);
+        assertTrue(ageList.get(2) >= 100);
+        assertEquals(100, ageList.get(0) - ageList.get(1));
+        assertEquals(100, ageList.get(1) - ageList.get(2));
+    }
+
+    @Test
+    public void emptyBatchDispatchesNothing() {
+        backend.scanCallback.onBatchScanResults(new ArrayList<ScanResult>());
+        assertTrue(rssiList.isEmpty());
+    }
+
+    @Test
+    public void singleResultIsDispatched() {
+        long now = SystemClock.elapsedRealtimeNanos();
+
+        backend.scanCallback.onScanResult(ScanSettings.CALLBACK_TYPE_ALL_MATCHES, result(-42, now + 1000000000L));
+
+        assertEquals(Arrays.asList(-42), rssiList);
+        //timestamp in the future gives no negative age
+        assertEquals(0, (long) ageList.get(0));
+    }
+
+    @Test
+    public void scanFailureIsForwarded() {
+        backend.scanCallback.onScanFailed(ScanCallback.SCAN_FAILED_INTERNAL_ERROR);
+
+        assertFalse(backend.isScanning());
+        assertEquals(Arrays.asList(ScanCallback.SCAN_FAILED_INTERNAL_ERROR), failures);
+    }
+}
@@ -0,0 +1,84 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import android.bluetooth.BluetoothDevice;
+import android.os.Build;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanFrameListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scanner backend selection by API level
+ *
+ * @author Bertrand Martel
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.LOLLIPOP)
+public class ScannerBackendFactoryTest {
+
+    private final IScanFrameListener listener = new IScanFrameListener() {
+        @Override
+        public void onScanFrame(BluetoothDevice device, int rssi, byte[] scanRecord, long ageMillis) {
+        }
+
+        @Override
+        public void onScanFrame(String address, String name, int rssi, byte[] scanRecord, long ageMillis) {
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+        }
+    };
+
+    @Test
+    public void legacyScannerBeforeLollipop() {
+        IScannerBackend backend = ScannerBackendFactory.create(Build.VERSION_CODES.KITKAT, null, ScanConfig.DEFAULT,
+                listener);
+        assertTrue(backend instanceof LegacyScannerBackend);
+
+        backend = ScannerBackendFactory.create(Build.VERSION_CODES.JELLY_BEAN_MR2, null, ScanConfig.DEFAULT, listener);
+        assertTrue(backend instanceof LegacyScannerBackend);
+    }
+
+    @Test
+    public void leScannerFromLollipop() {
+        for (int sdkVersion : new int[]{Build.VERSION_CODES.LOLLIPOP, Build.VERSION_CODES.M, Build.VERSION_CODES.O}) {
+            IScannerBackend backend = ScannerBackendFactory.create(sdkVersion, null, ScanConfig.DEFAULT, listener);
+            assertTrue(backend instanceof FallbackScannerBackend);
+            assertEquals("le-scanner", backend.getName());
+            assertFalse(((FallbackScannerBackend) backend).isFallback());
+        }
+    }
+
+    @Test
+    public void forcedLegacyScanner() {
+        ScanConfig config = new ScanConfig.Builder().setForceLegacy(true).build();
+        IScannerBackend backend = ScannerBackendFactory.create(Build.VERSION_CODES.O, null, config, listener);
+        assertTrue(backend instanceof LegacyScannerBackend);
+    }
+}
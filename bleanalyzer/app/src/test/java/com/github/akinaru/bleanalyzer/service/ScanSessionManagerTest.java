@@ -0,0 +1,324 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.service;
+
+import android.os.Build;
+
+import com.github.akinaru.bleanalyzer.inter.IScanRadio;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Shared radio scan : start throttling, deferred start and delayed stop
+ *
+ * @author Bertrand Martel
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.LOLLIPOP)
+public class ScanSessionManagerTest {
+
+    private final static String SUBSCRIBER = "test";
+
+    /**
+     * radio starting or not on demand
+     */
+    private static class FakeRadio implements IScanRadio {
+
+        private boolean startResult = true;
+
+        private boolean scanning;
+
+        private int startCount;
+
+        private int stopCount;
+
+        @Override
+        public boolean startRadioScan() {
+            if (startResult) {
+                scanning = true;
+                startCount++;
+            }
+            return startResult;
+        }
+
+        @Override
+        public void stopRadioScan() {
+            scanning = false;
+            stopCount++;
+        }
+
+        @Override
+        public boolean isRadioScanning() {
+            return scanning;
+        }
+    }
+
+    private static class FakeClock implements IClock {
+
+        private long now;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * task scheduled on fake clock, run by advance()
+     */
+    private static class FakeTask implements ScheduledFuture<Object> {
+
+        private final Runnable runnable;
+
+        private final long time;
+
+        private boolean cancelled;
+
+        private boolean done;
+
+        FakeTask(Runnable runnable, long time) {
+            this.runnable = runnable;
+            this.time = time;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return 0;
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return 0;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelled = !done;
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+
+    /**
+     * scheduler running tasks on the fake clock, no thread is ever started
+     */
+    private static class FakeScheduler extends ScheduledThreadPoolExecutor {
+
+        private final FakeClock clock;
+
+        private final List<FakeTask> tasks = new ArrayList<>();
+
+        FakeScheduler(FakeClock clock) {
+            super(1);
+            this.clock = clock;
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            FakeTask task = new FakeTask(command, clock.now + unit.toMillis(delay));
+            tasks.add(task);
+            return task;
+        }
+
+        /**
+         * move clock forward, running tasks which are due in time order
+         */
+        void advance(long millis) {
+            long end = clock.now + millis;
+            while (true) {
+                FakeTask next = null;
+                for (FakeTask task : tasks) {
+                    if (!task.isDone() && task.time <= end && (next == null || task.time < next.time)) {
+                        next = task;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                clock.now = next.time;
+                next.done = true;
+                next.runnable.run();
+            }
+            clock.now = end;
+        }
+
+        int getPendingCount() {
+            int count = 0;
+            for (FakeTask task : tasks) {
+                if (!task.isDone()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private final FakeRadio radio = new FakeRadio();
+
+    private final FakeClock clock = new FakeClock();
+
+    private FakeScheduler scheduler;
+
+    private ScanSessionManager session;
+
+    @Before
+    public void setUp() {
+        clock.now = 100000;
+        scheduler = new FakeScheduler(clock);
+        session = new ScanSessionManager(radio, clock, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * start and stop radio, consuming one start of the budget
+     */
+    private void cycle() {
+        assertTrue(session.acquire(SUBSCRIBER));
+        session.releaseAll();
+    }
+
+    @Test
+    public void startsBeyondBudgetAreDeferred() {
+
+        for (int i = 0; i < ScanSessionManager.MAX_RADIO_STARTS; i++) {
+            cycle();
+            scheduler.advance(1000);
+        }
+        assertEquals(ScanSessionManager.MAX_RADIO_STARTS, radio.startCount);
+
+        //first start was 4s ago, it leaves the throttle window in 26s
+        assertTrue(session.acquire(SUBSCRIBER));
+        assertFalse(radio.isRadioScanning());
+        assertEquals(1, scheduler.getPendingCount());
+
+        scheduler.advance(ScanSessionManager.THROTTLE_WINDOW - 4000 - 1);
+        assertFalse(radio.isRadioScanning());
+
+        scheduler.advance(1);
+        assertTrue(radio.isRadioScanning());
+        assertEquals(ScanSessionManager.MAX_RADIO_STARTS + 1, radio.startCount);
+    }
+
+    @Test
+    public void releaseCancelsDeferredStart() {
+
+        for (int i = 0; i < ScanSessionManager.MAX_RADIO_STARTS; i++) {
+            cycle();
+        }
+        session.acquire(SUBSCRIBER);
+        session.release(SUBSCRIBER);
+
+        scheduler.advance(ScanSessionManager.THROTTLE_WINDOW);
+        assertFalse(radio.isRadioScanning());
+        assertEquals(ScanSessionManager.MAX_RADIO_STARTS, radio.startCount);
+    }
+
+    @Test
+    public void failedStartsDoNotUseBudget() {
+
+        radio.startResult = false;
+        for (int i = 0; i < ScanSessionManager.MAX_RADIO_STARTS + 1; i++) {
+            assertFalse(session.acquire(SUBSCRIBER));
+            session.releaseAll();
+        }
+        assertEquals(0, scheduler.getPendingCount());
+
+        radio.startResult = true;
+        for (int i = 0; i < ScanSessionManager.MAX_RADIO_STARTS; i++) {
+            cycle();
+        }
+        assertEquals(ScanSessionManager.MAX_RADIO_STARTS, radio.startCount);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void resumeRetriesFailedStart() {
+
+        radio.startResult = false;
+        assertFalse(session.acquire(SUBSCRIBER));
+
+        radio.startResult = true;
+        session.resume();
+        assertTrue(radio.isRadioScanning());
+    }
+
+    @Test
+    public void stopIsDelayedAfterLastRelease() {
+
+        session.acquire(SUBSCRIBER);
+        session.acquire("other");
+        session.release(SUBSCRIBER);
+        assertEquals(0, scheduler.getPendingCount());
+
+        session.release("other");
+        scheduler.advance(ScanSessionManager.DEFAULT_STOP_DELAY - 1);
+        assertTrue(radio.isRadioScanning());
+
+        //acquiring again keeps the radio running
+        session.acquire(SUBSCRIBER);
+        scheduler.advance(ScanSessionManager.DEFAULT_STOP_DELAY);
+        assertTrue(radio.isRadioScanning());
+        assertEquals(1, radio.startCount);
+
+        session.release(SUBSCRIBER);
+        scheduler.advance(ScanSessionManager.DEFAULT_STOP_DELAY);
+        assertFalse(radio.isRadioScanning());
+        assertEquals(1, radio.stopCount);
+    }
+}
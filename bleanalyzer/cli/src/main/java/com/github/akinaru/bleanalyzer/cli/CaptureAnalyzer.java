@@ -0,0 +1,226 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless analyzer of recorded captures
+ * <p/>
+ * computes per-device reception rate, inter-arrival jitter, rssi statistics and per-second series of a set of
+ * captures. Captures and segments of captures are analyzed in parallel on all cores.
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureAnalyzer {
+
+    private final static String USAGE = "usage: capture-analyzer [-f csv|json] [-o summary-file] [-s series-file] " +
+            "[-t threads] capture...\n" +
+            "  -f  output format (default csv)\n" +
+            "  -o  per-device summary output (default standard output)\n" +
+            "  -s  per-second series output (series are not computed if omitted)\n" +
+            "  -t  number of worker threads (default number of cores)";
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ForkJoinPool pool;
+
+    private final boolean series;
+
+    /**
+     * Build capture analyzer
+     *
+     * @param parallelism number of worker threads
+     * @param series      compute per-second series
+     */
+    public CaptureAnalyzer(int parallelism, boolean series) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.series = series;
+    }
+
+    /**
+     * analyze captures
+     *
+     * @param files capture logs
+     * @return statistics of each capture, in the same order as files
+     * @throws IOException
+     */
+    public List<CaptureStatistics> analyze(List<File> files) throws IOException {
+
+        List<CaptureTask> tasks = new ArrayList<>();
+        for (File file : files) {
+            CaptureTask task = new CaptureTask(file, series);
+            pool.execute(task);
+            tasks.add(task);
+        }
+
+        List<CaptureStatistics> result = new ArrayList<>();
+        try {
+            for (CaptureTask task : tasks) {
+                result.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("analysis interrupted", e);
+        } catch (ExecutionException e) {
+            //fork-join may wrap task exception again when it is rethrown in another thread
+            Throwable cause = e.getCause();
+            while (cause != null && !(cause instanceof IOException)) {
+                cause = cause.getCause();
+            }
+            if (cause != null) {
+                throw (IOException) cause;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            for (CaptureTask task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return result;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public static void main(String[] args) {
+
+        String format = ReportWriter.FORMAT_CSV;
+        String summaryPath = null;
+        String seriesPath = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        List<File> files = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-f":
+                        format = args[++i];
+                        break;
+                    case "-o":
+                        summaryPath = args[++i];
+                        break;
+                    case "-s":
+                        seriesPath = args[++i];
+                        break;
+                    case "-t":
+                        parallelism = Integer.parseInt(args[++i]);
+                        break;
+                    case "-h":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            throw new IllegalArgumentException("unknown option " + args[i]);
+                        }
+                        files.add(new File(args[i]));
+                        break;
+                }
+            }
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("no capture");
+            }
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("invalid number of threads " + parallelism);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            exit("missing option value");
+        } catch (IllegalArgumentException e) {
+            exit(e.getMessage());
+        }
+
+        ReportWriter reportWriter = null;
+        try {
+            reportWriter = new ReportWriter(format);
+        } catch (IllegalArgumentException e) {
+            exit(e.getMessage());
+        }
+
+        CaptureAnalyzer analyzer = new CaptureAnalyzer(parallelism, seriesPath != null);
+
+        try {
+            long start = System.nanoTime();
+
+            List<CaptureStatistics> captures = analyzer.analyze(files);
+
+            long frames = 0;
+            for (CaptureStatistics capture : captures) {
+                frames += capture.getFrameCount();
+                if (capture.getEarlyFrameCount() > 0) {
+                    System.err.println("warning : " + capture.getEarlyFrameCount() + " frames of " + capture.getFile() +
+                            " are older than capture start, counted in negative seconds");
+                }
+            }
+            System.err.println("analyzed " + captures.size() + " captures, " + frames + " frames in " +
+                    (System.nanoTime() - start) / 1000000 + "ms");
+
+            Writer summary = open(summaryPath);
+            try {
+                reportWriter.writeSummary(captures, summary);
+            } finally {
+                close(summary, summaryPath);
+            }
+            if (seriesPath != null) {
+                Writer seriesOut = open(seriesPath);
+                try {
+                    reportWriter.writeSeries(captures, seriesOut);
+                } finally {
+                    close(seriesOut, seriesPath);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("analysis failed : " + e.getMessage());
+            System.exit(2);
+        } finally {
+            analyzer.shutdown();
+        }
+    }
+
+    private static Writer open(String path) throws IOException {
+        if (path == null) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, UTF8));
+        }
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), UTF8));
+    }
+
+    private static void close(Writer writer, String path) throws IOException {
+        if (path == null) {
+            writer.flush();
+        } else {
+            writer.close();
+        }
+    }
+
+    private static void exit(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
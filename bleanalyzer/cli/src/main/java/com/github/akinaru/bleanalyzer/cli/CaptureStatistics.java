@@ -0,0 +1,131 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.cli;
+
+import com.github.akinaru.bleanalyzer.utils.LongObjectHashMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reception statistics of all devices of a capture (or of a segment of a capture)
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureStatistics {
+
+    private final File file;
+
+    private final long startTime;
+
+    private final boolean series;
+
+    private final LongObjectHashMap<DeviceStatistics> deviceMap = new LongObjectHashMap<>();
+
+    /**
+     * devices in order of first reception
+     */
+    private final List<DeviceStatistics> devices = new ArrayList<>();
+
+    /**
+     * number of frames stamped before capture start
+     */
+    private long earlyFrameCount;
+
+    /**
+     * Build capture statistics
+     *
+     * @param file      capture log
+     * @param startTime capture start, in the time base of frame timestamps
+     * @param series    compute per-second series
+     */
+    public CaptureStatistics(File file, long startTime, boolean series) {
+        this.file = file;
+        this.startTime = startTime;
+        this.series = series;
+    }
+
+    /**
+     * retrieve statistics of a device, creating them on first reception
+     *
+     * @param address48 48 bit device address
+     * @return
+     */
+    public DeviceStatistics obtain(long address48) {
+        DeviceStatistics device = deviceMap.get(address48);
+        if (device == null) {
+            device = new DeviceStatistics(address48, series);
+            deviceMap.put(address48, device);
+            devices.add(device);
+        }
+        return device;
+    }
+
+    /**
+     * merge statistics of the segment following this one
+     *
+     * @param next statistics of next segment of the same capture
+     */
+    public void merge(CaptureStatistics next) {
+        earlyFrameCount += next.earlyFrameCount;
+        for (int i = 0; i < next.devices.size(); i++) {
+            DeviceStatistics device = next.devices.get(i);
+            DeviceStatistics current = deviceMap.get(device.getAddress48());
+            if (current == null) {
+                deviceMap.put(device.getAddress48(), device);
+                devices.add(device);
+            } else {
+                current.merge(device);
+            }
+        }
+    }
+
+    /**
+     * count a frame stamped before capture start
+     */
+    public void addEarlyFrame() {
+        earlyFrameCount++;
+    }
+
+    public long getEarlyFrameCount() {
+        return earlyFrameCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public List<DeviceStatistics> getDevices() {
+        return Collections.unmodifiableList(devices);
+    }
+
+    public long getFrameCount() {
+        long count = 0;
+        for (int i = 0; i < devices.size(); i++) {
+            count += devices.get(i).getFrameCount();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,79 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.cli;
+
+import com.github.akinaru.bleanalyzer.capture.CaptureIndex;
+import com.github.akinaru.bleanalyzer.capture.CaptureReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Analyze a whole capture : load its index and analyze its blocks in parallel segments
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureTask extends RecursiveTask<CaptureStatistics> {
+
+    private final static long serialVersionUID = 1L;
+
+    private final File file;
+
+    private final boolean series;
+
+    /**
+     * Build capture task
+     *
+     * @param file   capture log
+     * @param series compute per-second series
+     */
+    public CaptureTask(File file, boolean series) {
+        this.file = file;
+        this.series = series;
+    }
+
+    @Override
+    protected CaptureStatistics compute() {
+        try {
+            long startTime;
+            CaptureReader reader = new CaptureReader(file);
+            try {
+                startTime = reader.getStartTime();
+            } finally {
+                reader.close();
+            }
+            CaptureIndex index = loadIndex();
+            return new SegmentTask(file, startTime, index.getBlocks(), 0, index.getBlocks().size(), series).compute();
+        } catch (IOException e) {
+            throw new RuntimeException("cannot read " + file, e);
+        }
+    }
+
+    /**
+     * load index of capture, building it in memory if index file cannot be written
+     */
+    private CaptureIndex loadIndex() throws IOException {
+        try {
+            return CaptureIndex.load(file);
+        } catch (IOException e) {
+            return CaptureIndex.build(file);
+        }
+    }
+}
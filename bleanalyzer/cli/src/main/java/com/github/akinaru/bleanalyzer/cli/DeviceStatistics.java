@@ -0,0 +1,328 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.cli;
+
+/**
+ * Reception statistics of one device over a capture or a segment of a capture
+ * <p/>
+ * statistics of consecutive segments are merged in log order : inter-arrival interval between two segments is
+ * taken into account when merging.
+ *
+ * @author Bertrand Martel
+ */
+public class DeviceStatistics {
+
+    private final long address48;
+
+    private long frameCount;
+
+    private long firstTimestamp;
+
+    private long lastTimestamp;
+
+    private long intervalCount;
+
+    private double intervalSum;
+
+    private double intervalSquareSum;
+
+    private long intervalMin = Long.MAX_VALUE;
+
+    private long intervalMax = Long.MIN_VALUE;
+
+    private long rssiSum;
+
+    private long rssiSquareSum;
+
+    private int rssiMin = Integer.MAX_VALUE;
+
+    private int rssiMax = Integer.MIN_VALUE;
+
+    /**
+     * advertising interval in milliseconds, -1 if unknown
+     */
+    private int advertizingInterval = -1;
+
+    /**
+     * per-second frame count and rssi sum, null if series are not computed
+     */
+    private int[] seriesCount;
+
+    private long[] seriesRssi;
+
+    /**
+     * first second (from capture start) and number of seconds covered by series arrays
+     */
+    private int seriesStart;
+
+    private int seriesLength;
+
+    /**
+     * Build device statistics
+     *
+     * @param address48 48 bit device address
+     * @param series    compute per-second series
+     */
+    public DeviceStatistics(long address48, boolean series) {
+        this.address48 = address48;
+        if (series) {
+            seriesCount = new int[16];
+            seriesRssi = new long[16];
+        }
+    }
+
+    /**
+     * record a frame
+     *
+     * @param ts     reception timestamp
+     * @param rssi   received signal strength
+     * @param second second of reception from capture start (ignored if series are not computed)
+     */
+    public void add(long ts, int rssi, int second) {
+
+        if (frameCount == 0) {
+            firstTimestamp = ts;
+        } else {
+            addInterval(ts - lastTimestamp);
+        }
+        lastTimestamp = ts;
+        frameCount++;
+
+        rssiSum += rssi;
+        rssiSquareSum += rssi * rssi;
+        rssiMin = Math.min(rssiMin, rssi);
+        rssiMax = Math.max(rssiMax, rssi);
+
+        if (seriesCount != null) {
+            ensureSeries(second, second + 1);
+            seriesCount[second - seriesStart]++;
+            seriesRssi[second - seriesStart] += rssi;
+        }
+    }
+
+    private void addInterval(long interval) {
+        intervalCount++;
+        intervalSum += interval;
+        intervalSquareSum += (double) interval * interval;
+        intervalMin = Math.min(intervalMin, interval);
+        intervalMax = Math.max(intervalMax, interval);
+    }
+
+    /**
+     * extend series arrays to cover seconds [from, to[
+     */
+    private void ensureSeries(int from, int to) {
+
+        if (seriesLength == 0) {
+            seriesStart = from;
+        }
+        int start = Math.min(seriesStart, from);
+        int end = Math.max(seriesStart + seriesLength, to);
+
+        if (start != seriesStart || end - start > seriesCount.length) {
+            int capacity = Math.max(end - start, seriesCount.length << 1);
+            int[] count = new int[capacity];
+            long[] rssi = new long[capacity];
+            System.arraycopy(seriesCount, 0, count, seriesStart - start, seriesLength);
+            System.arraycopy(seriesRssi, 0, rssi, seriesStart - start, seriesLength);
+            seriesCount = count;
+            seriesRssi = rssi;
+            seriesStart = start;
+        }
+        seriesLength = end - start;
+    }
+
+    /**
+     * merge statistics of the segment following this one
+     *
+     * @param next statistics of the same device in next segment
+     */
+    public void merge(DeviceStatistics next) {
+
+        if (next.frameCount == 0) {
+            return;
+        }
+        if (frameCount == 0) {
+            firstTimestamp = next.firstTimestamp;
+        } else {
+            addInterval(next.firstTimestamp - lastTimestamp);
+        }
+        lastTimestamp = next.lastTimestamp;
+        frameCount += next.frameCount;
+
+        intervalCount += next.intervalCount;
+        intervalSum += next.intervalSum;
+        intervalSquareSum += next.intervalSquareSum;
+        intervalMin = Math.min(intervalMin, next.intervalMin);
+        intervalMax = Math.max(intervalMax, next.intervalMax);
+
+        rssiSum += next.rssiSum;
+        rssiSquareSum += next.rssiSquareSum;
+        rssiMin = Math.min(rssiMin, next.rssiMin);
+        rssiMax = Math.max(rssiMax, next.rssiMax);
+
+        if (advertizingInterval == -1) {
+            advertizingInterval = next.advertizingInterval;
+        }
+
+        if (seriesCount != null && next.seriesLength > 0) {
+            ensureSeries(next.seriesStart, next.seriesStart + next.seriesLength);
+            int shift = next.seriesStart - seriesStart;
+            for (int i = 0; i < next.seriesLength; i++) {
+                seriesCount[shift + i] += next.seriesCount[i];
+                seriesRssi[shift + i] += next.seriesRssi[i];
+            }
+        }
+    }
+
+    public long getAddress48() {
+        return address48;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public long getDuration() {
+        return lastTimestamp - firstTimestamp;
+    }
+
+    public int getAdvertizingInterval() {
+        return advertizingInterval;
+    }
+
+    public void setAdvertizingInterval(int advertizingInterval) {
+        this.advertizingInterval = advertizingInterval;
+    }
+
+    /**
+     * mean number of frames received per second between first and last frame
+     *
+     * @return
+     */
+    public double getRate() {
+        long duration = getDuration();
+        return duration > 0 ? intervalCount * 1000.0 / duration : 0;
+    }
+
+    /**
+     * percentage of advertised frames that were received
+     *
+     * @return reception rate or -1 if advertising interval is unknown
+     */
+    public double getReceptionRate() {
+        if (advertizingInterval <= 0) {
+            return -1;
+        }
+        long expected = getDuration() / advertizingInterval + 1;
+        return Math.min(100, frameCount * 100.0 / expected);
+    }
+
+    public double getIntervalMean() {
+        return intervalCount > 0 ? intervalSum / intervalCount : 0;
+    }
+
+    public long getIntervalMin() {
+        return intervalCount > 0 ? intervalMin : 0;
+    }
+
+    public long getIntervalMax() {
+        return intervalCount > 0 ? intervalMax : 0;
+    }
+
+    /**
+     * inter-arrival jitter : standard deviation of the interval between two consecutive frames
+     *
+     * @return
+     */
+    public double getJitter() {
+        return deviation(intervalCount, intervalSum, intervalSquareSum);
+    }
+
+    public double getRssiMean() {
+        return frameCount > 0 ? rssiSum / (double) frameCount : 0;
+    }
+
+    public int getRssiMin() {
+        return frameCount > 0 ? rssiMin : 0;
+    }
+
+    public int getRssiMax() {
+        return frameCount > 0 ? rssiMax : 0;
+    }
+
+    public double getRssiDeviation() {
+        return deviation(frameCount, rssiSum, rssiSquareSum);
+    }
+
+    private static double deviation(long count, double sum, double squareSum) {
+        if (count < 2) {
+            return 0;
+        }
+        double mean = sum / count;
+        return Math.sqrt(Math.max(0, squareSum / count - mean * mean));
+    }
+
+    /**
+     * first second of per-second series (from capture start)
+     *
+     * @return
+     */
+    public int getSeriesStart() {
+        return seriesStart;
+    }
+
+    /**
+     * number of seconds covered by per-second series
+     *
+     * @return
+     */
+    public int getSeriesLength() {
+        return seriesLength;
+    }
+
+    /**
+     * number of frames received during a second
+     *
+     * @param second second from capture start
+     * @return
+     */
+    public int getSeriesCount(int second) {
+        return seriesCount[second - seriesStart];
+    }
+
+    /**
+     * mean rssi of a second
+     *
+     * @param second second from capture start
+     * @return
+     */
+    public double getSeriesRssi(int second) {
+        int index = second - seriesStart;
+        return seriesCount[index] > 0 ? seriesRssi[index] / (double) seriesCount[index] : 0;
+    }
+}
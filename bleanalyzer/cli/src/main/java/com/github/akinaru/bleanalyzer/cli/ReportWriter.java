@@ -0,0 +1,302 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.cli;
+
+import com.github.akinaru.bleanalyzer.utils.AddressUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Write capture statistics as CSV or JSON
+ * <p/>
+ * summary has one record per device and per capture, series have one record per device, per capture and per second
+ *
+ * @author Bertrand Martel
+ */
+public class ReportWriter {
+
+    public final static String FORMAT_CSV = "csv";
+
+    public final static String FORMAT_JSON = "json";
+
+    private final static String SUMMARY_HEADER = "capture,address,frames,first_timestamp,last_timestamp,duration_ms," +
+            "rate_per_s,advertising_interval_ms,reception_rate_pct,interval_mean_ms,interval_min_ms,interval_max_ms," +
+            "jitter_ms,rssi_mean,rssi_min,rssi_max,rssi_stddev";
+
+    private final static String SERIES_HEADER = "capture,address,second,frames,rssi_mean";
+
+    private final String format;
+
+    /**
+     * Build report writer
+     *
+     * @param format FORMAT_CSV or FORMAT_JSON
+     */
+    public ReportWriter(String format) {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_JSON.equals(format)) {
+            throw new IllegalArgumentException("unsupported format " + format);
+        }
+        this.format = format;
+    }
+
+    /**
+     * write per-device statistics of all captures
+     *
+     * @param captures capture statistics
+     * @param out      output
+     * @throws IOException
+     */
+    public void writeSummary(List<CaptureStatistics> captures, Writer out) throws IOException {
+        if (FORMAT_CSV.equals(format)) {
+            writeSummaryCsv(captures, out);
+        } else {
+            writeSummaryJson(captures, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * write per-second series of all devices of all captures
+     *
+     * @param captures capture statistics (computed with series)
+     * @param out      output
+     * @throws IOException
+     */
+    public void writeSeries(List<CaptureStatistics> captures, Writer out) throws IOException {
+        if (FORMAT_CSV.equals(format)) {
+            writeSeriesCsv(captures, out);
+        } else {
+            writeSeriesJson(captures, out);
+        }
+        out.flush();
+    }
+
+    private void writeSummaryCsv(List<CaptureStatistics> captures, Writer out) throws IOException {
+
+        out.write(SUMMARY_HEADER);
+        out.write('\n');
+
+        for (CaptureStatistics capture : captures) {
+
+            String name = csvString(capture.getFile().getPath());
+
+            for (DeviceStatistics device : capture.getDevices()) {
+                out.write(name);
+                out.write(',');
+                out.write(AddressUtils.format(device.getAddress48()));
+                out.write(',');
+                out.write(Long.toString(device.getFrameCount()));
+                out.write(',');
+                out.write(Long.toString(device.getFirstTimestamp()));
+                out.write(',');
+                out.write(Long.toString(device.getLastTimestamp()));
+                out.write(',');
+                out.write(Long.toString(device.getDuration()));
+                out.write(',');
+                out.write(decimal(device.getRate()));
+                out.write(',');
+                out.write(device.getAdvertizingInterval() > 0 ? Integer.toString(device.getAdvertizingInterval()) : "");
+                out.write(',');
+                out.write(device.getReceptionRate() >= 0 ? decimal(device.getReceptionRate()) : "");
+                out.write(',');
+                out.write(decimal(device.getIntervalMean()));
+                out.write(',');
+                out.write(Long.toString(device.getIntervalMin()));
+                out.write(',');
+                out.write(Long.toString(device.getIntervalMax()));
+                out.write(',');
+                out.write(decimal(device.getJitter()));
+                out.write(',');
+                out.write(decimal(device.getRssiMean()));
+                out.write(',');
+                out.write(Integer.toString(device.getRssiMin()));
+                out.write(',');
+                out.write(Integer.toString(device.getRssiMax()));
+                out.write(',');
+                out.write(decimal(device.getRssiDeviation()));
+                out.write('\n');
+            }
+        }
+    }
+
+    private void writeSeriesCsv(List<CaptureStatistics> captures, Writer out) throws IOException {
+
+        out.write(SERIES_HEADER);
+        out.write('\n');
+
+        for (CaptureStatistics capture : captures) {
+
+            String name = csvString(capture.getFile().getPath());
+
+            for (DeviceStatistics device : capture.getDevices()) {
+
+                String address = AddressUtils.format(device.getAddress48());
+                int end = device.getSeriesStart() + device.getSeriesLength();
+
+                for (int second = device.getSeriesStart(); second < end; second++) {
+                    out.write(name);
+                    out.write(',');
+                    out.write(address);
+                    out.write(',');
+                    out.write(Integer.toString(second));
+                    out.write(',');
+                    out.write(Integer.toString(device.getSeriesCount(second)));
+                    out.write(',');
+                    out.write(device.getSeriesCount(second) > 0 ? decimal(device.getSeriesRssi(second)) : "");
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    private void writeSummaryJson(List<CaptureStatistics> captures, Writer out) throws IOException {
+
+        out.write("[\n");
+
+        for (int i = 0; i < captures.size(); i++) {
+
+            CaptureStatistics capture = captures.get(i);
+
+            out.write("  {\"capture\": ");
+            out.write(jsonString(capture.getFile().getPath()));
+            out.write(", \"startTime\": ");
+            out.write(Long.toString(capture.getStartTime()));
+            out.write(", \"frames\": ");
+            out.write(Long.toString(capture.getFrameCount()));
+            out.write(", \"devices\": [");
+
+            List<DeviceStatistics> devices = capture.getDevices();
+
+            for (int j = 0; j < devices.size(); j++) {
+                DeviceStatistics device = devices.get(j);
+                out.write(j == 0 ? "\n" : ",\n");
+                out.write("    {\"address\": \"");
+                out.write(AddressUtils.format(device.getAddress48()));
+                out.write("\", \"frames\": ");
+                out.write(Long.toString(device.getFrameCount()));
+                out.write(", \"firstTimestamp\": ");
+                out.write(Long.toString(device.getFirstTimestamp()));
+                out.write(", \"lastTimestamp\": ");
+                out.write(Long.toString(device.getLastTimestamp()));
+                out.write(", \"durationMs\": ");
+                out.write(Long.toString(device.getDuration()));
+                out.write(", \"ratePerSecond\": ");
+                out.write(decimal(device.getRate()));
+                out.write(", \"advertisingIntervalMs\": ");
+                out.write(device.getAdvertizingInterval() > 0 ? Integer.toString(device.getAdvertizingInterval()) : "null");
+                out.write(", \"receptionRatePct\": ");
+                out.write(device.getReceptionRate() >= 0 ? decimal(device.getReceptionRate()) : "null");
+                out.write(", \"interval\": {\"meanMs\": ");
+                out.write(decimal(device.getIntervalMean()));
+                out.write(", \"minMs\": ");
+                out.write(Long.toString(device.getIntervalMin()));
+                out.write(", \"maxMs\": ");
+                out.write(Long.toString(device.getIntervalMax()));
+                out.write(", \"jitterMs\": ");
+                out.write(decimal(device.getJitter()));
+                out.write("}, \"rssi\": {\"mean\": ");
+                out.write(decimal(device.getRssiMean()));
+                out.write(", \"min\": ");
+                out.write(Integer.toString(device.getRssiMin()));
+                out.write(", \"max\": ");
+                out.write(Integer.toString(device.getRssiMax()));
+                out.write(", \"stddev\": ");
+                out.write(decimal(device.getRssiDeviation()));
+                out.write("}}");
+            }
+            out.write(devices.isEmpty() ? "]}" : "\n  ]}");
+            out.write(i + 1 < captures.size() ? ",\n" : "\n");
+        }
+        out.write("]\n");
+    }
+
+    private void writeSeriesJson(List<CaptureStatistics> captures, Writer out) throws IOException {
+
+        out.write("[\n");
+
+        boolean first = true;
+
+        for (CaptureStatistics capture : captures) {
+
+            String name = jsonString(capture.getFile().getPath());
+
+            for (DeviceStatistics device : capture.getDevices()) {
+
+                out.write(first ? "" : ",\n");
+                first = false;
+
+                out.write("  {\"capture\": ");
+                out.write(name);
+                out.write(", \"address\": \"");
+                out.write(AddressUtils.format(device.getAddress48()));
+                out.write("\", \"startSecond\": ");
+                out.write(Integer.toString(device.getSeriesStart()));
+
+                int end = device.getSeriesStart() + device.getSeriesLength();
+
+                out.write(", \"frames\": [");
+                for (int second = device.getSeriesStart(); second < end; second++) {
+                    if (second != device.getSeriesStart()) {
+                        out.write(", ");
+                    }
+                    out.write(Integer.toString(device.getSeriesCount(second)));
+                }
+                out.write("], \"rssiMean\": [");
+                for (int second = device.getSeriesStart(); second < end; second++) {
+                    if (second != device.getSeriesStart()) {
+                        out.write(", ");
+                    }
+                    out.write(device.getSeriesCount(second) > 0 ? decimal(device.getSeriesRssi(second)) : "null");
+                }
+                out.write("]}");
+            }
+        }
+        out.write(first ? "]\n" : "\n]\n");
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static String csvString(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
@@ -0,0 +1,149 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.cli;
+
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADCursor;
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.RFdroidAdvertising;
+import com.github.akinaru.bleanalyzer.capture.CaptureFrame;
+import com.github.akinaru.bleanalyzer.capture.CaptureIndex;
+import com.github.akinaru.bleanalyzer.capture.CaptureReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Analyze a range of blocks of a capture
+ * <p/>
+ * blocks are compressed independently : large ranges are split in halves analyzed in parallel, then merged in
+ * log order.
+ *
+ * @author Bertrand Martel
+ */
+public class SegmentTask extends RecursiveTask<CaptureStatistics> {
+
+    private final static long serialVersionUID = 1L;
+
+    /**
+     * maximum number of blocks analyzed by a single task
+     */
+    public final static int SEGMENT_BLOCKS = 8;
+
+    private final File file;
+
+    private final long startTime;
+
+    private final List<CaptureIndex.Block> blocks;
+
+    private final int from;
+
+    private final int to;
+
+    private final boolean series;
+
+    /**
+     * Build segment task
+     *
+     * @param file      capture log
+     * @param startTime capture start, in the time base of frame timestamps
+     * @param blocks    blocks of capture
+     * @param from      index of first block to analyze
+     * @param to        index of last block to analyze (exclusive)
+     * @param series    compute per-second series
+     */
+    public SegmentTask(File file, long startTime, List<CaptureIndex.Block> blocks, int from, int to, boolean series) {
+        this.file = file;
+        this.startTime = startTime;
+        this.blocks = blocks;
+        this.from = from;
+        this.to = to;
+        this.series = series;
+    }
+
+    @Override
+    protected CaptureStatistics compute() {
+
+        if (to - from <= SEGMENT_BLOCKS) {
+            try {
+                return analyze();
+            } catch (IOException e) {
+                throw new RuntimeException("cannot read " + file, e);
+            }
+        }
+        int middle = (from + to) >>> 1;
+
+        SegmentTask left = new SegmentTask(file, startTime, blocks, from, middle, series);
+        SegmentTask right = new SegmentTask(file, startTime, blocks, middle, to, series);
+        left.fork();
+
+        CaptureStatistics rightStats = right.compute();
+        CaptureStatistics leftStats = left.join();
+        leftStats.merge(rightStats);
+        return leftStats;
+    }
+
+    private CaptureStatistics analyze() throws IOException {
+
+        CaptureStatistics stats = new CaptureStatistics(file, startTime, series);
+
+        if (from == to) {
+            return stats;
+        }
+        CaptureFrame frame = new CaptureFrame();
+        ADCursor cursor = new ADCursor();
+
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            reader.seek(blocks.get(from).getOffset());
+
+            for (int i = from; i < to; i++) {
+
+                if (!reader.nextBlock()) {
+                    throw new IOException("missing block at " + blocks.get(i).getOffset());
+                }
+                for (int j = reader.getBlockFrameCount(); j > 0 && reader.next(frame); j--) {
+
+                    DeviceStatistics device = stats.obtain(frame.getAddress48());
+
+                    if (device.getFrameCount() == 0) {
+                        device.setAdvertizingInterval(
+                                RFdroidAdvertising.parseAdvertizingInterval(cursor, frame.getPayload()));
+                    }
+                    long elapsed = frame.getTimestamp() - startTime;
+                    if (elapsed < 0) {
+                        //received before capture start (scan result age), kept in negative seconds
+                        stats.addEarlyFrame();
+                    }
+                    device.add(frame.getTimestamp(), frame.getRssi(), second(elapsed));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return stats;
+    }
+
+    /**
+     * second from capture start, rounded down so that frames before start fall in negative seconds
+     */
+    private static int second(long elapsed) {
+        return (int) ((elapsed >= 0) ? elapsed / 1000 : (elapsed - 999) / 1000);
+    }
+}
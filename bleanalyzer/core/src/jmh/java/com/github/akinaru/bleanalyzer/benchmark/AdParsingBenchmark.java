@@ -0,0 +1,146 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.benchmark;
+
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADCursor;
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADTypes;
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.RFdroidAdvertising;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.neovisionaries.bluetooth.ble.advertising.ADManufacturerSpecific;
+import com.neovisionaries.bluetooth.ble.advertising.ADPayloadParser;
+import com.neovisionaries.bluetooth.ble.advertising.ADStructure;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Advertising payload parsing : AD cursor against nv-bluetooth parser previously used on first sighting
+ *
+ * @author Bertrand Martel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AdParsingBenchmark {
+
+    private final static UUID SERVICE_UUID = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+
+    private final ADCursor cursor = new ADCursor();
+
+    /**
+     * flags, complete local name "RFdroid" and RFdroid manufacturer data (interval 160 x 0.625ms) with zero padding
+     */
+    private byte[] rfdroidRecord;
+
+    /**
+     * flags, 128 bit service UUID list and manufacturer data of another company
+     */
+    private byte[] serviceRecord;
+
+    private DeviceFilter serviceFilter;
+
+    @Setup
+    public void setup() {
+
+        rfdroidRecord = new byte[62];
+        int offset = 0;
+        offset = put(rfdroidRecord, offset, ADTypes.FLAGS, new byte[]{0x06});
+        offset = put(rfdroidRecord, offset, ADTypes.COMPLETE_LOCAL_NAME, new byte[]{'R', 'F', 'd', 'r', 'o', 'i', 'd'});
+        put(rfdroidRecord, offset, ADTypes.MANUFACTURER_SPECIFIC_DATA,
+                new byte[]{'R', 'F', 'd', 'r', 'o', 'i', 'd', 0x00, (byte) 0xA0});
+
+        byte[] uuid = new byte[16];
+        long lsb = SERVICE_UUID.getLeastSignificantBits();
+        long msb = SERVICE_UUID.getMostSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            uuid[i] = (byte) (lsb >>> (8 * i));
+            uuid[i + 8] = (byte) (msb >>> (8 * i));
+        }
+        serviceRecord = new byte[62];
+        offset = 0;
+        offset = put(serviceRecord, offset, ADTypes.FLAGS, new byte[]{0x06});
+        offset = put(serviceRecord, offset, ADTypes.MANUFACTURER_SPECIFIC_DATA, new byte[]{0x59, 0x00, 0x01, 0x02});
+        put(serviceRecord, offset, ADTypes.COMPLETE_SERVICE_UUID_128, uuid);
+
+        serviceFilter = new DeviceFilter.Builder().addServiceUuid(SERVICE_UUID).build();
+    }
+
+    private static int put(byte[] record, int offset, int type, byte[] data) {
+        record[offset] = (byte) (data.length + 1);
+        record[offset + 1] = (byte) type;
+        System.arraycopy(data, 0, record, offset + 2, data.length);
+        return offset + 2 + data.length;
+    }
+
+    @Benchmark
+    public int cursorRFdroidInterval() {
+        return RFdroidAdvertising.parseAdvertizingInterval(cursor, rfdroidRecord);
+    }
+
+    /**
+     * RFdroid advertising interval extraction as it was done with nv-bluetooth
+     */
+    @Benchmark
+    public int nvBluetoothRFdroidInterval() {
+
+        List<ADStructure> structures = ADPayloadParser.getInstance().parse(rfdroidRecord);
+
+        int advInterval = -1;
+
+        for (ADStructure structure : structures) {
+
+            if (structure instanceof ADManufacturerSpecific) {
+
+                ADManufacturerSpecific data = (ADManufacturerSpecific) structure;
+
+                if (data.getData().length == 9) {
+
+                    byte[] name = new byte[7];
+                    System.arraycopy(data.getData(), 0, name, 0, 7);
+
+                    String nameStr = new String(name);
+                    if (nameStr.equals("RFdroid")) {
+                        advInterval = (data.getData()[7] << 8) + (data.getData()[8] & 0xFF);
+                    }
+                }
+            }
+        }
+        return advInterval == -1 ? -1 : (int) (advInterval * 0.625);
+    }
+
+    @Benchmark
+    public boolean cursorFindServiceUuid() {
+        return cursor.findServiceUuid(serviceRecord, SERVICE_UUID.getMostSignificantBits(),
+                SERVICE_UUID.getLeastSignificantBits());
+    }
+
+    @Benchmark
+    public boolean filterAcceptsAdvertising() {
+        return serviceFilter.acceptsAdvertising(cursor, serviceRecord);
+    }
+}
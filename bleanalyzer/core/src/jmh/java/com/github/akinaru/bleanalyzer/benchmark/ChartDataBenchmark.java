@@ -0,0 +1,75 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.benchmark;
+
+import com.github.akinaru.bleanalyzer.chart.SecondAxisLabels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * X axis labels of per-second charts rebuilt on every measurement tick
+ * <p/>
+ * chart entries are MPAndroidChart (Android) objects and are not measured
+ *
+ * @author Bertrand Martel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChartDataBenchmark {
+
+    /**
+     * 1 minute, 1 hour and 1 day of measurement
+     */
+    @Param({"60", "3600", "86400"})
+    public int seriesLength;
+
+    private final SecondAxisLabels secondLabels = new SecondAxisLabels();
+
+    @Setup
+    public void setup() {
+        secondLabels.get(seriesLength);
+    }
+
+    /**
+     * labels of a chart rebuild, all labels already formatted by previous ticks
+     */
+    @Benchmark
+    public List<String> cachedLabels() {
+        return secondLabels.get(seriesLength);
+    }
+
+    /**
+     * labels of the first chart build, every label is formatted
+     */
+    @Benchmark
+    public List<String> firstLabels() {
+        return new SecondAxisLabels().get(seriesLength);
+    }
+}
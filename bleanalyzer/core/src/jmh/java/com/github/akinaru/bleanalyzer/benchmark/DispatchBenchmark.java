@@ -0,0 +1,151 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.benchmark;
+
+import com.github.akinaru.bleanalyzer.bluetooth.IDeviceNameResolver;
+import com.github.akinaru.bleanalyzer.bluetooth.ScanDispatcher;
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.RFdroidAdvertising;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementEngine;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementSession;
+import com.github.akinaru.bleanalyzer.utils.AddressUtils;
+import com.github.akinaru.bleanalyzer.utils.MonotonicClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scan frame dispatch path of ScanDispatcher, as called by BluetoothCustomManager for every scanned frame
+ * <p/>
+ * repeat frames : address parsing, known device lookup, rssi filter, measurement update and discovery batch mark.
+ * First sightings : name and advertising filters, RFdroid advertising interval parsing, device registration and
+ * measurement creation for the whole population. Discovery batches are not flushed.
+ *
+ * @author Bertrand Martel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    private final static int HISTORY_MAX_CAPACITY = 16384;
+    private final static long HISTORY_RETENTION = 60000;
+    private final static int COUNTER_BUCKET_MILLIS = 50;
+    private final static int COUNTER_BUCKET_COUNT = 1201;
+
+    @Param({"10", "1000", "10000"})
+    public int deviceCount;
+
+    private String[] addresses;
+
+    private byte[] scanRecord;
+
+    private final DeviceFilter filter = new DeviceFilter.Builder()
+            .addNamePrefix(RFdroidAdvertising.NAME)
+            .setRssiFloor(-100)
+            .build();
+
+    /**
+     * kept to retain its level : a device discovery is logged
+     */
+    private final Logger dispatchLogger = Logger.getLogger(ScanDispatcher.class.getName());
+
+    private ScheduledExecutorService executor;
+
+    private MeasurementSession measurement;
+
+    private ScanDispatcher<Void> dispatcher;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+
+        addresses = new String[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            addresses[i] = AddressUtils.format(0xC0FFEE000000L + i);
+        }
+        scanRecord = new byte[]{
+                0x02, 0x01, 0x06,
+                0x08, 0x09, 'R', 'F', 'd', 'r', 'o', 'i', 'd',
+                0x0A, (byte) 0xFF, 'R', 'F', 'd', 'r', 'o', 'i', 'd', 0x00, (byte) 0xA0,
+                0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+
+        dispatchLogger.setLevel(Level.WARNING);
+
+        executor = Executors.newSingleThreadScheduledExecutor();
+
+        measurement = new MeasurementSession(new MeasurementEngine(HISTORY_MAX_CAPACITY, HISTORY_RETENTION,
+                COUNTER_BUCKET_MILLIS, COUNTER_BUCKET_COUNT), new MonotonicClock());
+
+        dispatcher = new ScanDispatcher<>(measurement, new BluetoothEventBus(), executor,
+                new IDeviceNameResolver<Void>() {
+                    @Override
+                    public String getName(Void device) {
+                        return null;
+                    }
+                });
+        dispatcher.setDeviceFilter(filter);
+
+        discoverAll();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private int discoverAll() {
+        for (int i = 0; i < deviceCount; i++) {
+            dispatcher.onFrame(addresses[i], null, RFdroidAdvertising.NAME, -60, scanRecord, 0);
+        }
+        return dispatcher.getKnownDeviceCount();
+    }
+
+    @Benchmark
+    public void repeatFrame() {
+        String address = addresses[next];
+        next = (next + 1) % deviceCount;
+        dispatcher.onFrame(address, null, RFdroidAdvertising.NAME, -60, scanRecord, 0);
+    }
+
+    /**
+     * discover the whole population from an empty scanning list (time is for deviceCount first sightings)
+     */
+    @Benchmark
+    public int firstSightings() {
+        dispatcher.clear();
+        measurement.clear();
+        return discoverAll();
+    }
+}
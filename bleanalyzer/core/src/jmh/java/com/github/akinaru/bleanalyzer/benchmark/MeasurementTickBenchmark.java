@@ -0,0 +1,100 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.benchmark;
+
+import com.github.akinaru.bleanalyzer.measurement.DeviceMeasurement;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementEngine;
+import com.github.akinaru.bleanalyzer.utils.LongRingBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-second measurement tick against the size of packet history
+ *
+ * @author Bertrand Martel
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MeasurementTickBenchmark {
+
+    private final static int COUNTER_BUCKET_MILLIS = 50;
+    private final static int COUNTER_BUCKET_COUNT = 1201;
+    private final static int WINDOW = 1000;
+
+    /**
+     * delay between two frames of the measured device
+     */
+    private final static int FRAME_PERIOD = 10;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int historySize;
+
+    private DeviceMeasurement measurement;
+
+    private MeasurementEngine engine;
+
+    private long now;
+
+    @Setup
+    public void setup() {
+
+        engine = new MeasurementEngine(historySize, LongRingBuffer.RETENTION_UNLIMITED, COUNTER_BUCKET_MILLIS,
+                COUNTER_BUCKET_COUNT);
+
+        measurement = engine.getOrCreate("C0:FF:EE:00:00:00");
+        measurement.setAdvertizingInterval(FRAME_PERIOD);
+
+        long ts = 0;
+        for (int i = 0; i < historySize; i++) {
+            ts += FRAME_PERIOD;
+            measurement.addFrame(ts, -60);
+        }
+        now = ts;
+    }
+
+    @Benchmark
+    public int deviceUpdate() {
+        measurement.update(now, WINDOW);
+        return measurement.getReceptionRate();
+    }
+
+    @Benchmark
+    public int engineTick() {
+        engine.tick(now, WINDOW);
+        return measurement.getPacketCount();
+    }
+
+    /**
+     * history access done by tracked device display on every frame
+     */
+    @Benchmark
+    public long historyTotalCount() {
+        return measurement.getHistory().getTotalCount() + measurement.getHistory().getLast();
+    }
+}
@@ -0,0 +1,114 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Expiry of scanned devices not seen for a time to live
+ * <p/>
+ * devices are queued by expiry date computed from their last reception. Expiry is only re-evaluated when a device
+ * reaches the head of the queue : a device seen meanwhile is queued again with its new expiry, so frames never
+ * touch the queue and a sweep costs O(k log n) for k devices reaching their expiry.
+ *
+ * @author Bertrand Martel
+ */
+public class DeviceExpiryQueue {
+
+    /**
+     * default time to live of a device not seen in milliseconds
+     */
+    public final static int DEFAULT_TTL = 10000;
+
+    private final PriorityQueue<ScannedDevice> queue = new PriorityQueue<>(64, new Comparator<ScannedDevice>() {
+        @Override
+        public int compare(ScannedDevice lhs, ScannedDevice rhs) {
+            return lhs.getExpiry() < rhs.getExpiry() ? -1 : (lhs.getExpiry() == rhs.getExpiry() ? 0 : 1);
+        }
+    });
+
+    private volatile int ttl = DEFAULT_TTL;
+
+    /**
+     * start tracking expiry of a device
+     *
+     * @param device scanned device
+     * @param now    current time
+     */
+    public synchronized void add(ScannedDevice device, long now) {
+        device.setExpiry(Math.max(now, device.getLastSeen()) + ttl);
+        queue.add(device);
+    }
+
+    /**
+     * remove devices not seen for time to live
+     *
+     * @param now current time
+     * @return expired devices (empty list if none)
+     */
+    public synchronized List<ScannedDevice> pollExpired(long now) {
+
+        List<ScannedDevice> expired = null;
+
+        while (!queue.isEmpty() && queue.peek().getExpiry() <= now) {
+
+            ScannedDevice device = queue.poll();
+            long expiry = device.getLastSeen() + ttl;
+
+            if (expiry > now) {
+                //seen since it was queued
+                device.setExpiry(expiry);
+                queue.add(device);
+            } else {
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(device);
+            }
+        }
+        return expired != null ? expired : new ArrayList<ScannedDevice>(0);
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public synchronized void clear() {
+        queue.clear();
+    }
+
+    public int getTimeToLive() {
+        return ttl;
+    }
+
+    /**
+     * set time to live, applied to devices as they reach the head of the queue
+     *
+     * @param ttlMillis time to live in milliseconds
+     */
+    public void setTimeToLive(int ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("time to live must be positive");
+        }
+        ttl = ttlMillis;
+    }
+}
@@ -0,0 +1,178 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesce device discoveries and updates over a time window
+ * <p/>
+ * devices marked during a window are published once as a single list of new or updated devices, whatever the
+ * number of frames they sent
+ *
+ * @author Bertrand Martel
+ */
+public class DiscoveryBatcher {
+
+    /**
+     * default batch window in milliseconds
+     */
+    public final static int DEFAULT_WINDOW = 100;
+
+    private final BluetoothEventBus eventBus;
+
+    private final ScheduledExecutorService executor;
+
+    private final Object lock = new Object();
+
+    /**
+     * devices marked during current window, swapped with flushing list on each flush
+     */
+    private ArrayList<ScannedDevice> pendingList = new ArrayList<>();
+
+    private ArrayList<ScannedDevice> flushingList = new ArrayList<>();
+
+    private volatile int window = DEFAULT_WINDOW;
+
+    private ScheduledFuture<?> flushTask;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Build discovery batcher
+     *
+     * @param eventBus bus on which batches are published
+     * @param executor executor running the periodic flush
+     */
+    public DiscoveryBatcher(BluetoothEventBus eventBus, ScheduledExecutorService executor) {
+        this.eventBus = eventBus;
+        this.executor = executor;
+    }
+
+    /**
+     * mark a device as new or updated, it will be part of next batch
+     *
+     * @param device scanned device
+     */
+    public void markChanged(ScannedDevice device) {
+
+        if (device.isPending()) {
+            return;
+        }
+        synchronized (lock) {
+            if (!device.isPending()) {
+                device.setPending(true);
+                pendingList.add(device);
+            }
+        }
+    }
+
+    /**
+     * publish devices marked since last flush
+     */
+    public void flush() {
+
+        List<BluetoothObject> batch;
+
+        synchronized (lock) {
+            if (pendingList.isEmpty()) {
+                return;
+            }
+            ArrayList<ScannedDevice> list = pendingList;
+            pendingList = flushingList;
+            flushingList = list;
+
+            batch = new ArrayList<>(flushingList.size());
+
+            for (int i = 0; i < flushingList.size(); i++) {
+                ScannedDevice device = flushingList.get(i);
+                //device is marked again if it sends a frame from now on
+                device.setPending(false);
+                batch.add(new BluetoothObject(device.getAddress(), device.getName(),
+                        device.getAdvertizingInterval(), device.getRssi()));
+            }
+            flushingList.clear();
+        }
+        eventBus.postDevicesDiscovered(batch);
+    }
+
+    /**
+     * start periodic flush
+     */
+    public synchronized void start() {
+        if (flushTask == null) {
+            flushTask = executor.scheduleAtFixedRate(flushRunnable, window, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * stop periodic flush, devices already marked are published
+     */
+    public synchronized void stop() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+            executor.execute(flushRunnable);
+        }
+    }
+
+    /**
+     * drop devices marked since last flush
+     */
+    public void clear() {
+        synchronized (lock) {
+            for (int i = 0; i < pendingList.size(); i++) {
+                pendingList.get(i).setPending(false);
+            }
+            pendingList.clear();
+        }
+    }
+
+    /**
+     * set batch window, applied immediately if flush is running
+     *
+     * @param windowMillis window in milliseconds (one UI frame is about 16ms)
+     */
+    public synchronized void setWindow(int windowMillis) {
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("batch window must be positive");
+        }
+        window = windowMillis;
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = executor.scheduleAtFixedRate(flushRunnable, window, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int getWindow() {
+        return window;
+    }
+}
@@ -0,0 +1,478 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADCursor;
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.RFdroidAdvertising;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.capture.CaptureWriter;
+import com.github.akinaru.bleanalyzer.inter.IADListener;
+import com.github.akinaru.bleanalyzer.inter.IMeasurement;
+import com.github.akinaru.bleanalyzer.measurement.DeviceMeasurement;
+import com.github.akinaru.bleanalyzer.utils.AddressUtils;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+import com.github.akinaru.bleanalyzer.utils.LongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Dispatch of scanned frames to measurement and discovery events, independent of the scanner producing them
+ * <p/>
+ * onFrame() is called from a single scan callback thread. Frames of already known devices are dispatched without any
+ * allocation.
+ *
+ * @param <D> device handle given by the scanner, kept in scanning list
+ * @author Bertrand Martel
+ */
+public class ScanDispatcher<D> {
+
+    private final static Logger LOGGER = Logger.getLogger(ScanDispatcher.class.getName());
+
+    /**
+     * delay before checking again name of a device which was not dispatched
+     */
+    private final static int IGNORED_DEVICE_RETRY = 1000;
+
+    /**
+     * period of expired devices removal in milliseconds
+     */
+    private final static int SWEEP_PERIOD = 500;
+
+    private final IMeasurement measurement;
+
+    private final IClock clock;
+
+    private final BluetoothEventBus eventBus;
+
+    private final ScheduledExecutorService executor;
+
+    private final IDeviceNameResolver<D> nameResolver;
+
+    /**
+     * devices seen during scan indexed by 48 bit address (guards scanningList too)
+     */
+    private final LongObjectHashMap<ScannedDevice> knownDevices = new LongObjectHashMap<>();
+
+    private final HashMap<String, D> scanningList = new HashMap<>();
+
+    /**
+     * publish new and updated devices once per batch window
+     */
+    private final DiscoveryBatcher discoveryBatcher;
+
+    /**
+     * devices ordered by expiry of their time to live
+     */
+    private final DeviceExpiryQueue expiryQueue = new DeviceExpiryQueue();
+
+    private ScheduledFuture<?> sweepTask = null;
+
+    private final Runnable sweepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sweepExpiredDevices();
+        }
+    };
+
+    /**
+     * AD structure cursor reused for every frame (only used from scan callback thread)
+     */
+    private final ADCursor adCursor = new ADCursor();
+
+    /**
+     * frame record reused for every frame (only used from scan callback thread)
+     */
+    private final ScanFrame frame = new ScanFrame();
+
+    /**
+     * filter applied to scanned devices, replaced as a whole when changed
+     */
+    private volatile DeviceFilter deviceFilter = DeviceFilter.ACCEPT_ALL;
+
+    /**
+     * capture log receiving every scanned frame, null if capture is disabled
+     */
+    private volatile CaptureWriter captureWriter = null;
+
+    private volatile IADListener adListener = null;
+
+    /**
+     * Build scan dispatcher
+     *
+     * @param measurement  measurement receiving frames
+     * @param eventBus     bus on which discovered and lost devices are published
+     * @param executor     executor running discovery batches and expiry sweep
+     * @param nameResolver resolver of device handle name
+     */
+    public ScanDispatcher(IMeasurement measurement, BluetoothEventBus eventBus, ScheduledExecutorService executor,
+                          IDeviceNameResolver<D> nameResolver) {
+        this.measurement = measurement;
+        this.clock = measurement.getClock();
+        this.eventBus = eventBus;
+        this.executor = executor;
+        this.nameResolver = nameResolver;
+        this.discoveryBatcher = new DiscoveryBatcher(eventBus, executor);
+    }
+
+    /**
+     * process a scanned frame
+     *
+     * @param address    device address
+     * @param device     device handle or null if frame does not come from the radio
+     * @param name       device name if frame does not come from the radio
+     * @param rssi       received signal strength
+     * @param scanRecord advertising payload
+     * @param ageMillis  time elapsed since frame reception
+     */
+    public void onFrame(String address, D device, String name, int rssi, byte[] scanRecord, long ageMillis) {
+
+        long address48 = AddressUtils.parse(address);
+
+        if (address48 == -1) {
+            return;
+        }
+
+        long ts = clock.currentTimeMillis() - ageMillis;
+
+        CaptureWriter capture = captureWriter;
+        if (capture != null) {
+            capture.append(ts, address48, rssi, scanRecord);
+        }
+
+        DeviceFilter filter = deviceFilter;
+
+        ScannedDevice scannedDevice;
+
+        synchronized (knownDevices) {
+            scannedDevice = knownDevices.get(address48);
+        }
+
+        if (scannedDevice != null) {
+
+            if (!scannedDevice.isIgnored()) {
+
+                if (scannedDevice.getFilter() != filter) {
+                    //filter changed since this device was checked
+                    scannedDevice.setFilter(filter);
+                    scannedDevice.setRejected(!filter.acceptsName(scannedDevice.getName()) ||
+                            !filter.acceptsAdvertising(adCursor, scanRecord));
+                }
+
+                //rejected devices are not seen anymore and expire
+                if (scannedDevice.isRejected() ||
+                        (!filter.acceptsRssi(rssi) && !scannedDevice.isTracked(measurement.getBtDevice()))) {
+                    return;
+                }
+
+                dispatchFrame(frame.set(scannedDevice, ts, rssi, scanRecord));
+                return;
+            }
+            scannedDevice.seen(ts, rssi);
+            if (ts < scannedDevice.getNextNameCheck() && scannedDevice.getFilter() == filter) {
+                return;
+            }
+        }
+
+        //first reception of this device : name is resolved only once
+        if (device != null) {
+            name = nameResolver.getName(device);
+        }
+
+        if (name == null) {
+            ignoreDevice(address, address48, filter, ts + IGNORED_DEVICE_RETRY, ts, rssi);
+        } else if (!filter.acceptsName(name) || !filter.acceptsAdvertising(adCursor, scanRecord)) {
+            //filtered out until filter changes
+            ignoreDevice(address, address48, filter, Long.MAX_VALUE, ts, rssi);
+        } else if (!filter.acceptsRssi(rssi)) {
+            ignoreDevice(address, address48, filter, ts + IGNORED_DEVICE_RETRY, ts, rssi);
+        } else if (name.equals(RFdroidAdvertising.NAME)) {
+            dispatchRFdroid(device, address, address48, name, filter, ts, rssi, scanRecord);
+        } else {
+            dispatchBtDevices(device, address, address48, name, filter, ts, rssi);
+        }
+    }
+
+    /**
+     * record a frame received from an already discovered device
+     *
+     * @param frame received frame
+     */
+    private void dispatchFrame(ScanFrame frame) {
+
+        ScannedDevice scannedDevice = frame.getDevice();
+
+        scannedDevice.seen(frame.getTimestamp(), frame.getRssi());
+
+        DeviceMeasurement deviceMeasurement = scannedDevice.getMeasurement();
+
+        if (deviceMeasurement == null || deviceMeasurement.isReleased()) {
+            deviceMeasurement = measurement.obtainDeviceMeasurement(scannedDevice.getAddress());
+            scannedDevice.setMeasurement(deviceMeasurement);
+        }
+        deviceMeasurement.addFrame(frame.getTimestamp(), frame.getRssi());
+
+        discoveryBatcher.markChanged(scannedDevice);
+
+        IADListener listener = adListener;
+
+        if (listener != null && scannedDevice.isTracked(measurement.getBtDevice())) {
+            listener.onADframeReceived(frame.getTimestamp(), deviceMeasurement.getHistory(), frame.getRssi());
+        }
+    }
+
+    /**
+     * skip frames of a device until a given time or until filter changes
+     */
+    private void ignoreDevice(String address, long address48, DeviceFilter filter, long nextCheck, long ts, int rssi) {
+
+        ScannedDevice scannedDevice;
+
+        synchronized (knownDevices) {
+
+            scannedDevice = knownDevices.get(address48);
+
+            if (scannedDevice != null && scannedDevice.isIgnored()) {
+                scannedDevice.setFilter(filter);
+                scannedDevice.ignoreUntil(nextCheck);
+                return;
+            }
+            scannedDevice = new ScannedDevice(address, address48);
+            scannedDevice.setFilter(filter);
+            scannedDevice.ignoreUntil(nextCheck);
+            scannedDevice.seen(ts, rssi);
+            knownDevices.put(address48, scannedDevice);
+        }
+        expiryQueue.add(scannedDevice, ts);
+    }
+
+    /**
+     * register a newly discovered device and record its first frame
+     */
+    private void registerDevice(D device, String address, long address48, String name, DeviceFilter filter,
+                                int advertizingInterval, long ts, int rssi, byte[] scanRecord) {
+
+        ScannedDevice scannedDevice = new ScannedDevice(address, address48);
+        scannedDevice.setFilter(filter);
+        scannedDevice.setName(name);
+        scannedDevice.setRFdroid(RFdroidAdvertising.NAME.equals(name));
+        scannedDevice.setAdvertizingInterval(advertizingInterval);
+        scannedDevice.setMeasurement(measurement.obtainDeviceMeasurement(address));
+
+        synchronized (knownDevices) {
+            knownDevices.put(address48, scannedDevice);
+            if (device != null) {
+                scanningList.put(address, device);
+            }
+        }
+        expiryQueue.add(scannedDevice, ts);
+
+        dispatchFrame(frame.set(scannedDevice, ts, rssi, scanRecord));
+    }
+
+    private void dispatchRFdroid(D device, String address, long address48, String name,
+                                 DeviceFilter filter, long ts, int rssi, byte[] scanRecord) {
+
+        LOGGER.info("found a RFdroid");
+
+        int advInterval = RFdroidAdvertising.parseAdvertizingInterval(adCursor, scanRecord);
+
+        if (advInterval == -1) {
+            ignoreDevice(address, address48, filter, ts + IGNORED_DEVICE_RETRY, ts, rssi);
+            return;
+        }
+
+        LOGGER.info("current scan interval : " + advInterval);
+
+        measurement.setAdvertizingInterval(address, advInterval);
+
+        registerDevice(device, address, address48, name, filter, advInterval, ts, rssi, scanRecord);
+
+        if (!measurement.isSelectionningDevice())
+            measurement.setBtDevice(new BluetoothObject(address, name, advInterval, (short) rssi));
+    }
+
+    private void dispatchBtDevices(D device, String address, long address48, String name,
+                                   DeviceFilter filter, long ts, int rssi) {
+
+        LOGGER.info("found a new Bluetooth device : " + name + " : " + address + " : " + " device Rssi " + rssi);
+
+        registerDevice(device, address, address48, name, filter, -1, ts, rssi, null);
+    }
+
+    /**
+     * remove devices not seen for time to live and notify their loss
+     */
+    public void sweepExpiredDevices() {
+
+        List<ScannedDevice> expired = expiryQueue.pollExpired(clock.currentTimeMillis());
+
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        List<BluetoothObject> lostList = new ArrayList<>();
+
+        synchronized (knownDevices) {
+
+            for (int i = 0; i < expired.size(); i++) {
+
+                ScannedDevice scannedDevice = expired.get(i);
+
+                //device may have been replaced by a new entry (cleared list or name resolved)
+                if (knownDevices.get(scannedDevice.getAddress48()) != scannedDevice) {
+                    continue;
+                }
+                knownDevices.remove(scannedDevice.getAddress48());
+
+                if (!scannedDevice.isIgnored()) {
+                    scanningList.remove(scannedDevice.getAddress());
+                    lostList.add(new BluetoothObject(scannedDevice.getAddress(), scannedDevice.getName(),
+                            scannedDevice.getAdvertizingInterval(), scannedDevice.getRssi()));
+                }
+            }
+        }
+
+        if (!lostList.isEmpty()) {
+
+            LOGGER.fine(lostList.size() + " devices lost");
+
+            for (int i = 0; i < lostList.size(); i++) {
+                measurement.removeDeviceMeasurement(lostList.get(i).getDeviceAddress());
+            }
+            eventBus.postDevicesLost(lostList);
+        }
+    }
+
+    /**
+     * start discovery batches and expiry sweep
+     */
+    public synchronized void start() {
+        discoveryBatcher.start();
+        if (sweepTask == null) {
+            sweepTask = executor.scheduleAtFixedRate(sweepRunnable, SWEEP_PERIOD, SWEEP_PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * stop expiry sweep, devices already marked are published
+     */
+    public synchronized void stop() {
+        discoveryBatcher.stop();
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+            sweepTask = null;
+        }
+    }
+
+    /**
+     * forget all devices (usually before rescanning)
+     */
+    public void clear() {
+        synchronized (knownDevices) {
+            scanningList.clear();
+            knownDevices.clear();
+        }
+        discoveryBatcher.clear();
+        expiryQueue.clear();
+    }
+
+    /**
+     * number of devices seen, dispatched or ignored
+     *
+     * @return
+     */
+    public int getKnownDeviceCount() {
+        synchronized (knownDevices) {
+            return knownDevices.size();
+        }
+    }
+
+    /**
+     * set filter applied to scanned devices before any dispatch. Devices already discovered which do not match the new
+     * filter expire after their time to live
+     *
+     * @param filter device filter
+     */
+    public void setDeviceFilter(DeviceFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter must not be null, use DeviceFilter.ACCEPT_ALL");
+        }
+        deviceFilter = filter;
+    }
+
+    public DeviceFilter getDeviceFilter() {
+        return deviceFilter;
+    }
+
+    /**
+     * record every scanned frame, before any filtering, to a capture log
+     *
+     * @param writer capture writer or null to stop recording
+     */
+    public void setCaptureWriter(CaptureWriter writer) {
+        captureWriter = writer;
+    }
+
+    public CaptureWriter getCaptureWriter() {
+        return captureWriter;
+    }
+
+    public void setADListener(IADListener listener) {
+        adListener = listener;
+    }
+
+    /**
+     * set time to live of a device not seen anymore, after which it is removed from scanning list
+     *
+     * @param ttlMillis time to live in milliseconds
+     */
+    public void setDeviceTimeToLive(int ttlMillis) {
+        expiryQueue.setTimeToLive(ttlMillis);
+    }
+
+    /**
+     * set window over which device discoveries and updates are batched
+     *
+     * @param windowMillis batch window in milliseconds
+     */
+    public void setDiscoveryBatchWindow(int windowMillis) {
+        discoveryBatcher.setWindow(windowMillis);
+    }
+
+    public DiscoveryBatcher getDiscoveryBatcher() {
+        return discoveryBatcher;
+    }
+
+    /**
+     * device handles of dispatched devices by address
+     *
+     * @return
+     */
+    public HashMap<String, D> getScanningList() {
+        return scanningList;
+    }
+}
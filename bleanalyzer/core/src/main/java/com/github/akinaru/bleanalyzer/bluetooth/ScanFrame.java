@@ -18,63 +18,57 @@
  */
 package com.github.akinaru.bleanalyzer.bluetooth;
 
-import android.bluetooth.BluetoothGatt;
-
-import com.github.akinaru.bleanalyzer.bluetooth.listener.IPushListener;
-
 /**
- * Description of a GATT task to be executed (write/read characteristic/descriptor)
+ * Advertising frame received during scan
+ * <p/>
+ * a single instance is refilled for every received frame : listeners must copy what they need before returning
  *
  * @author Bertrand Martel
  */
-public abstract class GattTask implements Runnable {
-
-    private String gattUid = "";
-    private byte[] value = null;
+public class ScanFrame {
 
-    private String descriptorCharacUid = "";
-    private String descriptorServiceUid = "";
-    private IPushListener listener = null;
+    private ScannedDevice device;
 
-    private BluetoothGatt gatt = null;
+    private long timestamp;
 
-    public GattTask(BluetoothGatt gatt, String descriptorUid, byte[] descriptorVal, String serviceUid, String characUid) {
-        this.gatt = gatt;
-        this.gattUid = descriptorUid;
-        this.value = descriptorVal;
-        this.descriptorCharacUid = characUid;
-        this.descriptorServiceUid = serviceUid;
-    }
+    private int rssi;
 
-    public GattTask(BluetoothGatt gatt, String gattUid, byte[] value, IPushListener listener) {
-        this.gatt = gatt;
-        this.gattUid = gattUid;
-        this.value = value;
-        this.listener = listener;
-    }
+    private byte[] scanRecord;
 
-    public String getUid() {
-        return gattUid;
+    /**
+     * refill frame
+     *
+     * @param device     emitting device
+     * @param timestamp  reception timestamp
+     * @param rssi       received signal strength
+     * @param scanRecord raw advertising payload
+     * @return this frame
+     */
+    public ScanFrame set(ScannedDevice device, long timestamp, int rssi, byte[] scanRecord) {
+        this.device = device;
+        this.timestamp = timestamp;
+        this.rssi = rssi;
+        this.scanRecord = scanRecord;
+        return this;
     }
 
-    public byte[] getValue() {
-        return value;
+    public ScannedDevice getDevice() {
+        return device;
     }
 
-    public String getDescriptorServiceUid() {
-        return descriptorServiceUid;
+    public long getAddress48() {
+        return device.getAddress48();
     }
 
-    public String getDescriptorCharacUid() {
-        return descriptorCharacUid;
+    public long getTimestamp() {
+        return timestamp;
     }
 
-    public BluetoothGatt getGatt() {
-        return gatt;
+    public int getRssi() {
+        return rssi;
     }
 
-    public IPushListener getListener() {
-        return listener;
+    public byte[] getScanRecord() {
+        return scanRecord;
     }
-
 }
@@ -0,0 +1,219 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.measurement.DeviceMeasurement;
+
+/**
+ * Cached state of a device seen during scan
+ * <p/>
+ * resolved once on first reception so that following frames of the same device are dispatched without calling
+ * BluetoothDevice.getName() nor comparing strings. Updated from scan callback thread, last reception is read by
+ * discovery batches.
+ *
+ * @author Bertrand Martel
+ */
+public class ScannedDevice {
+
+    private final String address;
+
+    private final long address48;
+
+    private String name;
+
+    private boolean rfdroid;
+
+    /**
+     * advertising interval in milliseconds, -1 if unknown
+     */
+    private int advertizingInterval = -1;
+
+    /**
+     * device is not dispatched (no name resolved yet or filtered out), it will be checked again after nextNameCheck
+     */
+    private boolean ignored;
+
+    private long nextNameCheck;
+
+    private DeviceMeasurement measurement;
+
+    /**
+     * filter against which this device was last checked
+     */
+    private DeviceFilter filter;
+
+    private boolean rejected;
+
+    /**
+     * last tracked device compared against this device
+     */
+    private BluetoothObject trackedRef;
+
+    private boolean tracked;
+
+    private volatile int rssi;
+
+    private volatile long lastSeen;
+
+    /**
+     * device is waiting in a discovery batch
+     */
+    private volatile boolean pending;
+
+    /**
+     * expiry date in expiry queue
+     */
+    private long expiry;
+
+    /**
+     * Build scanned device
+     *
+     * @param address   device address formatted as "XX:XX:XX:XX:XX:XX"
+     * @param address48 48 bit device address
+     */
+    public ScannedDevice(String address, long address48) {
+        this.address = address;
+        this.address48 = address48;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getAddress48() {
+        return address48;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isRFdroid() {
+        return rfdroid;
+    }
+
+    public void setRFdroid(boolean rfdroid) {
+        this.rfdroid = rfdroid;
+    }
+
+    public int getAdvertizingInterval() {
+        return advertizingInterval;
+    }
+
+    public void setAdvertizingInterval(int advertizingInterval) {
+        this.advertizingInterval = advertizingInterval;
+    }
+
+    public boolean isIgnored() {
+        return ignored;
+    }
+
+    public long getNextNameCheck() {
+        return nextNameCheck;
+    }
+
+    /**
+     * stop dispatching this device until a given time
+     *
+     * @param nextNameCheck time at which device name will be resolved again
+     */
+    public void ignoreUntil(long nextNameCheck) {
+        this.ignored = true;
+        this.nextNameCheck = nextNameCheck;
+    }
+
+    public DeviceMeasurement getMeasurement() {
+        return measurement;
+    }
+
+    public void setMeasurement(DeviceMeasurement measurement) {
+        this.measurement = measurement;
+    }
+
+    public DeviceFilter getFilter() {
+        return filter;
+    }
+
+    public void setFilter(DeviceFilter filter) {
+        this.filter = filter;
+    }
+
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    public void setRejected(boolean rejected) {
+        this.rejected = rejected;
+    }
+
+    /**
+     * check if this device is the tracked device. Address comparison is done only when tracked device changes
+     *
+     * @param trackedDevice current tracked device
+     * @return
+     */
+    public boolean isTracked(BluetoothObject trackedDevice) {
+        if (trackedDevice != trackedRef) {
+            trackedRef = trackedDevice;
+            tracked = trackedDevice != null && address.equals(trackedDevice.getDeviceAddress());
+        }
+        return tracked;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * record last reception of this device
+     *
+     * @param ts   reception timestamp
+     * @param rssi received signal strength
+     */
+    public void seen(long ts, int rssi) {
+        this.lastSeen = ts;
+        this.rssi = rssi;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
+    public long getExpiry() {
+        return expiry;
+    }
+
+    public void setExpiry(long expiry) {
+        this.expiry = expiry;
+    }
+}
@@ -0,0 +1,377 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.advertising;
+
+/**
+ * Zero-copy cursor over the AD structures of an advertising payload
+ * <p/>
+ * the cursor walks the raw scan record in place : no structure object, array or string is allocated.
+ * A single instance can be reused for every frame received on the same thread.
+ * <p/>
+ * each AD structure is encoded as [length][type][data], length including the type byte
+ *
+ * @author Bertrand Martel
+ */
+public class ADCursor {
+
+    private byte[] payload = null;
+
+    /**
+     * end of payload (exclusive)
+     */
+    private int end = 0;
+
+    /**
+     * offset of next AD structure length byte
+     */
+    private int next = 0;
+
+    private int type = -1;
+
+    /**
+     * offset of current AD structure data
+     */
+    private int offset = 0;
+
+    /**
+     * length of current AD structure data (excluding type byte)
+     */
+    private int length = 0;
+
+    /**
+     * position cursor before first AD structure of the payload
+     *
+     * @param payload raw advertising payload
+     * @return this cursor
+     */
+    public ADCursor reset(byte[] payload) {
+        return reset(payload, 0, payload != null ? payload.length : 0);
+    }
+
+    /**
+     * position cursor before first AD structure of a payload slice
+     *
+     * @param payload raw advertising payload
+     * @param start   offset of first AD structure
+     * @param length  number of bytes to walk
+     * @return this cursor
+     */
+    public ADCursor reset(byte[] payload, int start, int length) {
+        this.payload = payload;
+        this.next = start;
+        this.end = (payload != null) ? Math.min(payload.length, start + length) : 0;
+        this.type = -1;
+        this.offset = 0;
+        this.length = 0;
+        return this;
+    }
+
+    /**
+     * move to next AD structure
+     *
+     * @return false if there is no more structure (end of payload, zero padding or truncated structure)
+     */
+    public boolean next() {
+
+        if (next >= end) {
+            return invalidate();
+        }
+
+        int structLength = payload[next] & 0xFF;
+
+        if (structLength == 0 || next + 1 + structLength > end) {
+            return invalidate();
+        }
+
+        type = payload[next + 1] & 0xFF;
+        offset = next + 2;
+        length = structLength - 1;
+        next += structLength + 1;
+        return true;
+    }
+
+    private boolean invalidate() {
+        next = end;
+        type = -1;
+        offset = 0;
+        length = 0;
+        return false;
+    }
+
+    /**
+     * move to next AD structure of the specified type
+     *
+     * @param adType AD structure type
+     * @return false if no more structure of this type is found
+     */
+    public boolean nextOfType(int adType) {
+        while (next()) {
+            if (type == adType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * AD type of current structure
+     *
+     * @return
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * offset of current structure data in payload
+     *
+     * @return
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * length of current structure data (excluding type byte)
+     *
+     * @return
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * read a byte of current structure data
+     *
+     * @param index index in structure data
+     * @return
+     */
+    public byte getByte(int index) {
+        return payload[offset + index];
+    }
+
+    /**
+     * read an unsigned byte of current structure data
+     *
+     * @param index index in structure data
+     * @return
+     */
+    public int getUint8(int index) {
+        return payload[offset + index] & 0xFF;
+    }
+
+    /**
+     * read an unsigned little endian 16 bit value of current structure data
+     *
+     * @param index index in structure data
+     * @return
+     */
+    public int getUint16(int index) {
+        return (payload[offset + index] & 0xFF) | ((payload[offset + index + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * check current structure data is exactly the specified bytes
+     *
+     * @param expected expected data
+     * @return
+     */
+    public boolean dataEquals(byte[] expected) {
+        return length == expected.length && regionMatches(0, expected);
+    }
+
+    /**
+     * check current structure data starts with the specified bytes
+     *
+     * @param prefix expected prefix
+     * @return
+     */
+    public boolean dataStartsWith(byte[] prefix) {
+        return length >= prefix.length && regionMatches(0, prefix);
+    }
+
+    private boolean regionMatches(int index, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (payload[offset + index + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * check current structure is manufacturer specific data
+     *
+     * @return
+     */
+    public boolean isManufacturerData() {
+        return type == ADTypes.MANUFACTURER_SPECIFIC_DATA && length >= 2;
+    }
+
+    /**
+     * company identifier of current manufacturer specific data
+     *
+     * @return company identifier or -1 if current structure is not manufacturer specific data
+     */
+    public int getCompanyId() {
+        return isManufacturerData() ? getUint16(0) : -1;
+    }
+
+    /**
+     * check current structure is manufacturer specific data from the specified company
+     *
+     * @param companyId company identifier
+     * @return
+     */
+    public boolean matchesManufacturer(int companyId) {
+        return getCompanyId() == companyId;
+    }
+
+    /**
+     * check current structure is manufacturer specific data from the specified company, followed by the specified bytes
+     *
+     * @param companyId company identifier
+     * @param prefix    expected data following company identifier
+     * @return
+     */
+    public boolean matchesManufacturerData(int companyId, byte[] prefix) {
+        return matchesManufacturer(companyId) && length - 2 >= prefix.length && regionMatches(2, prefix);
+    }
+
+    /**
+     * check current structure is a local name (complete or shortened)
+     *
+     * @return
+     */
+    public boolean isLocalName() {
+        return type == ADTypes.COMPLETE_LOCAL_NAME || type == ADTypes.SHORTENED_LOCAL_NAME;
+    }
+
+    /**
+     * check current structure is a local name equal to the specified UTF-8 bytes
+     *
+     * @param name expected name
+     * @return
+     */
+    public boolean localNameEquals(byte[] name) {
+        return isLocalName() && dataEquals(name);
+    }
+
+    /**
+     * check current structure is a local name starting with the specified UTF-8 bytes
+     *
+     * @param prefix expected name prefix
+     * @return
+     */
+    public boolean localNameStartsWith(byte[] prefix) {
+        return isLocalName() && dataStartsWith(prefix);
+    }
+
+    /**
+     * check current structure is a 16 bit service UUID list containing the specified UUID
+     *
+     * @param uuid16 16 bit service UUID
+     * @return
+     */
+    public boolean hasServiceUuid16(int uuid16) {
+        if (type != ADTypes.COMPLETE_SERVICE_UUID_16 && type != ADTypes.INCOMPLETE_SERVICE_UUID_16) {
+            return false;
+        }
+        for (int i = 0; i + 1 < length; i += 2) {
+            if (getUint16(i) == uuid16) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * check current structure is a 128 bit service UUID list containing the specified UUID
+     *
+     * @param mostSignificantBits  most significant bits of UUID
+     * @param leastSignificantBits least significant bits of UUID
+     * @return
+     */
+    public boolean hasServiceUuid128(long mostSignificantBits, long leastSignificantBits) {
+        if (type != ADTypes.COMPLETE_SERVICE_UUID_128 && type != ADTypes.INCOMPLETE_SERVICE_UUID_128) {
+            return false;
+        }
+        for (int i = 0; i + 15 < length; i += 16) {
+            //UUID are encoded in little endian
+            if (getUint64(i) == leastSignificantBits && getUint64(i + 8) == mostSignificantBits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getUint64(int index) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (payload[offset + index + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * walk the whole payload looking for a service UUID (16 or 128 bit list)
+     *
+     * @param payload              raw advertising payload
+     * @param mostSignificantBits  most significant bits of UUID
+     * @param leastSignificantBits least significant bits of UUID
+     * @return
+     */
+    public boolean findServiceUuid(byte[] payload, long mostSignificantBits, long leastSignificantBits) {
+
+        int uuid16 = toUuid16(mostSignificantBits, leastSignificantBits);
+
+        reset(payload);
+        while (next()) {
+            if ((uuid16 != -1 && hasServiceUuid16(uuid16)) || hasServiceUuid128(mostSignificantBits, leastSignificantBits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bluetooth base UUID (0000xxxx-0000-1000-8000-00805F9B34FB) parts
+     */
+    private final static long BASE_UUID_MSB_MASK = 0xFFFF0000FFFFFFFFL;
+    private final static long BASE_UUID_MSB = 0x0000000000001000L;
+    private final static long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    /**
+     * extract 16 bit alias of a UUID derived from Bluetooth base UUID
+     *
+     * @param mostSignificantBits  most significant bits of UUID
+     * @param leastSignificantBits least significant bits of UUID
+     * @return 16 bit UUID or -1 if UUID is not derived from Bluetooth base UUID
+     */
+    public static int toUuid16(long mostSignificantBits, long leastSignificantBits) {
+        if (leastSignificantBits != BASE_UUID_LSB || (mostSignificantBits & BASE_UUID_MSB_MASK) != BASE_UUID_MSB) {
+            return -1;
+        }
+        return (int) ((mostSignificantBits >>> 32) & 0xFFFF);
+    }
+}
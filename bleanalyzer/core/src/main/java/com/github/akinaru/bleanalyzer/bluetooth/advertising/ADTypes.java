@@ -0,0 +1,41 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.advertising;
+
+/**
+ * AD structure types (Bluetooth Core Specification Supplement)
+ *
+ * @author Bertrand Martel
+ */
+public class ADTypes {
+
+    public final static int FLAGS = 0x01;
+    public final static int INCOMPLETE_SERVICE_UUID_16 = 0x02;
+    public final static int COMPLETE_SERVICE_UUID_16 = 0x03;
+    public final static int INCOMPLETE_SERVICE_UUID_32 = 0x04;
+    public final static int COMPLETE_SERVICE_UUID_32 = 0x05;
+    public final static int INCOMPLETE_SERVICE_UUID_128 = 0x06;
+    public final static int COMPLETE_SERVICE_UUID_128 = 0x07;
+    public final static int SHORTENED_LOCAL_NAME = 0x08;
+    public final static int COMPLETE_LOCAL_NAME = 0x09;
+    public final static int TX_POWER_LEVEL = 0x0A;
+    public final static int SERVICE_DATA_UUID_16 = 0x16;
+    public final static int MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+}
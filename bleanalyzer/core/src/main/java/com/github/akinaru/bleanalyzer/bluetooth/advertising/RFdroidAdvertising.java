@@ -0,0 +1,63 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.advertising;
+
+/**
+ * RFdroid advertising payload
+ * <p/>
+ * RFdroid advertises its name and a manufacturer specific data made of "RFdroid" followed by its advertising
+ * interval in 0.625ms unit (big endian)
+ *
+ * @author Bertrand Martel
+ */
+public class RFdroidAdvertising {
+
+    /**
+     * RFdroid device name
+     */
+    public final static String NAME = "RFdroid";
+
+    private final static byte[] MANUFACTURER_DATA = new byte[]{'R', 'F', 'd', 'r', 'o', 'i', 'd'};
+
+    /**
+     * advertising interval unit in milliseconds
+     */
+    private final static double INTERVAL_UNIT = 0.625;
+
+    /**
+     * extract advertising interval from a RFdroid advertising payload
+     *
+     * @param cursor     AD structure cursor (reset to the payload)
+     * @param scanRecord raw advertising payload
+     * @return advertising interval in milliseconds or -1 if payload has no RFdroid manufacturer data
+     */
+    public static int parseAdvertizingInterval(ADCursor cursor, byte[] scanRecord) {
+
+        int advInterval = -1;
+
+        cursor.reset(scanRecord);
+
+        while (cursor.nextOfType(ADTypes.MANUFACTURER_SPECIFIC_DATA)) {
+            if (cursor.getLength() == MANUFACTURER_DATA.length + 2 && cursor.dataStartsWith(MANUFACTURER_DATA)) {
+                advInterval = (cursor.getUint8(7) << 8) + cursor.getUint8(8);
+            }
+        }
+        return advInterval == -1 ? -1 : (int) (advInterval * INTERVAL_UNIT);
+    }
+}
@@ -0,0 +1,219 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.events;
+
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IBluetoothEventListener;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * In-process bus delivering Bluetooth events as objects to subscribed listeners
+ * <p/>
+ * each subscriber chooses the executor its events are delivered on (UI thread, worker thread or directly on
+ * publishing thread). Events posted to a subscriber are not delivered anymore once it has unsubscribed.
+ *
+ * @author Bertrand Martel
+ */
+public class BluetoothEventBus {
+
+    private final static Logger LOGGER = Logger.getLogger(BluetoothEventBus.class.getName());
+
+    /**
+     * executor delivering events on publishing thread
+     */
+    public final static Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final static int EVENT_SCAN_START = 0;
+    private final static int EVENT_SCAN_END = 1;
+    private final static int EVENT_DEVICE_DISCOVERED = 2;
+    private final static int EVENT_DEVICE_CONNECTED = 3;
+    private final static int EVENT_DEVICE_DISCONNECTED = 4;
+    private final static int EVENT_DEVICES_LOST = 5;
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * subscribe a listener, events are delivered on publishing thread
+     *
+     * @param listener event listener
+     */
+    public void subscribe(IBluetoothEventListener listener) {
+        subscribe(listener, DIRECT_EXECUTOR);
+    }
+
+    /**
+     * subscribe a listener
+     *
+     * @param listener event listener
+     * @param executor executor used to deliver events to this listener
+     */
+    public void subscribe(IBluetoothEventListener listener, Executor executor) {
+        if (listener == null || executor == null) {
+            throw new IllegalArgumentException("listener and executor must not be null");
+        }
+        unsubscribe(listener);
+        subscriptions.add(new Subscription(listener, executor));
+    }
+
+    /**
+     * unsubscribe a listener, pending events are dropped
+     *
+     * @param listener event listener
+     */
+    public void unsubscribe(IBluetoothEventListener listener) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.listener == listener) {
+                subscription.active = false;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public void postScanStart() {
+        post(EVENT_SCAN_START, null, null);
+    }
+
+    public void postScanEnd() {
+        post(EVENT_SCAN_END, null, null);
+    }
+
+    /**
+     * publish a batch of new or updated devices, list must not be modified afterwards
+     *
+     * @param devices new or updated devices
+     */
+    public void postDevicesDiscovered(List<BluetoothObject> devices) {
+        post(EVENT_DEVICE_DISCOVERED, null, Collections.unmodifiableList(devices));
+    }
+
+    /**
+     * publish devices not seen anymore, list must not be modified afterwards
+     *
+     * @param devices lost devices
+     */
+    public void postDevicesLost(List<BluetoothObject> devices) {
+        post(EVENT_DEVICES_LOST, null, Collections.unmodifiableList(devices));
+    }
+
+    public void postDeviceConnected(BluetoothObject device) {
+        post(EVENT_DEVICE_CONNECTED, device, null);
+    }
+
+    public void postDeviceDisconnected(BluetoothObject device) {
+        post(EVENT_DEVICE_DISCONNECTED, device, null);
+    }
+
+    private void post(int event, BluetoothObject device, List<BluetoothObject> devices) {
+
+        for (Subscription subscription : subscriptions) {
+
+            if (subscription.executor == DIRECT_EXECUTOR) {
+                deliver(subscription, event, device, devices);
+            } else {
+                try {
+                    subscription.executor.execute(new EventTask(subscription, event, device, devices));
+                } catch (RejectedExecutionException | IllegalStateException e) {
+                    LOGGER.warning("event dropped for " + subscription.listener + " : " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void deliver(Subscription subscription, int event, BluetoothObject device,
+                                List<BluetoothObject> devices) {
+
+        if (!subscription.active) {
+            return;
+        }
+
+        IBluetoothEventListener listener = subscription.listener;
+
+        switch (event) {
+            case EVENT_SCAN_START:
+                listener.onScanStart();
+                break;
+            case EVENT_SCAN_END:
+                listener.onScanEnd();
+                break;
+            case EVENT_DEVICE_DISCOVERED:
+                listener.onDevicesDiscovered(devices);
+                break;
+            case EVENT_DEVICES_LOST:
+                listener.onDevicesLost(devices);
+                break;
+            case EVENT_DEVICE_CONNECTED:
+                listener.onDeviceConnected(device);
+                break;
+            case EVENT_DEVICE_DISCONNECTED:
+                listener.onDeviceDisconnected(device);
+                break;
+        }
+    }
+
+    private static class Subscription {
+
+        private final IBluetoothEventListener listener;
+
+        private final Executor executor;
+
+        private volatile boolean active = true;
+
+        Subscription(IBluetoothEventListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    private static class EventTask implements Runnable {
+
+        private final Subscription subscription;
+
+        private final int event;
+
+        private final BluetoothObject device;
+
+        private final List<BluetoothObject> devices;
+
+        EventTask(Subscription subscription, int event, BluetoothObject device, List<BluetoothObject> devices) {
+            this.subscription = subscription;
+            this.event = event;
+            this.device = device;
+            this.devices = devices;
+        }
+
+        @Override
+        public void run() {
+            deliver(subscription, event, device, devices);
+        }
+    }
+}
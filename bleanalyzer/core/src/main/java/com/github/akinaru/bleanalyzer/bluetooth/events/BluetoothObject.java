@@ -18,22 +18,13 @@
  */
 package com.github.akinaru.bleanalyzer.bluetooth.events;
 
-import android.bluetooth.BluetoothDevice;
-import android.content.Intent;
-import android.nfc.Tag;
-import android.util.Log;
-
 import com.github.akinaru.bleanalyzer.constant.JsonConstants;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-
-import static java.lang.String.valueOf;
-
 /**
- * Object used to wrap broadcast intent json output
+ * Bluetooth device info carried by Bluetooth events (and by broadcast intent json output of the compatibility bridge)
  *
  * @author Bertrand Martel
  */
@@ -54,30 +45,41 @@ public class BluetoothObject {
         this.deviceRssi = deviceRssi;
     }
 
-    public static BluetoothObject parseArrayList(Intent intent) {
-
-        ArrayList<String> actionsStr = intent.getStringArrayListExtra("");
-
-        if (actionsStr.size() > 0) {
-
-            try {
-
-                JSONObject mainObject = new JSONObject(actionsStr.get(0));
-
-                if (mainObject.has(JsonConstants.BT_ADDRESS) &&
-                        mainObject.has(JsonConstants.BT_DEVICE_NAME)) {
+    /**
+     * serialize device info as json
+     *
+     * @return json string
+     * @throws JSONException
+     */
+    public String toJson() throws JSONException {
+        JSONObject object = new JSONObject();
+        object.put(JsonConstants.BT_ADDRESS, deviceAddress);
+        object.put(JsonConstants.BT_DEVICE_NAME, deviceName);
+        object.put(JsonConstants.BT_ADVERTISING_INTERVAL, advertizingInterval);
+        object.put(JsonConstants.BT_DEVICE_RSSI, deviceRssi);
+        return object.toString();
+    }
 
-                    int scanInterval = -1;
-                    if (mainObject.has(JsonConstants.BT_ADVERTISING_INTERVAL))
-                        scanInterval = mainObject.getInt(JsonConstants.BT_ADVERTISING_INTERVAL);
-                    Log.i("intent ", "sdf" +  mainObject.get(JsonConstants.BT_DEVICE_RSSI).toString());
-                    return new BluetoothObject(mainObject.get(JsonConstants.BT_ADDRESS).toString(),
-                            mainObject.get(JsonConstants.BT_DEVICE_NAME).toString(),
-                            scanInterval, (Integer) mainObject.get(JsonConstants.BT_DEVICE_RSSI));
-                }
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
+    /**
+     * parse device info serialized with toJson()
+     *
+     * @param json json string
+     * @return device info or null if address or name is missing
+     * @throws JSONException
+     */
+    public static BluetoothObject fromJson(String json) throws JSONException {
+
+        JSONObject mainObject = new JSONObject(json);
+
+        if (mainObject.has(JsonConstants.BT_ADDRESS) &&
+                mainObject.has(JsonConstants.BT_DEVICE_NAME)) {
+
+            int scanInterval = -1;
+            if (mainObject.has(JsonConstants.BT_ADVERTISING_INTERVAL))
+                scanInterval = mainObject.getInt(JsonConstants.BT_ADVERTISING_INTERVAL);
+            return new BluetoothObject(mainObject.get(JsonConstants.BT_ADDRESS).toString(),
+                    mainObject.get(JsonConstants.BT_DEVICE_NAME).toString(),
+                    scanInterval, mainObject.optInt(JsonConstants.BT_DEVICE_RSSI, 0));
         }
         return null;
     }
@@ -0,0 +1,268 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.filter;
+
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable device filter compiled from a Builder
+ * <p/>
+ * a device is accepted if it passes every configured criterion : name starting with one of the prefixes,
+ * manufacturer specific data from one of the company IDs, one of the service UUIDs advertised and RSSI at or above
+ * the floor. A criterion left empty accepts all devices.
+ *
+ * @author Bertrand Martel
+ */
+public class DeviceFilter {
+
+    /**
+     * filter accepting all devices
+     */
+    public final static DeviceFilter ACCEPT_ALL = new Builder().build();
+
+    public final static int NO_RSSI_FLOOR = Integer.MIN_VALUE;
+
+    /**
+     * name prefixes, null if names are not filtered
+     */
+    private final NamePrefixTrie namePrefixes;
+
+    /**
+     * sorted company IDs, null if manufacturer is not filtered
+     */
+    private final int[] manufacturerIds;
+
+    /**
+     * service UUIDs, null if services are not filtered. uuid16 is -1 for UUIDs not derived from base UUID
+     */
+    private final long[] serviceUuidMsb;
+    private final long[] serviceUuidLsb;
+    private final int[] serviceUuid16;
+
+    private final int rssiFloor;
+
+    private DeviceFilter(Builder builder) {
+
+        if (builder.namePrefixes.isEmpty()) {
+            namePrefixes = null;
+        } else {
+            namePrefixes = new NamePrefixTrie();
+            for (String prefix : builder.namePrefixes) {
+                namePrefixes.add(prefix);
+            }
+        }
+
+        if (builder.manufacturerIds.isEmpty()) {
+            manufacturerIds = null;
+        } else {
+            manufacturerIds = new int[builder.manufacturerIds.size()];
+            int i = 0;
+            for (Integer companyId : builder.manufacturerIds) {
+                manufacturerIds[i++] = companyId;
+            }
+            Arrays.sort(manufacturerIds);
+        }
+
+        if (builder.serviceUuids.isEmpty()) {
+            serviceUuidMsb = null;
+            serviceUuidLsb = null;
+            serviceUuid16 = null;
+        } else {
+            int count = builder.serviceUuids.size();
+            serviceUuidMsb = new long[count];
+            serviceUuidLsb = new long[count];
+            serviceUuid16 = new int[count];
+            int i = 0;
+            for (UUID uuid : builder.serviceUuids) {
+                serviceUuidMsb[i] = uuid.getMostSignificantBits();
+                serviceUuidLsb[i] = uuid.getLeastSignificantBits();
+                serviceUuid16[i] = ADCursor.toUuid16(serviceUuidMsb[i], serviceUuidLsb[i]);
+                i++;
+            }
+        }
+
+        rssiFloor = builder.rssiFloor;
+    }
+
+    /**
+     * check device name
+     *
+     * @param name device name
+     * @return
+     */
+    public boolean acceptsName(String name) {
+        return namePrefixes == null || (name != null && namePrefixes.matches(name));
+    }
+
+    /**
+     * check manufacturer and service UUID criteria in advertising payload
+     *
+     * @param cursor     cursor used to walk the payload
+     * @param scanRecord raw advertising payload
+     * @return
+     */
+    public boolean acceptsAdvertising(ADCursor cursor, byte[] scanRecord) {
+
+        boolean manufacturerMatch = manufacturerIds == null;
+        boolean serviceMatch = serviceUuidMsb == null;
+
+        if (manufacturerMatch && serviceMatch) {
+            return true;
+        }
+        if (scanRecord == null) {
+            return false;
+        }
+
+        cursor.reset(scanRecord);
+
+        while (!(manufacturerMatch && serviceMatch) && cursor.next()) {
+
+            if (!manufacturerMatch && cursor.isManufacturerData() &&
+                    Arrays.binarySearch(manufacturerIds, cursor.getCompanyId()) >= 0) {
+                manufacturerMatch = true;
+            }
+
+            if (!serviceMatch) {
+                for (int i = 0; i < serviceUuidMsb.length; i++) {
+                    if ((serviceUuid16[i] != -1 && cursor.hasServiceUuid16(serviceUuid16[i])) ||
+                            cursor.hasServiceUuid128(serviceUuidMsb[i], serviceUuidLsb[i])) {
+                        serviceMatch = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return manufacturerMatch && serviceMatch;
+    }
+
+    /**
+     * check received signal strength
+     *
+     * @param rssi received signal strength
+     * @return
+     */
+    public boolean acceptsRssi(int rssi) {
+        return rssi >= rssiFloor;
+    }
+
+    /**
+     * check all criteria
+     *
+     * @param name       device name
+     * @param rssi       received signal strength
+     * @param cursor     cursor used to walk the payload
+     * @param scanRecord raw advertising payload
+     * @return
+     */
+    public boolean accepts(String name, int rssi, ADCursor cursor, byte[] scanRecord) {
+        return acceptsRssi(rssi) && acceptsName(name) && acceptsAdvertising(cursor, scanRecord);
+    }
+
+    public int getRssiFloor() {
+        return rssiFloor;
+    }
+
+    /**
+     * company IDs accepted
+     *
+     * @return sorted company IDs or null if manufacturer is not filtered
+     */
+    public int[] getManufacturerIds() {
+        return manufacturerIds != null ? manufacturerIds.clone() : null;
+    }
+
+    /**
+     * service UUIDs accepted
+     *
+     * @return service UUIDs or null if services are not filtered
+     */
+    public List<UUID> getServiceUuids() {
+        if (serviceUuidMsb == null) {
+            return null;
+        }
+        List<UUID> uuids = new ArrayList<>(serviceUuidMsb.length);
+        for (int i = 0; i < serviceUuidMsb.length; i++) {
+            uuids.add(new UUID(serviceUuidMsb[i], serviceUuidLsb[i]));
+        }
+        return uuids;
+    }
+
+    /**
+     * Build a device filter
+     */
+    public static class Builder {
+
+        private final Set<String> namePrefixes = new LinkedHashSet<>();
+
+        private final Set<Integer> manufacturerIds = new LinkedHashSet<>();
+
+        private final Set<UUID> serviceUuids = new LinkedHashSet<>();
+
+        private int rssiFloor = NO_RSSI_FLOOR;
+
+        public Builder addNamePrefix(String prefix) {
+            namePrefixes.add(prefix);
+            return this;
+        }
+
+        /**
+         * accept devices advertising manufacturer specific data of a company
+         *
+         * @param companyId Bluetooth SIG company identifier
+         * @return
+         */
+        public Builder addManufacturerId(int companyId) {
+            manufacturerIds.add(companyId & 0xFFFF);
+            return this;
+        }
+
+        /**
+         * accept devices advertising a service UUID (16 bit UUIDs are matched in both 16 and 128 bit lists)
+         *
+         * @param serviceUuid service UUID
+         * @return
+         */
+        public Builder addServiceUuid(UUID serviceUuid) {
+            serviceUuids.add(serviceUuid);
+            return this;
+        }
+
+        /**
+         * drop frames received below a signal strength
+         *
+         * @param rssiFloor minimum RSSI in dBm or NO_RSSI_FLOOR
+         * @return
+         */
+        public Builder setRssiFloor(int rssiFloor) {
+            this.rssiFloor = rssiFloor;
+            return this;
+        }
+
+        public DeviceFilter build() {
+            return new DeviceFilter(this);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.filter;
+
+import java.util.Arrays;
+
+/**
+ * Character trie matching names against a set of prefixes
+ * <p/>
+ * matching walks the name once whatever the number of prefixes and allocates nothing
+ *
+ * @author Bertrand Martel
+ */
+public class NamePrefixTrie {
+
+    private final Node root = new Node();
+
+    private int size = 0;
+
+    /**
+     * add a prefix
+     *
+     * @param prefix name prefix (empty prefix matches all names)
+     */
+    public void add(String prefix) {
+
+        Node node = root;
+
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrCreate(prefix.charAt(i));
+        }
+        if (!node.terminal) {
+            node.terminal = true;
+            size++;
+        }
+    }
+
+    /**
+     * check if a name starts with one of the prefixes
+     *
+     * @param name device name
+     * @return
+     */
+    public boolean matches(String name) {
+
+        Node node = root;
+
+        for (int i = 0; ; i++) {
+
+            if (node.terminal) {
+                return true;
+            }
+            if (i == name.length()) {
+                return false;
+            }
+            node = node.get(name.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static class Node {
+
+        /**
+         * sorted child characters
+         */
+        private char[] keys = new char[0];
+
+        private Node[] children = new Node[0];
+
+        private boolean terminal = false;
+
+        private Node get(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrCreate(char c) {
+
+            int index = Arrays.binarySearch(keys, c);
+
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -(index + 1);
+
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+            Node child = new Node();
+            newKeys[index] = c;
+            newChildren[index] = child;
+
+            keys = newKeys;
+            children = newChildren;
+
+            return child;
+        }
+    }
+}
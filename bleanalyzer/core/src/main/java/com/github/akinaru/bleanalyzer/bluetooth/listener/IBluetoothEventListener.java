@@ -0,0 +1,53 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.listener;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+
+import java.util.List;
+
+/**
+ * Listener for Bluetooth events published on the event bus
+ *
+ * @author Bertrand Martel
+ */
+public interface IBluetoothEventListener {
+
+    void onScanStart();
+
+    void onScanEnd();
+
+    /**
+     * new or updated devices since last discovery batch
+     *
+     * @param devices devices ordered by first change in batch window
+     */
+    void onDevicesDiscovered(List<BluetoothObject> devices);
+
+    /**
+     * devices not seen anymore for their time to live
+     *
+     * @param devices lost devices
+     */
+    void onDevicesLost(List<BluetoothObject> devices);
+
+    void onDeviceConnected(BluetoothObject device);
+
+    void onDeviceDisconnected(BluetoothObject device);
+}
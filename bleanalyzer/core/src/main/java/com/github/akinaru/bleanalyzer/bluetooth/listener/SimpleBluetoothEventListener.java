@@ -0,0 +1,55 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.listener;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+
+import java.util.List;
+
+/**
+ * Bluetooth event listener with empty implementations, override only events of interest
+ *
+ * @author Bertrand Martel
+ */
+public class SimpleBluetoothEventListener implements IBluetoothEventListener {
+
+    @Override
+    public void onScanStart() {
+    }
+
+    @Override
+    public void onScanEnd() {
+    }
+
+    @Override
+    public void onDevicesDiscovered(List<BluetoothObject> devices) {
+    }
+
+    @Override
+    public void onDevicesLost(List<BluetoothObject> devices) {
+    }
+
+    @Override
+    public void onDeviceConnected(BluetoothObject device) {
+    }
+
+    @Override
+    public void onDeviceDisconnected(BluetoothObject device) {
+    }
+}
@@ -0,0 +1,62 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+
+/**
+ * Scan source delivering frames to a frame listener : radio scanner, simulated population or replayed capture
+ *
+ * @author Bertrand Martel
+ */
+public interface IScannerBackend {
+
+    /**
+     * set device filter offloaded to controller on next start (ignored if hardware filtering is not supported)
+     *
+     * @param filter device filter
+     */
+    void setDeviceFilter(DeviceFilter filter);
+
+    /**
+     * start radio scan
+     *
+     * @return true if scan has been started
+     */
+    boolean start();
+
+    /**
+     * stop radio scan
+     */
+    void stop();
+
+    boolean isScanning();
+
+    /**
+     * flush frames batched by the controller (no-op if frames are not batched)
+     */
+    void flush();
+
+    /**
+     * backend name for logging
+     *
+     * @return
+     */
+    String getName();
+}
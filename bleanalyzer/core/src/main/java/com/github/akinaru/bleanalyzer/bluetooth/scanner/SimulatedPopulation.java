@@ -0,0 +1,309 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import com.github.akinaru.bleanalyzer.bluetooth.advertising.ADTypes;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable description of a simulated population of advertisers built from a Builder
+ * <p/>
+ * each device gets an advertising interval drawn in [minInterval, maxInterval], a mean RSSI drawn in
+ * [rssiMean - rssiSpread, rssiMean + rssiSpread] and a payload template assigned round robin
+ *
+ * @author Bertrand Martel
+ */
+public class SimulatedPopulation {
+
+    /**
+     * first simulated address (static random address)
+     */
+    public final static long DEFAULT_FIRST_ADDRESS = 0xC0FFEE000000L;
+
+    private final int deviceCount;
+
+    private final int minInterval;
+
+    private final int maxInterval;
+
+    private final double lossProbability;
+
+    private final int rssiMean;
+
+    private final int rssiSpread;
+
+    private final double rssiStdDev;
+
+    private final List<Template> templates;
+
+    private final long firstAddress;
+
+    private final long seed;
+
+    private SimulatedPopulation(Builder builder) {
+        deviceCount = builder.deviceCount;
+        minInterval = builder.minInterval;
+        maxInterval = builder.maxInterval;
+        lossProbability = builder.lossProbability;
+        rssiMean = builder.rssiMean;
+        rssiSpread = builder.rssiSpread;
+        rssiStdDev = builder.rssiStdDev;
+        firstAddress = builder.firstAddress;
+        seed = builder.seed;
+        List<Template> list = new ArrayList<>(builder.templates);
+        if (list.isEmpty()) {
+            list.add(new Template("SIM", namePayload("SIM")));
+        }
+        templates = Collections.unmodifiableList(list);
+    }
+
+    public int getDeviceCount() {
+        return deviceCount;
+    }
+
+    public int getMinInterval() {
+        return minInterval;
+    }
+
+    public int getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * probability of a frame not being received
+     *
+     * @return
+     */
+    public double getLossProbability() {
+        return lossProbability;
+    }
+
+    public int getRssiMean() {
+        return rssiMean;
+    }
+
+    public int getRssiSpread() {
+        return rssiSpread;
+    }
+
+    /**
+     * standard deviation of RSSI around the mean of each device
+     *
+     * @return
+     */
+    public double getRssiStdDev() {
+        return rssiStdDev;
+    }
+
+    public List<Template> getTemplates() {
+        return templates;
+    }
+
+    public long getFirstAddress() {
+        return firstAddress;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * mean number of frames received per second by the whole population
+     *
+     * @return
+     */
+    public double getExpectedRate() {
+        double meanInterval = (minInterval + maxInterval) / 2.0 + SimulatedScannerBackend.ADV_DELAY_MAX / 2.0;
+        return deviceCount * (1 - lossProbability) * 1000 / meanInterval;
+    }
+
+    /**
+     * build an advertising payload made of flags and complete local name
+     *
+     * @param name device name
+     * @return
+     */
+    public static byte[] namePayload(String name) {
+        return payload(name, null);
+    }
+
+    /**
+     * build an advertising payload made of flags, complete local name and manufacturer specific data
+     *
+     * @param name             device name
+     * @param manufacturerData manufacturer specific data (including company identifier) or null
+     * @return
+     */
+    public static byte[] payload(String name, byte[] manufacturerData) {
+
+        byte[] nameBytes = name.getBytes(Charset.forName("UTF-8"));
+        int length = 3 + 2 + nameBytes.length + (manufacturerData != null ? 2 + manufacturerData.length : 0);
+
+        byte[] payload = new byte[length];
+        int offset = 0;
+
+        payload[offset++] = 2;
+        payload[offset++] = (byte) ADTypes.FLAGS;
+        payload[offset++] = 0x06;
+
+        payload[offset++] = (byte) (nameBytes.length + 1);
+        payload[offset++] = (byte) ADTypes.COMPLETE_LOCAL_NAME;
+        System.arraycopy(nameBytes, 0, payload, offset, nameBytes.length);
+        offset += nameBytes.length;
+
+        if (manufacturerData != null) {
+            payload[offset++] = (byte) (manufacturerData.length + 1);
+            payload[offset++] = (byte) ADTypes.MANUFACTURER_SPECIFIC_DATA;
+            System.arraycopy(manufacturerData, 0, payload, offset, manufacturerData.length);
+        }
+        return payload;
+    }
+
+    /**
+     * name and advertising payload shared by a group of simulated devices
+     */
+    public static class Template {
+
+        private final String name;
+
+        private final byte[] payload;
+
+        /**
+         * @param name    advertised name or null for devices without name
+         * @param payload raw advertising payload
+         */
+        public Template(String name, byte[] payload) {
+            this.name = name;
+            this.payload = payload;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    public static class Builder {
+
+        private int deviceCount = 100;
+
+        private int minInterval = 100;
+
+        private int maxInterval = 100;
+
+        private double lossProbability = 0;
+
+        private int rssiMean = -70;
+
+        private int rssiSpread = 10;
+
+        private double rssiStdDev = 4;
+
+        private List<Template> templates = new ArrayList<>();
+
+        private long firstAddress = DEFAULT_FIRST_ADDRESS;
+
+        private long seed = 0;
+
+        public Builder setDeviceCount(int deviceCount) {
+            if (deviceCount <= 0) {
+                throw new IllegalArgumentException("device count must be positive");
+            }
+            this.deviceCount = deviceCount;
+            return this;
+        }
+
+        /**
+         * set range of advertising intervals (a random advDelay of 0 to 10ms is added to each event)
+         *
+         * @param minInterval minimum interval in milliseconds
+         * @param maxInterval maximum interval in milliseconds
+         * @return
+         */
+        public Builder setAdvertisingInterval(int minInterval, int maxInterval) {
+            if (minInterval <= 0 || maxInterval < minInterval) {
+                throw new IllegalArgumentException("invalid advertising interval range");
+            }
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            return this;
+        }
+
+        public Builder setLossProbability(double lossProbability) {
+            if (lossProbability < 0 || lossProbability >= 1) {
+                throw new IllegalArgumentException("loss probability must be in [0,1[");
+            }
+            this.lossProbability = lossProbability;
+            return this;
+        }
+
+        /**
+         * set RSSI distribution
+         *
+         * @param mean   mean RSSI of the population
+         * @param spread maximum deviation of each device mean from population mean
+         * @param stdDev standard deviation of each frame RSSI around its device mean
+         * @return
+         */
+        public Builder setRssi(int mean, int spread, double stdDev) {
+            if (spread < 0 || stdDev < 0) {
+                throw new IllegalArgumentException("RSSI spread and standard deviation must be positive");
+            }
+            this.rssiMean = mean;
+            this.rssiSpread = spread;
+            this.rssiStdDev = stdDev;
+            return this;
+        }
+
+        public Builder addTemplate(String name, byte[] payload) {
+            templates.add(new Template(name, payload));
+            return this;
+        }
+
+        public Builder setFirstAddress(long firstAddress) {
+            this.firstAddress = firstAddress & 0xFFFFFFFFFFFFL;
+            return this;
+        }
+
+        /**
+         * set random seed, the same seed generates the same frame sequence
+         *
+         * @param seed
+         * @return
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SimulatedPopulation build() {
+            if (((firstAddress + deviceCount - 1) & ~0xFFFFFFFFFFFFL) != 0) {
+                throw new IllegalArgumentException("address range overflows 48 bits");
+            }
+            return new SimulatedPopulation(this);
+        }
+    }
+}
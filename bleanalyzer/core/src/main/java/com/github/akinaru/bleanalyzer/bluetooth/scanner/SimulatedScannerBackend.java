@@ -0,0 +1,212 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanRecordListener;
+import com.github.akinaru.bleanalyzer.utils.AddressUtils;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scan source generating frames of a simulated population in real time from a dedicated thread
+ * <p/>
+ * frames go through the same listener as radio frames, which makes it possible to load the whole dispatch,
+ * measurement and event pipeline without any Bluetooth hardware. Frames are not allocated : each device payload is
+ * shared by all its frames
+ *
+ * @author Bertrand Martel
+ */
+public class SimulatedScannerBackend implements IScannerBackend {
+
+    /**
+     * maximum random delay added to each advertising event (Bluetooth Core spec advDelay)
+     */
+    public final static int ADV_DELAY_MAX = 10;
+
+    /**
+     * maximum time the generator sleeps before checking its state again
+     */
+    private final static long MAX_PARK_MILLIS = 10;
+
+    private final SimulatedPopulation population;
+
+    private final IClock clock;
+
+    private final IScanRecordListener listener;
+
+    private Generator generator = null;
+
+    private volatile long frameCount = 0;
+
+    /**
+     * Build simulated scan source
+     *
+     * @param population simulated population
+     * @param clock      clock used to schedule frames (should be the clock used to timestamp frames)
+     * @param listener   listener receiving frames on generator thread
+     */
+    public SimulatedScannerBackend(SimulatedPopulation population, IClock clock, IScanRecordListener listener) {
+        this.population = population;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    @Override
+    public void setDeviceFilter(DeviceFilter filter) {
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (generator != null) {
+            return false;
+        }
+        generator = new Generator();
+        Thread thread = new Thread(generator, "simulated-scanner");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (generator != null) {
+            generator.running = false;
+            generator = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isScanning() {
+        return generator != null;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public String getName() {
+        return "simulated";
+    }
+
+    /**
+     * number of frames delivered since last start (updated each time generator waits for next frame)
+     *
+     * @return
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    private static class SimulatedDevice {
+
+        private final String address;
+
+        private final String name;
+
+        private final byte[] payload;
+
+        private final int interval;
+
+        private final int rssiMean;
+
+        private long nextTime;
+
+        private SimulatedDevice(String address, String name, byte[] payload, int interval, int rssiMean) {
+            this.address = address;
+            this.name = name;
+            this.payload = payload;
+            this.interval = interval;
+            this.rssiMean = rssiMean;
+        }
+    }
+
+    private final static Comparator<SimulatedDevice> NEXT_TIME_ORDER = new Comparator<SimulatedDevice>() {
+        @Override
+        public int compare(SimulatedDevice lhs, SimulatedDevice rhs) {
+            return lhs.nextTime < rhs.nextTime ? -1 : (lhs.nextTime == rhs.nextTime ? 0 : 1);
+        }
+    };
+
+    private class Generator implements Runnable {
+
+        private volatile boolean running = true;
+
+        @Override
+        public void run() {
+
+            Random random = new Random(population.getSeed());
+
+            PriorityQueue<SimulatedDevice> queue = new PriorityQueue<>(population.getDeviceCount(), NEXT_TIME_ORDER);
+
+            long now = clock.currentTimeMillis();
+
+            for (int i = 0; i < population.getDeviceCount(); i++) {
+
+                SimulatedPopulation.Template template = population.getTemplates().get(i % population.getTemplates().size());
+
+                int interval = population.getMinInterval() +
+                        random.nextInt(population.getMaxInterval() - population.getMinInterval() + 1);
+
+                int rssiMean = population.getRssiMean() - population.getRssiSpread() +
+                        random.nextInt(2 * population.getRssiSpread() + 1);
+
+                SimulatedDevice device = new SimulatedDevice(AddressUtils.format(population.getFirstAddress() + i),
+                        template.getName(), template.getPayload(), interval, rssiMean);
+
+                //spread first advertising events over one interval
+                device.nextTime = now + random.nextInt(interval);
+                queue.offer(device);
+            }
+
+            double loss = population.getLossProbability();
+            double stdDev = population.getRssiStdDev();
+            long count = 0;
+
+            while (running) {
+
+                SimulatedDevice device = queue.peek();
+                now = clock.currentTimeMillis();
+
+                if (device.nextTime > now) {
+                    frameCount = count;
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.min(device.nextTime - now, MAX_PARK_MILLIS)));
+                    continue;
+                }
+                queue.poll();
+
+                if (loss == 0 || random.nextDouble() >= loss) {
+                    int rssi = (int) Math.round(device.rssiMean + random.nextGaussian() * stdDev);
+                    listener.onScanFrame(device.address, device.name, Math.max(-127, Math.min(20, rssi)),
+                            device.payload, now - device.nextTime);
+                    count++;
+                }
+                device.nextTime += device.interval + random.nextInt(ADV_DELAY_MAX + 1);
+                queue.offer(device);
+            }
+            frameCount = count;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+/**
+ * Fixed size bloom filter of 48 bit device addresses
+ * <p/>
+ * false positives are possible (a block may be read for nothing), false negatives are not
+ *
+ * @author Bertrand Martel
+ */
+public class AddressBloomFilter {
+
+    /**
+     * number of 64 bit words
+     */
+    public final static int WORD_COUNT = 32;
+
+    private final static int BIT_MASK = WORD_COUNT * 64 - 1;
+
+    private final static int HASH_COUNT = 3;
+
+    private final long[] words;
+
+    public AddressBloomFilter() {
+        this(new long[WORD_COUNT]);
+    }
+
+    /**
+     * wrap filter words read from an index
+     *
+     * @param words filter words (WORD_COUNT values)
+     */
+    public AddressBloomFilter(long[] words) {
+        if (words.length != WORD_COUNT) {
+            throw new IllegalArgumentException("bloom filter must have " + WORD_COUNT + " words");
+        }
+        this.words = words;
+    }
+
+    public void add(long address48) {
+        long hash = mix(address48);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & BIT_MASK;
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long address48) {
+        long hash = mix(address48);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & BIT_MASK;
+            if ((words[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] = 0;
+        }
+    }
+
+    /**
+     * filter words (not copied)
+     *
+     * @return
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    private static long mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+}
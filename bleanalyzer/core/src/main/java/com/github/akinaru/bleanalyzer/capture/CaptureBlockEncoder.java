@@ -0,0 +1,278 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import com.github.akinaru.bleanalyzer.utils.LongObjectHashMap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Encode frames into compressed capture blocks (see CaptureFormat)
+ * <p/>
+ * a block is cut when it reaches CaptureIndex.BLOCK_MAX_FRAMES frames or spans CaptureIndex.BLOCK_MAX_SPAN. Frames are
+ * accumulated in preallocated columns, payloads are deduplicated on the fly without allocation
+ *
+ * @author Bertrand Martel
+ */
+class CaptureBlockEncoder {
+
+    private final static int MAX_FRAMES = CaptureIndex.BLOCK_MAX_FRAMES;
+
+    /**
+     * size of payload hash table (power of 2, load <= 0.5)
+     */
+    private final static int PAYLOAD_TABLE_SIZE = Integer.highestOneBit(MAX_FRAMES * 2 - 1) << 1;
+
+    private final long[] timestamps = new long[MAX_FRAMES];
+
+    private final int[] addressIndexes = new int[MAX_FRAMES];
+
+    private final byte[] rssis = new byte[MAX_FRAMES];
+
+    private final int[] payloadIndexes = new int[MAX_FRAMES];
+
+    private int frameCount = 0;
+
+    private long minTimestamp;
+
+    private long maxTimestamp;
+
+    private final long[] addresses = new long[MAX_FRAMES];
+
+    private int addressCount = 0;
+
+    private final LongObjectHashMap<Integer> addressDictionary = new LongObjectHashMap<>();
+
+    /**
+     * distinct payloads stored one after the other
+     */
+    private byte[] payloadData = new byte[MAX_FRAMES * 32];
+
+    private int payloadDataLength = 0;
+
+    private final int[] payloadOffsets = new int[MAX_FRAMES];
+
+    private final int[] payloadLengths = new int[MAX_FRAMES];
+
+    private final int[] payloadHashes = new int[MAX_FRAMES];
+
+    private int payloadCount = 0;
+
+    /**
+     * payload index + 1 by hash slot, 0 if empty
+     */
+    private final int[] payloadTable = new int[PAYLOAD_TABLE_SIZE];
+
+    private byte[] body = new byte[64 * 1024];
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private ByteBuffer output = ByteBuffer.allocate(64 * 1024);
+
+    public boolean isEmpty() {
+        return frameCount == 0;
+    }
+
+    /**
+     * check if a frame can be added to current block
+     *
+     * @param timestamp frame timestamp
+     * @return false if current block must be encoded first
+     */
+    public boolean accepts(long timestamp) {
+        return frameCount == 0 || (frameCount < MAX_FRAMES &&
+                Math.max(maxTimestamp, timestamp) - Math.min(minTimestamp, timestamp) < CaptureIndex.BLOCK_MAX_SPAN);
+    }
+
+    /**
+     * add a frame to current block (accepts() must have been checked)
+     */
+    public void add(long timestamp, long address48, int rssi, byte[] payload, int payloadOffset, int payloadLength) {
+
+        if (frameCount == 0) {
+            minTimestamp = timestamp;
+            maxTimestamp = timestamp;
+        } else {
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        Integer addressIndex = addressDictionary.get(address48);
+        if (addressIndex == null) {
+            addressIndex = addressCount;
+            addresses[addressCount++] = address48;
+            addressDictionary.put(address48, addressIndex);
+        }
+
+        timestamps[frameCount] = timestamp;
+        addressIndexes[frameCount] = addressIndex;
+        rssis[frameCount] = (byte) rssi;
+        payloadIndexes[frameCount] = payloadIndex(payload, payloadOffset, payloadLength);
+        frameCount++;
+    }
+
+    /**
+     * find or store a payload in block dictionary
+     */
+    private int payloadIndex(byte[] payload, int offset, int length) {
+
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + payload[offset + i];
+        }
+
+        int slot = (hash * 0x9E3779B9) & (PAYLOAD_TABLE_SIZE - 1);
+
+        while (payloadTable[slot] != 0) {
+            int index = payloadTable[slot] - 1;
+            if (payloadHashes[index] == hash && payloadLengths[index] == length &&
+                    regionEquals(payloadData, payloadOffsets[index], payload, offset, length)) {
+                return index;
+            }
+            slot = (slot + 1) & (PAYLOAD_TABLE_SIZE - 1);
+        }
+
+        if (payloadDataLength + length > payloadData.length) {
+            payloadData = Arrays.copyOf(payloadData, Math.max(payloadData.length * 2, payloadDataLength + length));
+        }
+        System.arraycopy(payload, offset, payloadData, payloadDataLength, length);
+
+        int index = payloadCount++;
+        payloadOffsets[index] = payloadDataLength;
+        payloadLengths[index] = length;
+        payloadHashes[index] = hash;
+        payloadDataLength += length;
+        payloadTable[slot] = index + 1;
+        return index;
+    }
+
+    private static boolean regionEquals(byte[] lhs, int lhsOffset, byte[] rhs, int rhsOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (lhs[lhsOffset + i] != rhs[rhsOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * encode current block into output buffer and start a new block
+     *
+     * @param offset file offset at which block will be written
+     * @return index entry of encoded block
+     */
+    public CaptureIndex.Block encode(long offset) {
+
+        //worst case size of body
+        ensureBody(10 + addressCount * 6 + 10 + payloadCount * 3 + payloadDataLength + frameCount * 16);
+
+        int position = CaptureFormat.writeVarint(body, 0, addressCount);
+
+        for (int i = 0; i < addressCount; i++) {
+            long address = addresses[i];
+            for (int shift = 40; shift >= 0; shift -= 8) {
+                body[position++] = (byte) (address >>> shift);
+            }
+        }
+
+        position = CaptureFormat.writeVarint(body, position, payloadCount);
+
+        for (int i = 0; i < payloadCount; i++) {
+            position = CaptureFormat.writeVarint(body, position, payloadLengths[i]);
+            System.arraycopy(payloadData, payloadOffsets[i], body, position, payloadLengths[i]);
+            position += payloadLengths[i];
+        }
+
+        long previous = minTimestamp;
+
+        for (int i = 0; i < frameCount; i++) {
+            position = CaptureFormat.writeVarint(body, position, CaptureFormat.zigzag(timestamps[i] - previous));
+            previous = timestamps[i];
+            position = CaptureFormat.writeVarint(body, position, addressIndexes[i]);
+            body[position++] = rssis[i];
+            position = CaptureFormat.writeVarint(body, position, payloadIndexes[i]);
+        }
+
+        deflater.reset();
+        deflater.setInput(body, 0, position);
+        deflater.finish();
+
+        output.clear();
+        output.position(CaptureFormat.BLOCK_HEADER_SIZE);
+
+        while (!deflater.finished()) {
+            if (!output.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(output.capacity() * 2);
+                output.flip();
+                larger.put(output);
+                output = larger;
+            }
+            int written = deflater.deflate(output.array(), output.position(), output.remaining());
+            output.position(output.position() + written);
+        }
+
+        int compressedLength = output.position() - CaptureFormat.BLOCK_HEADER_SIZE;
+
+        output.putInt(0, compressedLength);
+        output.putInt(4, position);
+        output.putInt(8, frameCount);
+        output.putLong(12, minTimestamp);
+        output.putLong(20, maxTimestamp);
+        output.flip();
+
+        AddressBloomFilter bloom = new AddressBloomFilter();
+        for (int i = 0; i < addressCount; i++) {
+            bloom.add(addresses[i]);
+        }
+        CaptureIndex.Block block = new CaptureIndex.Block(offset, offset + output.limit(), minTimestamp, maxTimestamp,
+                frameCount, bloom);
+        reset();
+        return block;
+    }
+
+    /**
+     * encoded block (header and compressed body) ready to be written
+     *
+     * @return
+     */
+    public ByteBuffer getOutput() {
+        return output;
+    }
+
+    private void ensureBody(int size) {
+        if (body.length < size) {
+            body = new byte[Math.max(size, body.length * 2)];
+        }
+    }
+
+    private void reset() {
+        frameCount = 0;
+        addressCount = 0;
+        addressDictionary.clear();
+        payloadCount = 0;
+        payloadDataLength = 0;
+        Arrays.fill(payloadTable, 0);
+    }
+
+    public void release() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,81 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+/**
+ * Binary layout of capture logs
+ * <p/>
+ * a capture log is a file header followed by independently compressed blocks of frames, fixed size values are big
+ * endian :
+ * <pre>
+ * header : magic "BLEC" (4) | version (2) | reserved (2) | capture start time in ms (8)
+ * block  : compressed length (4) | raw length (4) | frame count (4) | min timestamp (8) | max timestamp (8)
+ *          | deflated body
+ * body   : address count (varint) | addresses (6 each)
+ *          | payload count (varint) | payloads (length varint + bytes each)
+ *          | frames : timestamp delta (zigzag varint) | address index (varint) | rssi (1) | payload index (varint)
+ * </pre>
+ * addresses and payloads are deduplicated in per block dictionaries, the first timestamp delta is relative to block
+ * min timestamp and the following ones to previous frame. Start time and timestamps come from the monotonic clock
+ * used by measurements. A block truncated by a crash ends the log
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureFormat {
+
+    public final static int MAGIC = 0x424C4543;
+
+    public final static short VERSION = 2;
+
+    public final static int HEADER_SIZE = 16;
+
+    public final static int BLOCK_HEADER_SIZE = 28;
+
+    public final static int MAX_PAYLOAD_SIZE = 0xFFFF;
+
+    /**
+     * file extension of capture logs
+     */
+    public final static String EXTENSION = ".blecap";
+
+    /**
+     * write an unsigned varint (7 bits per byte, least significant group first)
+     *
+     * @param buffer destination
+     * @param offset offset in destination
+     * @param value  value to write (treated as unsigned)
+     * @return offset following written value
+     */
+    static int writeVarint(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,68 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+/**
+ * Frame read from a capture log, reused for each record
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureFrame {
+
+    private long timestamp;
+
+    private long address48;
+
+    private int rssi;
+
+    private byte[] payload;
+
+    void set(long timestamp, long address48, int rssi, byte[] payload) {
+        this.timestamp = timestamp;
+        this.address48 = address48;
+        this.rssi = rssi;
+        this.payload = payload;
+    }
+
+    /**
+     * reception time in milliseconds (monotonic clock of recording session)
+     *
+     * @return
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getAddress48() {
+        return address48;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * raw advertising payload, shared by identical payloads of the same block : must not be modified
+     *
+     * @return
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+}
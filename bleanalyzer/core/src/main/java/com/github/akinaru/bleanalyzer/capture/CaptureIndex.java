@@ -0,0 +1,358 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sparse index of a capture log stored alongside it
+ * <p/>
+ * each compressed block of the log is described by its file offsets, its time range and a bloom filter of the
+ * addresses it contains, so that time range and address queries only read and decompress matching blocks.
+ * The index is appended to while capturing and can always be rebuilt from the log
+ * <pre>
+ * header : magic "BLEI" (4) | version (2) | reserved (2)
+ * block  : offset (8) | end offset (8) | min timestamp (8) | max timestamp (8) | frame count (4) | bloom filter (256)
+ * </pre>
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureIndex {
+
+    private final static Logger LOGGER = Logger.getLogger(CaptureIndex.class.getName());
+
+    public final static int MAGIC = 0x424C4549;
+
+    public final static short VERSION = 1;
+
+    public final static int HEADER_SIZE = 8;
+
+    public final static int BLOCK_ENTRY_SIZE = 36 + AddressBloomFilter.WORD_COUNT * 8;
+
+    /**
+     * file extension of index, appended to capture file name
+     */
+    public final static String EXTENSION = ".idx";
+
+    /**
+     * maximum number of frames in a block
+     */
+    public final static int BLOCK_MAX_FRAMES = 2048;
+
+    /**
+     * maximum time span of a block in milliseconds
+     */
+    public final static long BLOCK_MAX_SPAN = 5000;
+
+    private final List<Block> blocks;
+
+    public CaptureIndex(List<Block> blocks) {
+        this.blocks = Collections.unmodifiableList(new ArrayList<>(blocks));
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * total number of indexed frames
+     *
+     * @return
+     */
+    public long getFrameCount() {
+        long count = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            count += blocks.get(i).getFrameCount();
+        }
+        return count;
+    }
+
+    /**
+     * blocks which may contain frames matching a query
+     *
+     * @param fromTimestamp start of time range (inclusive)
+     * @param toTimestamp   end of time range (inclusive)
+     * @param address48     device address or -1 for all devices
+     * @return
+     */
+    public List<Block> findBlocks(long fromTimestamp, long toTimestamp, long address48) {
+        List<Block> result = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.getMaxTimestamp() >= fromTimestamp && block.getMinTimestamp() <= toTimestamp &&
+                    (address48 == -1 || block.getAddresses().mightContain(address48))) {
+                result.add(block);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * query frames of a capture
+     *
+     * @param capture       capture log
+     * @param fromTimestamp start of time range (inclusive)
+     * @param toTimestamp   end of time range (inclusive)
+     * @param address48     device address or -1 for all devices
+     * @return query iterating matching frames, to be closed
+     * @throws IOException
+     */
+    public CaptureQuery query(File capture, long fromTimestamp, long toTimestamp, long address48) throws IOException {
+        return new CaptureQuery(new CaptureReader(capture), findBlocks(fromTimestamp, toTimestamp, address48),
+                fromTimestamp, toTimestamp, address48);
+    }
+
+    /**
+     * index file of a capture log
+     *
+     * @param capture capture log
+     * @return
+     */
+    public static File indexFile(File capture) {
+        return new File(capture.getPath() + EXTENSION);
+    }
+
+    /**
+     * load index of a capture, rebuilding it if it is missing or invalid, or completing it if it does not cover
+     * the end of the log (capture interrupted)
+     *
+     * @param capture capture log
+     * @return
+     * @throws IOException
+     */
+    public static CaptureIndex load(File capture) throws IOException {
+
+        File indexFile = indexFile(capture);
+        List<Block> blocks = null;
+
+        if (indexFile.exists()) {
+            try {
+                blocks = read(indexFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "invalid index " + indexFile.getName() + ", rebuilding it", e);
+            }
+        }
+
+        long start = CaptureFormat.HEADER_SIZE;
+
+        if (blocks != null && !blocks.isEmpty()) {
+            start = blocks.get(blocks.size() - 1).getEndOffset();
+            if (start > capture.length()) {
+                //log is shorter than its index
+                blocks = null;
+                start = CaptureFormat.HEADER_SIZE;
+            }
+        }
+
+        if (blocks != null && start == capture.length()) {
+            return new CaptureIndex(blocks);
+        }
+
+        if (blocks == null) {
+            blocks = new ArrayList<>();
+        }
+        List<Block> tail = scan(capture, start);
+
+        CaptureIndexWriter writer = new CaptureIndexWriter(indexFile, blocks.size());
+        try {
+            for (int i = 0; i < tail.size(); i++) {
+                writer.write(tail.get(i));
+            }
+        } finally {
+            writer.close();
+        }
+        blocks.addAll(tail);
+        return new CaptureIndex(blocks);
+    }
+
+    /**
+     * index a capture from the log without reading nor writing its index file (read-only capture directory)
+     *
+     * @param capture capture log
+     * @return
+     * @throws IOException
+     */
+    public static CaptureIndex build(File capture) throws IOException {
+        return new CaptureIndex(scan(capture, CaptureFormat.HEADER_SIZE));
+    }
+
+    /**
+     * rebuild index of a capture from the log, replacing existing index file
+     *
+     * @param capture capture log
+     * @return
+     * @throws IOException
+     */
+    public static CaptureIndex rebuild(File capture) throws IOException {
+        File indexFile = indexFile(capture);
+        if (indexFile.exists() && !indexFile.delete()) {
+            throw new IOException("cannot delete " + indexFile);
+        }
+        return load(capture);
+    }
+
+    /**
+     * index blocks of a capture log from an offset (only block headers and address dictionaries are decoded)
+     */
+    private static List<Block> scan(File capture, long start) throws IOException {
+
+        List<Block> result = new ArrayList<>();
+
+        CaptureReader reader = new CaptureReader(capture);
+        try {
+            reader.seek(start);
+            while (reader.nextBlock()) {
+                AddressBloomFilter addresses = new AddressBloomFilter();
+                for (int i = 0; i < reader.getBlockAddressCount(); i++) {
+                    addresses.add(reader.getBlockAddress(i));
+                }
+                result.add(new Block(reader.getBlockOffset(), reader.getBlockEndOffset(), reader.getBlockMinTimestamp(),
+                        reader.getBlockMaxTimestamp(), reader.getBlockFrameCount(), addresses));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    /**
+     * read block entries of an index file
+     */
+    static List<Block> read(File indexFile) throws IOException {
+
+        FileChannel channel = new RandomAccessFile(indexFile, "r").getChannel();
+
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("truncated index header");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_ENTRY_SIZE);
+            buffer.limit(HEADER_SIZE);
+            readFully(channel, buffer);
+            buffer.flip();
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+                throw new IOException("not a capture index");
+            }
+
+            //a block entry truncated by a crash is ignored
+            long count = (size - HEADER_SIZE) / BLOCK_ENTRY_SIZE;
+            List<Block> blocks = new ArrayList<>((int) count);
+
+            for (long i = 0; i < count; i++) {
+                buffer.clear();
+                readFully(channel, buffer);
+                buffer.flip();
+                long offset = buffer.getLong();
+                long endOffset = buffer.getLong();
+                long minTimestamp = buffer.getLong();
+                long maxTimestamp = buffer.getLong();
+                int frameCount = buffer.getInt();
+                long[] words = new long[AddressBloomFilter.WORD_COUNT];
+                for (int j = 0; j < words.length; j++) {
+                    words[j] = buffer.getLong();
+                }
+                blocks.add(new Block(offset, endOffset, minTimestamp, maxTimestamp, frameCount,
+                        new AddressBloomFilter(words)));
+            }
+            return blocks;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("unexpected end of index");
+            }
+        }
+    }
+
+    /**
+     * indexed block of the log
+     */
+    public static class Block {
+
+        private final long offset;
+
+        private final long endOffset;
+
+        private final long minTimestamp;
+
+        private final long maxTimestamp;
+
+        private final int frameCount;
+
+        private final AddressBloomFilter addresses;
+
+        public Block(long offset, long endOffset, long minTimestamp, long maxTimestamp, int frameCount,
+                     AddressBloomFilter addresses) {
+            this.offset = offset;
+            this.endOffset = endOffset;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.frameCount = frameCount;
+            this.addresses = addresses;
+        }
+
+        /**
+         * file offset of block
+         *
+         * @return
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * file offset following block
+         *
+         * @return
+         */
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        public long getMinTimestamp() {
+            return minTimestamp;
+        }
+
+        public long getMaxTimestamp() {
+            return maxTimestamp;
+        }
+
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        public AddressBloomFilter getAddresses() {
+            return addresses;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Append block entries to a capture index file (see CaptureIndex)
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureIndexWriter {
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(CaptureIndex.BLOCK_ENTRY_SIZE);
+
+    /**
+     * open an index file
+     *
+     * @param indexFile      index file
+     * @param existingBlocks number of valid blocks to keep at the beginning of existing index, 0 to create a new index
+     * @throws IOException
+     */
+    public CaptureIndexWriter(File indexFile, int existingBlocks) throws IOException {
+
+        channel = new RandomAccessFile(indexFile, "rw").getChannel();
+
+        try {
+            if (existingBlocks > 0) {
+                long position = CaptureIndex.HEADER_SIZE + (long) existingBlocks * CaptureIndex.BLOCK_ENTRY_SIZE;
+                channel.truncate(position);
+                channel.position(position);
+            } else {
+                channel.truncate(0);
+                buffer.putInt(CaptureIndex.MAGIC);
+                buffer.putShort(CaptureIndex.VERSION);
+                buffer.putShort((short) 0);
+                buffer.flip();
+                writeFully();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void write(CaptureIndex.Block block) throws IOException {
+        buffer.clear();
+        buffer.putLong(block.getOffset());
+        buffer.putLong(block.getEndOffset());
+        buffer.putLong(block.getMinTimestamp());
+        buffer.putLong(block.getMaxTimestamp());
+        buffer.putInt(block.getFrameCount());
+        long[] words = block.getAddresses().getWords();
+        for (int i = 0; i < words.length; i++) {
+            buffer.putLong(words[i]);
+        }
+        buffer.flip();
+        writeFully();
+    }
+
+    private void writeFully() throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * sync index to storage
+     *
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,122 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Frames of a capture matching a time range and an address, read from matching index blocks only
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureQuery implements Closeable {
+
+    private final CaptureReader reader;
+
+    private final List<CaptureIndex.Block> blocks;
+
+    private final long fromTimestamp;
+
+    private final long toTimestamp;
+
+    private final long address48;
+
+    private int blockIndex = -1;
+
+    /**
+     * number of frames left in current block
+     */
+    private int remaining = 0;
+
+    private int blocksRead = 0;
+
+    CaptureQuery(CaptureReader reader, List<CaptureIndex.Block> blocks, long fromTimestamp, long toTimestamp,
+                 long address48) {
+        this.reader = reader;
+        this.blocks = blocks;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        this.address48 = address48;
+    }
+
+    /**
+     * read next matching frame
+     *
+     * @param frame frame filled with matching record
+     * @return false if there is no more matching frame
+     * @throws IOException
+     */
+    public boolean next(CaptureFrame frame) throws IOException {
+
+        while (true) {
+
+            while (remaining == 0) {
+                if (++blockIndex >= blocks.size()) {
+                    return false;
+                }
+                reader.seek(blocks.get(blockIndex).getOffset());
+                if (!reader.nextBlock()) {
+                    //log shorter than its index
+                    blockIndex = blocks.size();
+                    return false;
+                }
+                blocksRead++;
+                if (address48 == -1 || blockContains(address48)) {
+                    remaining = reader.getBlockFrameCount();
+                }
+            }
+
+            reader.next(frame);
+            remaining--;
+
+            if (frame.getTimestamp() >= fromTimestamp && frame.getTimestamp() <= toTimestamp &&
+                    (address48 == -1 || frame.getAddress48() == address48)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * check address dictionary of current block (bloom filter false positives)
+     */
+    private boolean blockContains(long address48) {
+        for (int i = 0; i < reader.getBlockAddressCount(); i++) {
+            if (reader.getBlockAddress(i) == address48) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * number of blocks read so far
+     *
+     * @return
+     */
+    public int getBlocksRead() {
+        return blocksRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,329 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming reader of a capture log (see CaptureFormat)
+ * <p/>
+ * blocks are read and decompressed one at a time : memory usage does not depend on capture size
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureReader implements Closeable {
+
+    private final FileChannel channel;
+
+    private final long startTime;
+
+    private final ByteBuffer blockHeader = ByteBuffer.allocate(CaptureFormat.BLOCK_HEADER_SIZE);
+
+    private ByteBuffer compressed = ByteBuffer.allocate(16 * 1024);
+
+    private byte[] body = new byte[64 * 1024];
+
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * file offset of next block
+     */
+    private long position = CaptureFormat.HEADER_SIZE;
+
+    private long blockOffset = -1;
+
+    private int blockFrameCount = 0;
+
+    private long blockMinTimestamp;
+
+    private long blockMaxTimestamp;
+
+    private long[] addresses = new long[256];
+
+    private int addressCount = 0;
+
+    private byte[][] payloads = new byte[256][];
+
+    private int payloadCount = 0;
+
+    /**
+     * position of next frame in block body
+     */
+    private int bodyPosition;
+
+    private int bodyLength;
+
+    private int framesLeft = 0;
+
+    private long previousTimestamp;
+
+    public CaptureReader(File file) throws IOException {
+
+        channel = new RandomAccessFile(file, "r").getChannel();
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(CaptureFormat.HEADER_SIZE);
+            if (!readFully(header, 0) || header.getInt() != CaptureFormat.MAGIC) {
+                throw new IOException(file.getName() + " is not a capture log");
+            }
+            short version = header.getShort();
+            if (version != CaptureFormat.VERSION) {
+                throw new IOException("unsupported capture version " + version);
+            }
+            header.getShort();
+            startTime = header.getLong();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * capture start in milliseconds, in the time base of frame timestamps
+     *
+     * @return
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * move to a block (for instance a block found in a capture index)
+     *
+     * @param offset file offset of a block
+     */
+    public void seek(long offset) {
+        if (offset < CaptureFormat.HEADER_SIZE) {
+            throw new IllegalArgumentException("offset is inside capture header");
+        }
+        position = offset;
+        framesLeft = 0;
+        blockOffset = -1;
+    }
+
+    /**
+     * read and decompress next block, skipping frames left in current block
+     *
+     * @return false at end of log (a truncated last block is ignored)
+     * @throws IOException
+     */
+    public boolean nextBlock() throws IOException {
+
+        framesLeft = 0;
+
+        blockHeader.clear();
+        if (!readFully(blockHeader, position)) {
+            return false;
+        }
+        int compressedLength = blockHeader.getInt();
+        int rawLength = blockHeader.getInt();
+        int frameCount = blockHeader.getInt();
+        long minTimestamp = blockHeader.getLong();
+        long maxTimestamp = blockHeader.getLong();
+
+        if (compressedLength < 0 || rawLength < 0 || frameCount < 0) {
+            throw new IOException("corrupted block at " + position);
+        }
+        if (compressed.capacity() < compressedLength) {
+            compressed = ByteBuffer.allocate(Math.max(compressedLength, compressed.capacity() * 2));
+        }
+        compressed.clear().limit(compressedLength);
+
+        if (!readFully(compressed, position + CaptureFormat.BLOCK_HEADER_SIZE)) {
+            return false;
+        }
+        if (body.length < rawLength) {
+            body = new byte[Math.max(rawLength, body.length * 2)];
+        }
+
+        inflater.reset();
+        inflater.setInput(compressed.array(), 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int count = inflater.inflate(body, inflated, rawLength - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != rawLength) {
+                throw new IOException("corrupted block at " + position);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupted block at " + position, e);
+        }
+
+        blockOffset = position;
+        position += CaptureFormat.BLOCK_HEADER_SIZE + compressedLength;
+        blockFrameCount = frameCount;
+        blockMinTimestamp = minTimestamp;
+        blockMaxTimestamp = maxTimestamp;
+        bodyLength = rawLength;
+        bodyPosition = 0;
+
+        addressCount = (int) readVarint();
+        if (addresses.length < addressCount) {
+            addresses = new long[Math.max(addressCount, addresses.length * 2)];
+        }
+        for (int i = 0; i < addressCount; i++) {
+            long address = 0;
+            for (int j = 0; j < 6; j++) {
+                address = (address << 8) | (body[bodyPosition++] & 0xFF);
+            }
+            addresses[i] = address;
+        }
+
+        payloadCount = (int) readVarint();
+        if (payloads.length < payloadCount) {
+            payloads = new byte[Math.max(payloadCount, payloads.length * 2)][];
+        }
+        for (int i = 0; i < payloadCount; i++) {
+            int length = (int) readVarint();
+            byte[] payload = new byte[length];
+            System.arraycopy(body, bodyPosition, payload, 0, length);
+            bodyPosition += length;
+            payloads[i] = payload;
+        }
+
+        framesLeft = frameCount;
+        previousTimestamp = minTimestamp;
+        return true;
+    }
+
+    /**
+     * read next frame
+     *
+     * @param frame frame filled with next record. Its payload array is shared by identical payloads of the block and
+     *              must not be modified
+     * @return false at end of log
+     * @throws IOException
+     */
+    public boolean next(CaptureFrame frame) throws IOException {
+
+        while (framesLeft == 0) {
+            if (!nextBlock()) {
+                return false;
+            }
+        }
+        if (bodyPosition >= bodyLength) {
+            throw new IOException("corrupted block at " + blockOffset);
+        }
+        long timestamp = previousTimestamp + CaptureFormat.unzigzag(readVarint());
+        previousTimestamp = timestamp;
+        int addressIndex = (int) readVarint();
+        int rssi = body[bodyPosition++];
+        int payloadIndex = (int) readVarint();
+
+        if (addressIndex >= addressCount || payloadIndex >= payloadCount) {
+            throw new IOException("corrupted block at " + blockOffset);
+        }
+        framesLeft--;
+
+        frame.set(timestamp, addresses[addressIndex], rssi, payloads[payloadIndex]);
+        return true;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (bodyPosition >= bodyLength) {
+                throw new IOException("corrupted block at " + blockOffset);
+            }
+            byte b = body[bodyPosition++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("corrupted block at " + blockOffset);
+    }
+
+    /**
+     * file offset of current block
+     *
+     * @return
+     */
+    public long getBlockOffset() {
+        return blockOffset;
+    }
+
+    /**
+     * file offset following current block
+     *
+     * @return
+     */
+    public long getBlockEndOffset() {
+        return position;
+    }
+
+    public int getBlockFrameCount() {
+        return blockFrameCount;
+    }
+
+    public long getBlockMinTimestamp() {
+        return blockMinTimestamp;
+    }
+
+    public long getBlockMaxTimestamp() {
+        return blockMaxTimestamp;
+    }
+
+    /**
+     * number of distinct addresses of current block
+     *
+     * @return
+     */
+    public int getBlockAddressCount() {
+        return addressCount;
+    }
+
+    public long getBlockAddress(int index) {
+        return addresses[index];
+    }
+
+    /**
+     * fill buffer from position 0 to its limit with file content at offset
+     *
+     * @return false if end of file is reached before
+     */
+    private boolean readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, offset + buffer.position());
+            if (count < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
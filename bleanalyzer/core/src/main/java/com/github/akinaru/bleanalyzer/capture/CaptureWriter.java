@@ -0,0 +1,388 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only writer of raw advertising frames to a capture log (see CaptureFormat)
+ * <p/>
+ * frames are copied into a double buffer from the scan thread, a dedicated writer thread encodes them into compressed
+ * blocks written to the file channel and syncs the file to storage periodically. The scan thread never waits for I/O : if the writer falls so
+ * far behind that both buffers are full, frames are dropped and counted.
+ * <p/>
+ * the writer thread also maintains the sparse index of the log (see CaptureIndex). A block still being filled is
+ * written at each sync, so at most one sync period of frames is lost on crash
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureWriter {
+
+    private final static Logger LOGGER = Logger.getLogger(CaptureWriter.class.getName());
+
+    /**
+     * layout of frames in buffers : payload length (2) | timestamp (8) | address (6) | rssi (1) | payload
+     */
+    private final static int FRAME_HEADER_SIZE = 17;
+
+    /**
+     * default size of each of the two buffers
+     */
+    public final static int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * maximum delay before buffered frames are written
+     */
+    private final static long WRITE_PERIOD = 200;
+
+    /**
+     * period of file sync to storage
+     */
+    private final static long FSYNC_PERIOD = 2000;
+
+    private final File file;
+
+    private final FileChannel channel;
+
+    private final Object lock = new Object();
+
+    /**
+     * buffer filled by scan thread
+     */
+    private ByteBuffer active;
+
+    /**
+     * buffer available for swapping, null while it is being written
+     */
+    private ByteBuffer spare;
+
+    /**
+     * position of active buffer from which the writer is woken up
+     */
+    private final int wakeThreshold;
+
+    private boolean closed = false;
+
+    private volatile long frameCount = 0;
+
+    private volatile long droppedCount = 0;
+
+    private volatile IOException error = null;
+
+    private final Thread writerThread;
+
+    /**
+     * file offset of next block (only used from writer thread)
+     */
+    private long fileOffset = CaptureFormat.HEADER_SIZE;
+
+    private final CaptureBlockEncoder encoder = new CaptureBlockEncoder();
+
+    /**
+     * index writer, null if index could not be written (it can be rebuilt from the log)
+     */
+    private CaptureIndexWriter indexWriter;
+
+    /**
+     * create a capture log and start its writer thread
+     *
+     * @param file      capture file, truncated if it exists
+     * @param startTime capture start in milliseconds, from the clock stamping frames
+     * @throws IOException
+     */
+    public CaptureWriter(File file, long startTime) throws IOException {
+        this(file, startTime, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * create a capture log and start its writer thread
+     *
+     * @param file       capture file, truncated if it exists
+     * @param startTime  capture start in milliseconds, from the clock stamping frames
+     * @param bufferSize size of each of the two buffers
+     * @throws IOException
+     */
+    public CaptureWriter(File file, long startTime, int bufferSize) throws IOException {
+
+        if (bufferSize < FRAME_HEADER_SIZE + CaptureFormat.MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("buffer size must hold a record of maximum size");
+        }
+        this.file = file;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+
+        try {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(CaptureFormat.HEADER_SIZE);
+            header.putInt(CaptureFormat.MAGIC);
+            header.putShort(CaptureFormat.VERSION);
+            header.putShort((short) 0);
+            header.putLong(startTime);
+            header.flip();
+            writeFully(header);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+
+        try {
+            indexWriter = new CaptureIndexWriter(CaptureIndex.indexFile(file), 0);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "cannot create index of " + file.getName(), e);
+            indexWriter = null;
+        }
+
+        active = ByteBuffer.allocate(bufferSize);
+        spare = ByteBuffer.allocate(bufferSize);
+        wakeThreshold = bufferSize / 2;
+
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "capture-writer");
+        writerThread.start();
+    }
+
+    /**
+     * append a frame without blocking on I/O
+     *
+     * @param timestamp reception time in milliseconds (monotonic clock)
+     * @param address48 device address as 48 bit value
+     * @param rssi      received signal strength
+     * @param payload   raw advertising payload (may be null)
+     * @return false if frame has been dropped
+     */
+    public boolean append(long timestamp, long address48, int rssi, byte[] payload) {
+
+        int length = payload != null ? Math.min(payload.length, CaptureFormat.MAX_PAYLOAD_SIZE) : 0;
+
+        synchronized (lock) {
+
+            if (closed) {
+                return false;
+            }
+            frameCount++;
+
+            if (active.remaining() < FRAME_HEADER_SIZE + length) {
+                droppedCount++;
+                lock.notify();
+                return false;
+            }
+
+            int start = active.position();
+
+            active.putShort((short) length);
+            active.putLong(timestamp);
+            active.putShort((short) (address48 >>> 32));
+            active.putInt((int) address48);
+            active.put((byte) rssi);
+            if (length > 0) {
+                active.put(payload, 0, length);
+            }
+
+            if (start < wakeThreshold && active.position() >= wakeThreshold) {
+                lock.notify();
+            }
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+
+        long lastSync = System.currentTimeMillis();
+        boolean dirty = false;
+
+        while (true) {
+
+            ByteBuffer buffer;
+            boolean last;
+
+            synchronized (lock) {
+
+                if (!closed && active.position() < wakeThreshold) {
+                    try {
+                        lock.wait(WRITE_PERIOD);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                last = closed;
+
+                buffer = active;
+                active = spare;
+                spare = null;
+            }
+
+            try {
+                if (buffer.position() > 0) {
+                    buffer.flip();
+                    encode(buffer);
+                    dirty = true;
+                }
+                long now = System.currentTimeMillis();
+                if (dirty && (last || now - lastSync >= FSYNC_PERIOD)) {
+                    if (!encoder.isEmpty()) {
+                        writeBlock();
+                    }
+                    channel.force(false);
+                    if (indexWriter != null) {
+                        indexWriter.force();
+                    }
+                    lastSync = now;
+                    dirty = false;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "capture write failed, closing " + file.getName(), e);
+                error = e;
+                synchronized (lock) {
+                    closed = true;
+                }
+                last = true;
+            }
+
+            buffer.clear();
+
+            synchronized (lock) {
+                spare = buffer;
+            }
+
+            if (last) {
+                break;
+            }
+        }
+
+        encoder.release();
+
+        try {
+            channel.close();
+            if (indexWriter != null) {
+                indexWriter.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "capture close failed", e);
+        }
+    }
+
+    /**
+     * encode frames of a buffer, writing blocks as they are completed
+     */
+    private void encode(ByteBuffer buffer) throws IOException {
+
+        byte[] data = buffer.array();
+        int position = buffer.position();
+
+        while (position < buffer.limit()) {
+            int length = buffer.getShort(position) & 0xFFFF;
+            long timestamp = buffer.getLong(position + 2);
+            long address48 = ((long) (buffer.getShort(position + 10) & 0xFFFF) << 32) |
+                    (buffer.getInt(position + 12) & 0xFFFFFFFFL);
+            int rssi = buffer.get(position + 16);
+
+            if (!encoder.accepts(timestamp)) {
+                writeBlock();
+            }
+            encoder.add(timestamp, address48, rssi, data, position + FRAME_HEADER_SIZE, length);
+
+            position += FRAME_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * write block being filled and its index entry
+     */
+    private void writeBlock() throws IOException {
+
+        CaptureIndex.Block block = encoder.encode(fileOffset);
+        ByteBuffer output = encoder.getOutput();
+        fileOffset += output.remaining();
+        writeFully(output);
+
+        if (indexWriter == null) {
+            return;
+        }
+        try {
+            indexWriter.write(block);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "index write failed, index of " + file.getName() + " will have to be rebuilt", e);
+            try {
+                indexWriter.close();
+            } catch (IOException ignored) {
+            }
+            indexWriter = null;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * stop capture : remaining frames are written and synced before file is closed
+     *
+     * @throws IOException if a write failed during capture
+     */
+    public void close() throws IOException {
+
+        synchronized (lock) {
+            closed = true;
+            lock.notify();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * number of frames appended while capturing, including dropped frames and frames not written yet
+     *
+     * @return
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * number of frames dropped because writer could not keep up
+     *
+     * @return
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,50 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.chart;
+
+import java.util.ArrayList;
+
+/**
+ * X axis labels of per-second charts ("0s", "1s", ...)
+ * <p/>
+ * charts are rebuilt every second from the whole series : labels are formatted once and reused by every rebuild
+ * instead of formatting one new string per bar each second.
+ *
+ * @author Bertrand Martel
+ */
+public class SecondAxisLabels {
+
+    private final ArrayList<String> labels = new ArrayList<>();
+
+    /**
+     * get labels of a series
+     *
+     * @param count number of values in series
+     * @return new list of count labels (label strings are shared)
+     */
+    public ArrayList<String> get(int count) {
+
+        labels.ensureCapacity(count);
+
+        for (int i = labels.size(); i < count; i++) {
+            labels.add(i + "s");
+        }
+        return new ArrayList<>(labels.subList(0, count));
+    }
+}
@@ -18,7 +18,7 @@
  */
 package com.github.akinaru.bleanalyzer.inter;
 
-import java.util.List;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
 
 /**
  * Advertizing frame listener
@@ -31,9 +31,9 @@ public interface IADListener {
      * called when advertizing frame is received
      *
      * @param ts      packet reception timestamp
-     * @param history list of total packet received timestamp
+     * @param history read only history of packet received timestamp
      */
-    void onADframeReceived(long ts, List<Long> history, int rssi);
+    void onADframeReceived(long ts, ILongHistory history, int rssi);
 
 
 
@@ -0,0 +1,85 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.inter;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.measurement.DeviceMeasurement;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
+
+public interface IMeasurement {
+
+    /**
+     * get read only history of packet received timestamp for the tracked device
+     *
+     * @return
+     */
+    ILongHistory getHistory();
+
+    /**
+     * retrieve measurement of a device, creating it if needed. Reference may be cached until it is released
+     *
+     * @param deviceAddress device address
+     * @return
+     */
+    DeviceMeasurement obtainDeviceMeasurement(String deviceAddress);
+
+    /**
+     * stop measuring a device which is not tracked
+     *
+     * @param deviceAddress device address
+     */
+    void removeDeviceMeasurement(String deviceAddress);
+
+    /**
+     * clock used to timestamp packet receptions and measurements
+     *
+     * @return
+     */
+    IClock getClock();
+
+    /**
+     * set advertising interval of a device, used to compute its reception rate
+     *
+     * @param deviceAddress       device address
+     * @param advertizingInterval advertising interval in milliseconds
+     */
+    void setAdvertizingInterval(String deviceAddress, int advertizingInterval);
+
+    /**
+     * set the bluetooth device to track
+     *
+     * @param btDevice
+     */
+    void setBtDevice(BluetoothObject btDevice);
+
+    /**
+     * retrieve the tracked bluetooth device
+     *
+     * @return
+     */
+    BluetoothObject getBtDevice();
+
+    /**
+     * define if a tracked device has been selected by user
+     *
+     * @return
+     */
+    boolean isSelectionningDevice();
+}
@@ -0,0 +1,236 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.measurement;
+
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
+import com.github.akinaru.bleanalyzer.utils.LongRingBuffer;
+import com.github.akinaru.bleanalyzer.utils.SlidingWindowCounter;
+
+/**
+ * Packet reception measurement for a single Bluetooth device
+ * <p/>
+ * frames are recorded from the scan thread, statistics are refreshed by the measurement engine tick
+ *
+ * @author Bertrand Martel
+ */
+public class DeviceMeasurement {
+
+    /**
+     * initial capacity of packet history (grows on demand)
+     */
+    private final static int HISTORY_INITIAL_CAPACITY = 16;
+
+    private final String deviceAddress;
+
+    private final LongRingBuffer history;
+
+    private final SlidingWindowCounter counter;
+
+    /**
+     * advertising interval in milliseconds, -1 if unknown
+     */
+    private volatile int advertizingInterval = -1;
+
+    private volatile int lastRssi = 0;
+
+    /**
+     * set when measurement has been removed from its engine, holders of a cached reference must fetch a new one
+     */
+    private volatile boolean released = false;
+
+    private long samplingTime = 0;
+
+    private int packetCount = 0;
+
+    private int windowRate = -1;
+
+    private int receptionRate = -1;
+
+    private float averagePacket = 0;
+
+    /**
+     * Build device measurement
+     *
+     * @param deviceAddress      device address
+     * @param historyCapacity    maximum number of packet timestamp retained
+     * @param historyRetention   history retention window in milliseconds
+     * @param counterBucketMillis width of counter buckets
+     * @param counterBucketCount number of counter buckets
+     */
+    public DeviceMeasurement(String deviceAddress, int historyCapacity, long historyRetention,
+                             int counterBucketMillis, int counterBucketCount) {
+        this.deviceAddress = deviceAddress;
+        this.history = new LongRingBuffer(Math.min(HISTORY_INITIAL_CAPACITY, historyCapacity), historyCapacity, historyRetention);
+        this.counter = new SlidingWindowCounter(counterBucketMillis, counterBucketCount);
+    }
+
+    /**
+     * record a packet reception
+     *
+     * @param ts   reception timestamp
+     * @param rssi received signal strength
+     */
+    public void addFrame(long ts, int rssi) {
+        history.add(ts);
+        counter.add(ts);
+        lastRssi = rssi;
+    }
+
+    /**
+     * mark this measurement as removed from its engine
+     */
+    void release() {
+        released = true;
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * refresh statistics
+     *
+     * @param now          current timestamp
+     * @param windowMillis window used for packet count and window reception rate
+     */
+    public synchronized void update(long now, int windowMillis) {
+
+        long total = counter.getTotalCount();
+
+        if (total == 0) {
+            samplingTime = 0;
+            packetCount = 0;
+            windowRate = -1;
+            receptionRate = -1;
+            averagePacket = 0;
+            return;
+        }
+
+        long first = history.getFirstTimestamp();
+        long elapsed = now - first;
+
+        samplingTime = elapsed / 1000;
+        packetCount = counter.count(windowMillis, now);
+        averagePacket = (elapsed != 0) ? (total * 1000) / (float) elapsed : 1;
+
+        int interval = advertizingInterval;
+
+        if (interval > 0) {
+            windowRate = (int) ((packetCount * 100) / (windowMillis / (float) interval));
+            if (interval >= elapsed) {
+                receptionRate = 100;
+            } else {
+                receptionRate = (int) Math.min(100, (total * 100) / (elapsed / interval));
+            }
+        } else {
+            windowRate = -1;
+            receptionRate = -1;
+        }
+    }
+
+    /**
+     * reset history and statistics
+     */
+    public synchronized void clear() {
+        history.clear();
+        counter.clear();
+        samplingTime = 0;
+        packetCount = 0;
+        windowRate = -1;
+        receptionRate = -1;
+        averagePacket = 0;
+    }
+
+    public String getDeviceAddress() {
+        return deviceAddress;
+    }
+
+    public ILongHistory getHistory() {
+        return history.asReadOnly();
+    }
+
+    public void setHistoryRetention(long retentionMillis) {
+        history.setRetention(retentionMillis);
+    }
+
+    public int getMaxWindow() {
+        return counter.getMaxWindow();
+    }
+
+    public int getAdvertizingInterval() {
+        return advertizingInterval;
+    }
+
+    public void setAdvertizingInterval(int advertizingInterval) {
+        this.advertizingInterval = advertizingInterval;
+    }
+
+    public long getTotalCount() {
+        return counter.getTotalCount();
+    }
+
+    public int getLastRssi() {
+        return lastRssi;
+    }
+
+    /**
+     * time elapsed since first packet in seconds
+     *
+     * @return
+     */
+    public synchronized long getSamplingTime() {
+        return samplingTime;
+    }
+
+    /**
+     * number of packet received during last window
+     *
+     * @return
+     */
+    public synchronized int getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * reception rate in % during last window, -1 if advertising interval is unknown
+     *
+     * @return
+     */
+    public synchronized int getWindowRate() {
+        return windowRate;
+    }
+
+    /**
+     * reception rate in % since first packet, -1 if advertising interval is unknown
+     *
+     * @return
+     */
+    public synchronized int getReceptionRate() {
+        return receptionRate;
+    }
+
+    /**
+     * average number of packet per second since first packet
+     *
+     * @return
+     */
+    public synchronized float getAveragePacket() {
+        return averagePacket;
+    }
+}
@@ -0,0 +1,176 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.measurement;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Packet reception measurement for all devices, indexed by device address
+ *
+ * @author Bertrand Martel
+ */
+public class MeasurementEngine {
+
+    private final ConcurrentHashMap<String, DeviceMeasurement> deviceMap = new ConcurrentHashMap<>();
+
+    private final int historyCapacity;
+
+    private volatile long historyRetention;
+
+    private final int counterBucketMillis;
+
+    private final int counterBucketCount;
+
+    /**
+     * Build measurement engine
+     *
+     * @param historyCapacity     maximum number of packet timestamp retained per device
+     * @param historyRetention    history retention window in milliseconds
+     * @param counterBucketMillis width of counter buckets
+     * @param counterBucketCount  number of counter buckets
+     */
+    public MeasurementEngine(int historyCapacity, long historyRetention, int counterBucketMillis, int counterBucketCount) {
+        this.historyCapacity = historyCapacity;
+        this.historyRetention = historyRetention;
+        this.counterBucketMillis = counterBucketMillis;
+        this.counterBucketCount = counterBucketCount;
+    }
+
+    /**
+     * record a packet reception for a device, creating its measurement if needed
+     *
+     * @param deviceAddress device address
+     * @param ts            reception timestamp
+     * @param rssi          received signal strength
+     */
+    public void addFrame(String deviceAddress, long ts, int rssi) {
+        getOrCreate(deviceAddress).addFrame(ts, rssi);
+    }
+
+    /**
+     * retrieve measurement for a device, creating it if needed
+     *
+     * @param deviceAddress device address
+     * @return
+     */
+    public DeviceMeasurement getOrCreate(String deviceAddress) {
+        DeviceMeasurement measurement = deviceMap.get(deviceAddress);
+        if (measurement == null) {
+            measurement = new DeviceMeasurement(deviceAddress, historyCapacity, historyRetention,
+                    counterBucketMillis, counterBucketCount);
+            DeviceMeasurement previous = deviceMap.putIfAbsent(deviceAddress, measurement);
+            if (previous != null) {
+                measurement = previous;
+            }
+        }
+        return measurement;
+    }
+
+    /**
+     * retrieve measurement for a device
+     *
+     * @param deviceAddress device address
+     * @return measurement or null if device has never been measured
+     */
+    public DeviceMeasurement get(String deviceAddress) {
+        return deviceMap.get(deviceAddress);
+    }
+
+    /**
+     * stop measuring a device
+     *
+     * @param deviceAddress device address
+     */
+    public void remove(String deviceAddress) {
+        DeviceMeasurement measurement = deviceMap.remove(deviceAddress);
+        if (measurement != null) {
+            measurement.release();
+        }
+    }
+
+    /**
+     * live view of all measured devices
+     *
+     * @return
+     */
+    public Collection<DeviceMeasurement> getDevices() {
+        return Collections.unmodifiableCollection(deviceMap.values());
+    }
+
+    public int size() {
+        return deviceMap.size();
+    }
+
+    /**
+     * set history retention window of all current and future devices
+     *
+     * @param retentionMillis retention window in milliseconds or LongRingBuffer.RETENTION_UNLIMITED
+     */
+    public void setHistoryRetention(long retentionMillis) {
+        historyRetention = retentionMillis;
+        for (DeviceMeasurement measurement : deviceMap.values()) {
+            measurement.setHistoryRetention(retentionMillis);
+        }
+    }
+
+    /**
+     * refresh statistics of all devices
+     *
+     * @param now          current timestamp
+     * @param windowMillis window used for packet count and window reception rate
+     */
+    public void tick(long now, int windowMillis) {
+        for (DeviceMeasurement measurement : deviceMap.values()) {
+            measurement.update(now, windowMillis);
+        }
+    }
+
+    /**
+     * remove all devices
+     */
+    public void clear() {
+        Iterator<DeviceMeasurement> iterator = deviceMap.values().iterator();
+        while (iterator.hasNext()) {
+            DeviceMeasurement measurement = iterator.next();
+            iterator.remove();
+            measurement.release();
+        }
+    }
+
+    /**
+     * resolution of device measurement windows in milliseconds, windows are multiple of it
+     *
+     * @return
+     */
+    public int getWindowResolution() {
+        return counterBucketMillis;
+    }
+
+    /**
+     * largest window supported by device measurements
+     *
+     * @return
+     */
+    public int getMaxWindow() {
+        return counterBucketMillis * (counterBucketCount - 1);
+    }
+}
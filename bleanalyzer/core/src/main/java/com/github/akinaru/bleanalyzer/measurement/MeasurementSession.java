@@ -0,0 +1,263 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.measurement;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.inter.IDeviceMeasureListener;
+import com.github.akinaru.bleanalyzer.inter.IMeasurement;
+import com.github.akinaru.bleanalyzer.inter.IScheduledMeasureListener;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Measurement of scanned devices and of the tracked device, independent of Android service lifecycle
+ * <p/>
+ * frames are recorded from scan thread, tick() is called periodically from a single measurement thread
+ *
+ * @author Bertrand Martel
+ */
+public class MeasurementSession implements IMeasurement {
+
+    /**
+     * default window used to compute rates
+     */
+    public final static int DEFAULT_WINDOW = 1000;
+
+    private final MeasurementEngine engine;
+
+    private final IClock clock;
+
+    private volatile BluetoothObject btDevice = null;
+
+    private volatile boolean selectionning = false;
+
+    private volatile int measurementWindow = DEFAULT_WINDOW;
+
+    private volatile IScheduledMeasureListener scheduledMeasureListener = null;
+
+    private volatile IDeviceMeasureListener deviceMeasureListener = null;
+
+    private List<Integer> globalSumPerSecond = new ArrayList<>();
+
+    private List<Integer> globalPacketReceivedPerSecond = new ArrayList<>();
+
+    public MeasurementSession(MeasurementEngine engine, IClock clock) {
+        this.engine = engine;
+        this.clock = clock;
+    }
+
+    /**
+     * get read only history of the tracked device
+     *
+     * @return history or null if no device is tracked
+     */
+    @Override
+    public ILongHistory getHistory() {
+        BluetoothObject device = btDevice;
+        if (device == null) {
+            return null;
+        }
+        return engine.getOrCreate(device.getDeviceAddress()).getHistory();
+    }
+
+    @Override
+    public DeviceMeasurement obtainDeviceMeasurement(String deviceAddress) {
+        return engine.getOrCreate(deviceAddress);
+    }
+
+    @Override
+    public void removeDeviceMeasurement(String deviceAddress) {
+        BluetoothObject device = btDevice;
+        if (device == null || !device.getDeviceAddress().equals(deviceAddress)) {
+            engine.remove(deviceAddress);
+        }
+    }
+
+    @Override
+    public IClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public void setAdvertizingInterval(String deviceAddress, int advertizingInterval) {
+        engine.getOrCreate(deviceAddress).setAdvertizingInterval(advertizingInterval);
+    }
+
+    @Override
+    public void setBtDevice(BluetoothObject btDevice) {
+        this.btDevice = btDevice;
+    }
+
+    @Override
+    public BluetoothObject getBtDevice() {
+        return btDevice;
+    }
+
+    @Override
+    public boolean isSelectionningDevice() {
+        return selectionning;
+    }
+
+    public void setSelectionningDevice(boolean state) {
+        this.selectionning = state;
+    }
+
+    /**
+     * set window used to compute reception rate and packet count on each measurement
+     *
+     * @param windowMillis window in milliseconds, multiple of engine window resolution
+     */
+    public void setMeasurementWindow(int windowMillis) {
+        if (windowMillis <= 0 || windowMillis > engine.getMaxWindow() ||
+                windowMillis % engine.getWindowResolution() != 0) {
+            throw new IllegalArgumentException("measurement window must be a multiple of " +
+                    engine.getWindowResolution() + "ms in ]0," + engine.getMaxWindow() + "]");
+        }
+        measurementWindow = windowMillis;
+    }
+
+    public int getMeasurementWindow() {
+        return measurementWindow;
+    }
+
+    /**
+     * set retention window of packet history. Total packet count and first packet timestamp are kept regardless
+     *
+     * @param retentionMillis retention window in milliseconds or LongRingBuffer.RETENTION_UNLIMITED
+     */
+    public void setHistoryRetention(long retentionMillis) {
+        engine.setHistoryRetention(retentionMillis);
+    }
+
+    /**
+     * retrieve measurement of a device
+     *
+     * @param deviceAddress device address
+     * @return measurement or null if no packet has been received from this device
+     */
+    public DeviceMeasurement getDeviceMeasurement(String deviceAddress) {
+        return engine.get(deviceAddress);
+    }
+
+    /**
+     * live view of all measured devices
+     *
+     * @return
+     */
+    public Collection<DeviceMeasurement> getDeviceMeasurements() {
+        return engine.getDevices();
+    }
+
+    public List<Integer> getGlobalSumPerSecond() {
+        return globalSumPerSecond;
+    }
+
+    public List<Integer> getGlobalPacketReceivedPerSecond() {
+        return globalPacketReceivedPerSecond;
+    }
+
+    public void setScheduledMeasureListener(IScheduledMeasureListener listener) {
+        scheduledMeasureListener = listener;
+    }
+
+    public void setDeviceMeasureListener(IDeviceMeasureListener listener) {
+        deviceMeasureListener = listener;
+    }
+
+    /**
+     * drop all measurements
+     */
+    public void clear() {
+
+        engine.clear();
+        globalSumPerSecond.clear();
+        globalPacketReceivedPerSecond.clear();
+
+        IScheduledMeasureListener listener = scheduledMeasureListener;
+        if (listener != null)
+            listener.onMeasureClear();
+    }
+
+    /**
+     * refresh all devices at current time and notify listeners
+     */
+    public void tick() {
+        tick(clock.currentTimeMillis());
+    }
+
+    /**
+     * refresh all devices at the specified time and notify listeners
+     *
+     * @param ts measurement time
+     */
+    public void tick(long ts) {
+
+        BluetoothObject device = btDevice;
+
+        DeviceMeasurement tracked = null;
+
+        if (device != null) {
+            tracked = engine.get(device.getDeviceAddress());
+            if (tracked != null) {
+                tracked.setAdvertizingInterval(device.getAdvertizingInterval());
+            }
+        }
+
+        //refresh all devices at once
+        engine.tick(ts, measurementWindow);
+
+        IDeviceMeasureListener deviceListener = deviceMeasureListener;
+        if (deviceListener != null) {
+            deviceListener.onDeviceMeasures(engine.getDevices());
+        }
+
+        IScheduledMeasureListener listener = scheduledMeasureListener;
+
+        if (tracked != null && device.getAdvertizingInterval() > 0 && tracked.getTotalCount() > 0) {
+
+            globalSumPerSecond.add(tracked.getWindowRate());
+
+            globalPacketReceivedPerSecond.add(tracked.getPacketCount());
+
+            if (listener != null) {
+                listener.onNewMeasure(tracked.getSamplingTime(),
+                        tracked.getReceptionRate(),
+                        globalSumPerSecond,
+                        globalPacketReceivedPerSecond,
+                        tracked.getAveragePacket());
+            }
+
+        } else if (tracked != null && tracked.getTotalCount() > 0) {
+
+            globalPacketReceivedPerSecond.add(tracked.getPacketCount());
+
+            if (listener != null) {
+                listener.onNewMeasure(tracked.getSamplingTime(),
+                        -1,
+                        null,
+                        globalPacketReceivedPerSecond,
+                        tracked.getAveragePacket());
+            }
+        }
+    }
+}
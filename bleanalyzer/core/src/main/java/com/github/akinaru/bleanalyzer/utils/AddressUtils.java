@@ -0,0 +1,84 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+/**
+ * Bluetooth device address conversion between "XX:XX:XX:XX:XX:XX" strings and 48 bit values
+ *
+ * @author Bertrand Martel
+ */
+public class AddressUtils {
+
+    private final static char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * parse a Bluetooth address without allocation
+     *
+     * @param address address formatted as "XX:XX:XX:XX:XX:XX"
+     * @return 48 bit address or -1 if address is malformed
+     */
+    public static long parse(String address) {
+
+        if (address == null || address.length() != 17) {
+            return -1;
+        }
+
+        long value = 0;
+
+        for (int i = 0; i < 17; i++) {
+
+            char c = address.charAt(i);
+
+            if (i % 3 == 2) {
+                if (c != ':') {
+                    return -1;
+                }
+                continue;
+            }
+
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * format a 48 bit address
+     *
+     * @param address 48 bit address
+     * @return address formatted as "XX:XX:XX:XX:XX:XX"
+     */
+    public static String format(long address) {
+
+        char[] chars = new char[17];
+
+        for (int i = 0; i < 6; i++) {
+            int value = (int) (address >>> (40 - i * 8)) & 0xFF;
+            chars[i * 3] = HEX_DIGITS[value >>> 4];
+            chars[i * 3 + 1] = HEX_DIGITS[value & 0x0F];
+            if (i < 5) {
+                chars[i * 3 + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,79 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+/**
+ * Read-only view of a timestamp history
+ *
+ * @author Bertrand Martel
+ */
+public interface ILongHistory {
+
+    /**
+     * number of entries currently retained
+     *
+     * @return
+     */
+    int size();
+
+    /**
+     * retrieve a retained entry, 0 being the oldest one
+     *
+     * @param index entry index
+     * @return
+     */
+    long get(int index);
+
+    /**
+     * retrieve the most recent entry
+     *
+     * @return
+     */
+    long getLast();
+
+    /**
+     * total number of entries added since last clear, including those that have been evicted
+     *
+     * @return
+     */
+    long getTotalCount();
+
+    /**
+     * first entry added since last clear, even if it has been evicted since
+     *
+     * @return
+     */
+    long getFirstTimestamp();
+
+    /**
+     * count retained entries strictly greater than the specified value
+     *
+     * @param ts lower bound (exclusive)
+     * @return
+     */
+    int countAfter(long ts);
+
+    /**
+     * copy retained entries (oldest first) to the specified array
+     *
+     * @param dest destination array
+     * @return number of entries copied
+     */
+    int copyTo(long[] dest);
+}
@@ -0,0 +1,276 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+/**
+ * Sorted map giving access to entries by position
+ * <p/>
+ * AVL tree whose nodes hold the size of their subtree : lookup, insertion, removal, position of a key and key at a
+ * position are all O(log n). Not thread safe.
+ *
+ * @author Bertrand Martel
+ */
+public class IndexedTreeMap<K extends Comparable<? super K>, V> {
+
+    private static class Node<K, V> {
+
+        private final K key;
+
+        private V value;
+
+        private Node<K, V> left;
+
+        private Node<K, V> right;
+
+        private int height = 1;
+
+        private int size = 1;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private Node<K, V> root;
+
+    /**
+     * previous value of last put or removed value of last remove
+     */
+    private V previous;
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * value of a key
+     *
+     * @param key
+     * @return value or null if key is not in map
+     */
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * value at a position in key order
+     *
+     * @param index position
+     * @return
+     */
+    public V getAt(int index) {
+
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + size());
+        }
+        Node<K, V> node = root;
+
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * position of a key in key order
+     *
+     * @param key
+     * @return position or -1 if key is not in map
+     */
+    public int indexOf(K key) {
+
+        Node<K, V> node = root;
+        int index = 0;
+
+        while (node != null) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * insert or replace value of a key
+     *
+     * @param key
+     * @param value
+     * @return previous value or null if key was not in map
+     */
+    public V put(K key, V value) {
+        previous = null;
+        root = put(root, key, value);
+        V result = previous;
+        previous = null;
+        return result;
+    }
+
+    /**
+     * remove a key
+     *
+     * @param key
+     * @return removed value or null if key was not in map
+     */
+    public V remove(K key) {
+        previous = null;
+        root = remove(root, key);
+        V result = previous;
+        previous = null;
+        return result;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value) {
+
+        if (node == null) {
+            return new Node<>(key, value);
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = put(node.left, key, value);
+        } else if (cmp > 0) {
+            node.right = put(node.right, key, value);
+        } else {
+            previous = node.value;
+            node.value = value;
+            return node;
+        }
+        return balance(node);
+    }
+
+    private Node<K, V> remove(Node<K, V> node, K key) {
+
+        if (node == null) {
+            return null;
+        }
+        int cmp = key.compareTo(node.key);
+        if (cmp < 0) {
+            node.left = remove(node.left, key);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, key);
+        } else {
+            previous = node.value;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node<K, V> successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+        return balance(node);
+    }
+
+    private Node<K, V> removeMin(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private Node<K, V> balance(Node<K, V> node) {
+
+        int factor = height(node.left) - height(node.right);
+
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<K, V> rotateRight(Node<K, V> node) {
+        Node<K, V> pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private Node<K, V> rotateLeft(Node<K, V> node) {
+        Node<K, V> pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node<?, ?> node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int height(Node<?, ?> node) {
+        return (node != null) ? node.height : 0;
+    }
+
+    private static int size(Node<?, ?> node) {
+        return (node != null) ? node.size : 0;
+    }
+}
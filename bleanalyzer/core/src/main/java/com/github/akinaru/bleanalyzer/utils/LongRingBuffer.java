@@ -0,0 +1,245 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+/**
+ * Bounded ring buffer of primitive long timestamps
+ * <p/>
+ * storage grows on demand up to a maximum capacity, after which the oldest entries are overwritten.
+ * Entries older than the retention window (relative to the latest entry) are evicted on insertion.
+ *
+ * @author Bertrand Martel
+ */
+public class LongRingBuffer implements ILongHistory {
+
+    /**
+     * no retention window : entries are only evicted when buffer is full
+     */
+    public final static long RETENTION_UNLIMITED = -1;
+
+    private long[] buffer;
+
+    private final int maxCapacity;
+
+    private long retentionMillis;
+
+    /**
+     * index of the oldest entry
+     */
+    private int head = 0;
+
+    private int size = 0;
+
+    private long totalCount = 0;
+
+    private long firstTimestamp = 0;
+
+    /**
+     * read only view given to consumers
+     */
+    private final ILongHistory readOnlyView = new ReadOnlyView();
+
+    /**
+     * Build ring buffer
+     *
+     * @param initialCapacity initial storage capacity
+     * @param maxCapacity     maximum number of entries retained
+     * @param retentionMillis retention window in milliseconds or RETENTION_UNLIMITED
+     */
+    public LongRingBuffer(int initialCapacity, int maxCapacity, long retentionMillis) {
+        if (initialCapacity <= 0 || maxCapacity < initialCapacity) {
+            throw new IllegalArgumentException("invalid capacity " + initialCapacity + "/" + maxCapacity);
+        }
+        this.buffer = new long[initialCapacity];
+        this.maxCapacity = maxCapacity;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * add an entry. Entries are expected in ascending order
+     *
+     * @param value timestamp
+     */
+    public synchronized void add(long value) {
+
+        if (totalCount == 0) {
+            firstTimestamp = value;
+        }
+        totalCount++;
+
+        if (retentionMillis >= 0) {
+            long limit = value - retentionMillis;
+            while (size > 0 && buffer[head] < limit) {
+                head = (head + 1) % buffer.length;
+                size--;
+            }
+        }
+
+        if (size == buffer.length) {
+            if (buffer.length < maxCapacity) {
+                grow();
+            } else {
+                //overwrite oldest entry
+                head = (head + 1) % buffer.length;
+                size--;
+            }
+        }
+        buffer[(head + size) % buffer.length] = value;
+        size++;
+    }
+
+    private void grow() {
+        int newCapacity = Math.min(maxCapacity, buffer.length << 1);
+        long[] newBuffer = new long[newCapacity];
+        int firstPart = Math.min(size, buffer.length - head);
+        System.arraycopy(buffer, head, newBuffer, 0, firstPart);
+        System.arraycopy(buffer, 0, newBuffer, firstPart, size - firstPart);
+        buffer = newBuffer;
+        head = 0;
+    }
+
+    /**
+     * remove all entries and reset counters
+     */
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+        totalCount = 0;
+        firstTimestamp = 0;
+    }
+
+    /**
+     * set retention window
+     *
+     * @param retentionMillis retention window in milliseconds or RETENTION_UNLIMITED
+     */
+    public synchronized void setRetention(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    public synchronized long getRetention() {
+        return retentionMillis;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * retrieve a read only view of this buffer for consumers
+     *
+     * @return
+     */
+    public ILongHistory asReadOnly() {
+        return readOnlyView;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + size);
+        }
+        return buffer[(head + index) % buffer.length];
+    }
+
+    @Override
+    public synchronized long getLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("empty history");
+        }
+        return buffer[(head + size - 1) % buffer.length];
+    }
+
+    @Override
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    @Override
+    public synchronized long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    @Override
+    public synchronized int countAfter(long ts) {
+        int count = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            if (buffer[(head + i) % buffer.length] <= ts) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized int copyTo(long[] dest) {
+        int count = Math.min(size, dest.length);
+        int firstPart = Math.min(count, buffer.length - head);
+        System.arraycopy(buffer, head, dest, 0, firstPart);
+        System.arraycopy(buffer, 0, dest, firstPart, count - firstPart);
+        return count;
+    }
+
+    /**
+     * read only delegate preventing consumers from casting back to the buffer
+     */
+    private class ReadOnlyView implements ILongHistory {
+
+        @Override
+        public int size() {
+            return LongRingBuffer.this.size();
+        }
+
+        @Override
+        public long get(int index) {
+            return LongRingBuffer.this.get(index);
+        }
+
+        @Override
+        public long getLast() {
+            return LongRingBuffer.this.getLast();
+        }
+
+        @Override
+        public long getTotalCount() {
+            return LongRingBuffer.this.getTotalCount();
+        }
+
+        @Override
+        public long getFirstTimestamp() {
+            return LongRingBuffer.this.getFirstTimestamp();
+        }
+
+        @Override
+        public int countAfter(long ts) {
+            return LongRingBuffer.this.countAfter(ts);
+        }
+
+        @Override
+        public int copyTo(long[] dest) {
+            return LongRingBuffer.this.copyTo(dest);
+        }
+    }
+}
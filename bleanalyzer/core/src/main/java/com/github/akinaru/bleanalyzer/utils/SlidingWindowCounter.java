@@ -0,0 +1,152 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+/**
+ * Incremental time windowed counter
+ * <p/>
+ * events are accumulated in fixed width time buckets as they arrive so that counting events over a window costs
+ * a number of bucket reads proportional to the window length, whatever the number of events recorded.
+ *
+ * @author Bertrand Martel
+ */
+public class SlidingWindowCounter {
+
+    private final int bucketMillis;
+
+    private final int[] buckets;
+
+    /**
+     * absolute index of the most recent bucket written (timestamp / bucketMillis)
+     */
+    private long currentBucket = -1;
+
+    private long totalCount = 0;
+
+    /**
+     * Build windowed counter
+     *
+     * @param bucketMillis bucket width in milliseconds (counting resolution)
+     * @param bucketCount  number of buckets kept, which defines the maximum window
+     */
+    public SlidingWindowCounter(int bucketMillis, int bucketCount) {
+        if (bucketMillis <= 0 || bucketCount < 2) {
+            throw new IllegalArgumentException("invalid bucket configuration " + bucketMillis + "ms x " + bucketCount);
+        }
+        this.bucketMillis = bucketMillis;
+        this.buckets = new int[bucketCount];
+    }
+
+    /**
+     * record an event
+     *
+     * @param ts event timestamp in milliseconds
+     */
+    public synchronized void add(long ts) {
+
+        totalCount++;
+
+        long bucket = ts / bucketMillis;
+
+        if (bucket > currentBucket) {
+            //reset buckets skipped since last event
+            long gap = Math.min(bucket - currentBucket, buckets.length);
+            for (long i = 0; i < gap; i++) {
+                buckets[(int) ((bucket - i) % buckets.length)] = 0;
+            }
+            currentBucket = bucket;
+        } else if (bucket <= currentBucket - buckets.length) {
+            //older than the span covered by buckets
+            return;
+        }
+        buckets[(int) (bucket % buckets.length)]++;
+    }
+
+    /**
+     * count events received during the specified window ending at the start of the bucket including the specified
+     * time
+     * <p/>
+     * only complete buckets are counted so that the count is exact, the window lagging behind now by less than a
+     * bucket
+     *
+     * @param windowMillis window length in milliseconds, multiple of bucket width
+     * @param now          current time in milliseconds
+     * @return number of events in [end - windowMillis, end[ where end is the start of the bucket including now
+     */
+    public synchronized int count(int windowMillis, long now) {
+
+        if (windowMillis <= 0 || windowMillis > getMaxWindow() || windowMillis % bucketMillis != 0) {
+            throw new IllegalArgumentException("window " + windowMillis + "ms must be a multiple of " + bucketMillis +
+                    "ms in ]0," + getMaxWindow() + "]");
+        }
+
+        long endBucket = now / bucketMillis;
+        int count = 0;
+
+        for (long bucket = endBucket - windowMillis / bucketMillis; bucket < endBucket; bucket++) {
+            count += getBucket(bucket);
+        }
+        return count;
+    }
+
+    private int getBucket(long bucket) {
+        if (bucket > currentBucket || bucket <= currentBucket - buckets.length) {
+            return 0;
+        }
+        return buckets[(int) (bucket % buckets.length)];
+    }
+
+    /**
+     * total number of events recorded since last clear
+     *
+     * @return
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * bucket width in milliseconds, windows are multiple of it
+     *
+     * @return
+     */
+    public int getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * largest window that can be counted
+     *
+     * @return
+     */
+    public int getMaxWindow() {
+        return bucketMillis * (buckets.length - 1);
+    }
+
+    /**
+     * reset all buckets
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = 0;
+        }
+        currentBucket = -1;
+        totalCount = 0;
+    }
+}
@@ -0,0 +1,63 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+/**
+ * Clock following a source clock unless it is driven manually (capture replay)
+ *
+ * @author Bertrand Martel
+ */
+public class VirtualClock implements IClock {
+
+    private final IClock source;
+
+    private volatile boolean driven = false;
+
+    private volatile long time = 0;
+
+    public VirtualClock(IClock source) {
+        this.source = source;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return driven ? time : source.currentTimeMillis();
+    }
+
+    /**
+     * stop following source clock and set current time
+     *
+     * @param timeMillis time in milliseconds
+     */
+    public void setTime(long timeMillis) {
+        time = timeMillis;
+        driven = true;
+    }
+
+    /**
+     * follow source clock again
+     */
+    public void release() {
+        driven = false;
+    }
+
+    public boolean isDriven() {
+        return driven;
+    }
+}
@@ -0,0 +1,209 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth;
+
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.filter.DeviceFilter;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.SimpleBluetoothEventListener;
+import com.github.akinaru.bleanalyzer.inter.IADListener;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementEngine;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementSession;
+import com.github.akinaru.bleanalyzer.utils.AddressUtils;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+import com.github.akinaru.bleanalyzer.utils.ILongHistory;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Scan frame dispatch to measurement and discovery events
+ *
+ * @author Bertrand Martel
+ */
+public class ScanDispatcherTest {
+
+    private final static int DEVICE_COUNT = 1000;
+
+    private final static int FRAME_COUNT = 200000;
+
+    private final static int ROUND_COUNT = 5;
+
+    /**
+     * clock driven by the test
+     */
+    private static class TestClock implements IClock {
+
+        private long time = 1500000000000L;
+
+        @Override
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+
+    private final TestClock clock = new TestClock();
+
+    private final List<BluetoothObject> discovered = new ArrayList<>();
+
+    private final BluetoothEventBus eventBus = new BluetoothEventBus();
+
+    private ScheduledExecutorService executor;
+
+    private MeasurementSession measurement;
+
+    private ScanDispatcher<String> dispatcher;
+
+    private String[] addresses;
+
+    private int adFrameCount;
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        measurement = new MeasurementSession(new MeasurementEngine(16384, 60000, 50, 1201), clock);
+        dispatcher = new ScanDispatcher<>(measurement, eventBus, executor, new IDeviceNameResolver<String>() {
+            @Override
+            public String getName(String device) {
+                return device;
+            }
+        });
+        eventBus.subscribe(new SimpleBluetoothEventListener() {
+            @Override
+            public void onDevicesDiscovered(List<BluetoothObject> devices) {
+                discovered.addAll(devices);
+            }
+        });
+        addresses = new String[DEVICE_COUNT];
+        for (int i = 0; i < DEVICE_COUNT; i++) {
+            addresses[i] = AddressUtils.format(0xC0FFEE000000L + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private void frames(int count, int rssi) {
+        for (int i = 0; i < count; i++) {
+            clock.time++;
+            dispatcher.onFrame(addresses[i % DEVICE_COUNT], null, "SIM", rssi, null, 0);
+        }
+    }
+
+    @Test
+    public void firstFramesArePublishedOnFlush() {
+
+        dispatcher.onFrame(addresses[0], null, "SIM", -60, null, 0);
+        dispatcher.onFrame(addresses[1], null, null, -60, null, 0);
+        dispatcher.onFrame(addresses[0], null, "SIM", -50, null, 0);
+        dispatcher.onFrame("not an address", null, "SIM", -60, null, 0);
+
+        //device without name is known but not dispatched
+        assertEquals(2, dispatcher.getKnownDeviceCount());
+        assertEquals(0, discovered.size());
+
+        dispatcher.getDiscoveryBatcher().flush();
+
+        assertEquals(1, discovered.size());
+        assertEquals(addresses[0], discovered.get(0).getDeviceAddress());
+        assertEquals(-50, discovered.get(0).getDeviceRssi());
+        assertEquals(2, measurement.obtainDeviceMeasurement(addresses[0]).getTotalCount());
+    }
+
+    @Test
+    public void nameIsResolvedFromDeviceHandle() {
+
+        dispatcher.onFrame(addresses[0], "RESOLVED", null, -60, null, 0);
+        dispatcher.getDiscoveryBatcher().flush();
+
+        assertEquals(1, discovered.size());
+        assertEquals("RESOLVED", discovered.get(0).getDeviceName());
+        assertEquals("RESOLVED", dispatcher.getScanningList().get(addresses[0]));
+    }
+
+    @Test
+    public void filterChangeRejectsKnownDevice() {
+
+        frames(DEVICE_COUNT, -60);
+        dispatcher.setDeviceFilter(new DeviceFilter.Builder().addNamePrefix("OTHER").build());
+        frames(DEVICE_COUNT, -60);
+
+        assertEquals(1, measurement.obtainDeviceMeasurement(addresses[0]).getTotalCount());
+
+        dispatcher.setDeviceFilter(new DeviceFilter.Builder().setRssiFloor(-70).build());
+        frames(DEVICE_COUNT, -80);
+        frames(DEVICE_COUNT, -60);
+
+        assertEquals(2, measurement.obtainDeviceMeasurement(addresses[0]).getTotalCount());
+    }
+
+    @Test
+    public void repeatFramesDoNotAllocate() {
+
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        dispatcher.setDeviceFilter(new DeviceFilter.Builder().setRssiFloor(-100).build());
+        dispatcher.setADListener(new IADListener() {
+            @Override
+            public void onADframeReceived(long ts, ILongHistory history, int rssi) {
+                adFrameCount++;
+            }
+        });
+        measurement.setSelectionningDevice(true);
+        measurement.setBtDevice(new BluetoothObject(addresses[0], "SIM", -1, -60));
+
+        //first frames register devices and mark them for next discovery batch
+        frames(FRAME_COUNT, -60);
+
+        long threadId = Thread.currentThread().getId();
+
+        //cost of reading allocated bytes itself
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        //best of several rounds : a round may include one-off allocations of JIT recompilation
+        long allocated = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUND_COUNT; round++) {
+            start = threadBean.getThreadAllocatedBytes(threadId);
+            frames(FRAME_COUNT, -60);
+            allocated = Math.min(allocated, threadBean.getThreadAllocatedBytes(threadId) - start - overhead);
+        }
+
+        assertEquals("bytes allocated by " + FRAME_COUNT + " repeat frames", 0, allocated);
+        assertEquals((ROUND_COUNT + 1) * FRAME_COUNT / DEVICE_COUNT, adFrameCount);
+    }
+}
@@ -0,0 +1,168 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.bluetooth.scanner;
+
+import com.github.akinaru.bleanalyzer.bluetooth.IDeviceNameResolver;
+import com.github.akinaru.bleanalyzer.bluetooth.ScanDispatcher;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothEventBus;
+import com.github.akinaru.bleanalyzer.bluetooth.events.BluetoothObject;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.IScanRecordListener;
+import com.github.akinaru.bleanalyzer.bluetooth.listener.SimpleBluetoothEventListener;
+import com.github.akinaru.bleanalyzer.inter.IDeviceMeasureListener;
+import com.github.akinaru.bleanalyzer.measurement.DeviceMeasurement;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementEngine;
+import com.github.akinaru.bleanalyzer.measurement.MeasurementSession;
+import com.github.akinaru.bleanalyzer.utils.IClock;
+import com.github.akinaru.bleanalyzer.utils.MonotonicClock;
+
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load of the whole frame pipeline by a simulated population : scan dispatch, measurement ticks and event delivery
+ * to a UI-like listener thread
+ *
+ * @author Bertrand Martel
+ */
+public class SimulatedLoadTest {
+
+    /**
+     * 2000 devices advertising every 100ms generate about 19k frames/s
+     */
+    private final static int DEVICE_COUNT = 2000;
+
+    private final static int ADVERTISING_INTERVAL = 100;
+
+    private final static int MIN_FRAME_RATE = 10000;
+
+    private final static long DURATION = 3000;
+
+    private final static int TICK_PERIOD = 100;
+
+    private volatile long frameCount;
+
+    private volatile long maxAge;
+
+    private int tickCount;
+
+    private final Set<String> discovered = new HashSet<>();
+
+    @Test
+    public void pipelineSustainsTenThousandFramesPerSecond() throws InterruptedException {
+
+        IClock clock = new MonotonicClock();
+
+        final MeasurementSession measurement = new MeasurementSession(
+                new MeasurementEngine(16384, 60000, 50, 1201), clock);
+
+        BluetoothEventBus eventBus = new BluetoothEventBus();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService uiExecutor = Executors.newSingleThreadExecutor();
+
+        final ScanDispatcher<Void> dispatcher = new ScanDispatcher<>(measurement, eventBus, executor,
+                new IDeviceNameResolver<Void>() {
+                    @Override
+                    public String getName(Void device) {
+                        return null;
+                    }
+                });
+
+        eventBus.subscribe(new SimpleBluetoothEventListener() {
+            @Override
+            public void onDevicesDiscovered(List<BluetoothObject> devices) {
+                for (int i = 0; i < devices.size(); i++) {
+                    discovered.add(devices.get(i).getDeviceAddress());
+                }
+            }
+        }, uiExecutor);
+
+        measurement.setDeviceMeasureListener(new IDeviceMeasureListener() {
+            @Override
+            public void onDeviceMeasures(Collection<DeviceMeasurement> devices) {
+                tickCount++;
+            }
+        });
+
+        SimulatedPopulation population = new SimulatedPopulation.Builder()
+                .setDeviceCount(DEVICE_COUNT)
+                .setAdvertisingInterval(ADVERTISING_INTERVAL, ADVERTISING_INTERVAL)
+                .setSeed(42)
+                .build();
+
+        SimulatedScannerBackend source = new SimulatedScannerBackend(population, clock, new IScanRecordListener() {
+            @Override
+            public void onScanFrame(String address, String name, int rssi, byte[] scanRecord, long ageMillis) {
+                dispatcher.onFrame(address, null, name, rssi, scanRecord, ageMillis);
+                frameCount++;
+                if (ageMillis > maxAge) {
+                    maxAge = ageMillis;
+                }
+            }
+        });
+
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                measurement.tick();
+            }
+        }, TICK_PERIOD, TICK_PERIOD, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        dispatcher.start();
+        source.start();
+
+        Thread.sleep(DURATION);
+
+        source.stop();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        //generator checks its state at least every 10ms
+        Thread.sleep(100);
+        dispatcher.stop();
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        uiExecutor.shutdown();
+        assertTrue(uiExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        long frames = frameCount;
+        long rate = frames * 1000 / elapsed;
+
+        assertTrue("pipeline delivered " + rate + " frames/s (late by up to " + maxAge + "ms)", rate >= MIN_FRAME_RATE);
+
+        long measured = 0;
+        for (DeviceMeasurement device : measurement.getDeviceMeasurements()) {
+            measured += device.getTotalCount();
+        }
+        assertEquals(frames, measured);
+        assertEquals(DEVICE_COUNT, discovered.size());
+        assertTrue(tickCount > 0);
+    }
+}
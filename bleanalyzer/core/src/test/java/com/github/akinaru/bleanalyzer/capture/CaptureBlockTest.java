@@ -0,0 +1,305 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.akinaru.bleanalyzer.capture.CaptureLogs.assertFramesEquals;
+import static com.github.akinaru.bleanalyzer.capture.CaptureLogs.frame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trip of frames through compressed capture blocks
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureBlockTest {
+
+    private final static long START_TIME = 1500000000000L;
+
+    private final static byte[][] PAYLOADS = {
+            {0x02, 0x01, 0x06, 0x05, 0x09, 'S', 'I', 'M', '0'},
+            {0x02, 0x01, 0x06, 0x05, 0x09, 'S', 'I', 'M', '1'},
+            {0x02, 0x01, 0x06},
+            {}
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File log() throws IOException {
+        return folder.newFile("test" + CaptureFormat.EXTENSION);
+    }
+
+    @Test
+    public void roundTripDeltaAndDictionaries() throws IOException {
+
+        Random random = new Random(42);
+        List<CaptureFrame> frames = new ArrayList<>();
+        long timestamp = 1000;
+
+        for (int i = 0; i < 1500; i++) {
+            timestamp += random.nextInt(3);
+            long address = (i % 20 == 19) ? 0xFFFFFFFFFFFFL : 0xC0FFEE000000L + random.nextInt(19);
+            //equal payloads in distinct arrays
+            byte[] payload = PAYLOADS[random.nextInt(PAYLOADS.length)].clone();
+            frames.add(frame(timestamp, address, -40 - random.nextInt(60), payload));
+        }
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME, frames);
+        assertEquals(1, blocks.size());
+
+        List<CaptureFrame> read = CaptureLogs.readAll(file);
+        assertFramesEquals(frames, read);
+
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            assertEquals(START_TIME, reader.getStartTime());
+            assertTrue(reader.nextBlock());
+            assertEquals(20, reader.getBlockAddressCount());
+            assertEquals(1500, reader.getBlockFrameCount());
+            assertEquals(frames.get(0).getTimestamp(), reader.getBlockMinTimestamp());
+            assertEquals(timestamp, reader.getBlockMaxTimestamp());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void identicalPayloadsAreDeduplicated() throws IOException {
+
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            frames.add(frame(i, 0x112233445566L, -60, PAYLOADS[i % 2].clone()));
+        }
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME, frames);
+
+        //2 payloads of 9 bytes stored once, 1000 frames of 4 bytes before compression
+        assertTrue(blocks.get(0).getEndOffset() - blocks.get(0).getOffset() < 1000);
+
+        List<CaptureFrame> read = CaptureLogs.readAll(file);
+        assertFramesEquals(frames, read);
+        assertSame(read.get(0).getPayload(), read.get(998).getPayload());
+        assertSame(read.get(1).getPayload(), read.get(999).getPayload());
+        assertNotSame(read.get(0).getPayload(), read.get(1).getPayload());
+    }
+
+    @Test
+    public void payloadsWithSameLengthAreNotMerged() throws IOException {
+
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < 512; i++) {
+            frames.add(frame(i, 1, -60, new byte[]{(byte) (i >> 8), (byte) i}));
+        }
+        byte[] maximum = new byte[CaptureFormat.MAX_PAYLOAD_SIZE];
+        new Random(1).nextBytes(maximum);
+        frames.add(frame(512, 2, -60, maximum));
+
+        File file = log();
+        CaptureLogs.write(file, START_TIME, frames);
+        assertFramesEquals(frames, CaptureLogs.readAll(file));
+    }
+
+    @Test
+    public void outOfOrderTimestampsWithinBlock() throws IOException {
+
+        long[] timestamps = {1000, 990, 1005, 1005, 980, 4979, 1001};
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            frames.add(frame(timestamps[i], i, -50, PAYLOADS[0]));
+        }
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME, frames);
+
+        assertEquals(1, blocks.size());
+        assertEquals(980, blocks.get(0).getMinTimestamp());
+        assertEquals(4979, blocks.get(0).getMaxTimestamp());
+        assertFramesEquals(frames, CaptureLogs.readAll(file));
+    }
+
+    @Test
+    public void distantTimestampsInSeparateBlocks() throws IOException {
+
+        long[] timestamps = {Long.MAX_VALUE / 2, 0, -1000000000000L, 1L << 40};
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < timestamps.length; i++) {
+            frames.add(frame(timestamps[i], i, -50, PAYLOADS[2]));
+        }
+        File file = log();
+        assertEquals(4, CaptureLogs.write(file, START_TIME, frames).size());
+        assertFramesEquals(frames, CaptureLogs.readAll(file));
+    }
+
+    @Test
+    public void blockCutAtMaximumFrameCount() throws IOException {
+
+        int count = CaptureIndex.BLOCK_MAX_FRAMES * 2 + 1;
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            frames.add(frame(5000, i % 7, -50, PAYLOADS[i % 3]));
+        }
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME, frames);
+
+        assertEquals(3, blocks.size());
+        assertEquals(CaptureIndex.BLOCK_MAX_FRAMES, blocks.get(0).getFrameCount());
+        assertEquals(CaptureIndex.BLOCK_MAX_FRAMES, blocks.get(1).getFrameCount());
+        assertEquals(1, blocks.get(2).getFrameCount());
+        assertEquals(blocks.get(0).getEndOffset(), blocks.get(1).getOffset());
+        assertEquals(file.length(), blocks.get(2).getEndOffset());
+        assertFramesEquals(frames, CaptureLogs.readAll(file));
+    }
+
+    @Test
+    public void blockCutAtMaximumSpan() throws IOException {
+
+        CaptureBlockEncoder encoder = new CaptureBlockEncoder();
+        try {
+            assertTrue(encoder.accepts(Long.MIN_VALUE));
+            encoder.add(1000, 1, -50, PAYLOADS[0], 0, PAYLOADS[0].length);
+            assertTrue(encoder.accepts(1000 + CaptureIndex.BLOCK_MAX_SPAN - 1));
+            assertFalse(encoder.accepts(1000 + CaptureIndex.BLOCK_MAX_SPAN));
+            //span is checked on both sides of out of order frames
+            assertTrue(encoder.accepts(1000 - CaptureIndex.BLOCK_MAX_SPAN + 1));
+            assertFalse(encoder.accepts(1000 - CaptureIndex.BLOCK_MAX_SPAN));
+            encoder.add(4000, 1, -50, PAYLOADS[0], 0, PAYLOADS[0].length);
+            assertFalse(encoder.accepts(1000 - 2000));
+        } finally {
+            encoder.release();
+        }
+
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (long timestamp = 0; timestamp <= 12000; timestamp += 1000) {
+            frames.add(frame(timestamp, 1, -50, PAYLOADS[1]));
+        }
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME, frames);
+
+        assertEquals(3, blocks.size());
+        assertEquals(0, blocks.get(0).getMinTimestamp());
+        assertEquals(4000, blocks.get(0).getMaxTimestamp());
+        assertEquals(5000, blocks.get(1).getMinTimestamp());
+        assertEquals(9000, blocks.get(1).getMaxTimestamp());
+        assertEquals(10000, blocks.get(2).getMinTimestamp());
+        assertEquals(12000, blocks.get(2).getMaxTimestamp());
+        assertFramesEquals(frames, CaptureLogs.readAll(file));
+    }
+
+    @Test
+    public void truncatedLastBlockIsIgnored() throws IOException {
+
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < CaptureIndex.BLOCK_MAX_FRAMES + 100; i++) {
+            frames.add(frame(i, i % 5, -50, PAYLOADS[i % 2]));
+        }
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME, frames);
+        assertEquals(2, blocks.size());
+        List<CaptureFrame> firstBlock = frames.subList(0, CaptureIndex.BLOCK_MAX_FRAMES);
+
+        //crash while writing compressed body
+        CaptureLogs.truncate(file, blocks.get(1).getEndOffset() - 1);
+        assertFramesEquals(firstBlock, CaptureLogs.readAll(file));
+
+        //crash while writing block header
+        CaptureLogs.truncate(file, blocks.get(1).getOffset() + CaptureFormat.BLOCK_HEADER_SIZE - 1);
+        assertFramesEquals(firstBlock, CaptureLogs.readAll(file));
+
+        CaptureLogs.truncate(file, CaptureFormat.HEADER_SIZE);
+        assertTrue(CaptureLogs.readAll(file).isEmpty());
+    }
+
+    @Test
+    public void invalidFileHeader() throws IOException {
+
+        File file = log();
+        CaptureLogs.write(file, START_TIME, Arrays.asList(frame(0, 1, -50, PAYLOADS[0])));
+
+        CaptureLogs.overwrite(file, 0, new byte[]{'B', 'L', 'E', 'X'});
+        assertReadFails(file, "not a capture log");
+
+        CaptureLogs.write(file, START_TIME, Arrays.asList(frame(0, 1, -50, PAYLOADS[0])));
+        CaptureLogs.overwrite(file, 4, new byte[]{0, 1});
+        assertReadFails(file, "unsupported capture version 1");
+
+        CaptureLogs.truncate(file, CaptureFormat.HEADER_SIZE - 1);
+        assertReadFails(file, "not a capture log");
+    }
+
+    @Test
+    public void corruptedBlockHeader() throws IOException {
+
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME,
+                Arrays.asList(frame(0, 1, -50, PAYLOADS[0])));
+
+        ByteBuffer negativeLength = ByteBuffer.allocate(4).putInt(-1);
+        CaptureLogs.overwrite(file, blocks.get(0).getOffset(), negativeLength.array());
+        assertReadFails(file, "corrupted block at " + CaptureFormat.HEADER_SIZE);
+
+        //raw length not matching compressed body
+        CaptureLogs.write(file, START_TIME, Arrays.asList(frame(0, 1, -50, PAYLOADS[0])));
+        CaptureLogs.overwrite(file, blocks.get(0).getOffset() + 4, ByteBuffer.allocate(4).putInt(1000).array());
+        assertReadFails(file, "corrupted block at " + CaptureFormat.HEADER_SIZE);
+
+        //frame count larger than encoded frames
+        CaptureLogs.write(file, START_TIME, Arrays.asList(frame(0, 1, -50, PAYLOADS[0])));
+        CaptureLogs.overwrite(file, blocks.get(0).getOffset() + 8, ByteBuffer.allocate(4).putInt(2).array());
+        assertReadFails(file, "corrupted block at " + CaptureFormat.HEADER_SIZE);
+    }
+
+    @Test
+    public void corruptedBlockBody() throws IOException {
+
+        File file = log();
+        List<CaptureIndex.Block> blocks = CaptureLogs.write(file, START_TIME,
+                Arrays.asList(frame(0, 1, -50, PAYLOADS[0]), frame(1, 2, -50, PAYLOADS[1])));
+
+        byte[] garbage = new byte[(int) (blocks.get(0).getEndOffset() - blocks.get(0).getOffset()) -
+                CaptureFormat.BLOCK_HEADER_SIZE];
+        Arrays.fill(garbage, (byte) 0xFF);
+        CaptureLogs.overwrite(file, blocks.get(0).getOffset() + CaptureFormat.BLOCK_HEADER_SIZE, garbage);
+        assertReadFails(file, "corrupted block at " + CaptureFormat.HEADER_SIZE);
+    }
+
+    private static void assertReadFails(File file, String message) {
+        try {
+            CaptureLogs.readAll(file);
+            fail("reading " + file.getName() + " should fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith(message));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Varint and zigzag encoding of capture blocks
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureFormatTest {
+
+    private static byte[] varint(long value) {
+        byte[] buffer = new byte[10];
+        return Arrays.copyOf(buffer, CaptureFormat.writeVarint(buffer, 0, value));
+    }
+
+    /**
+     * reference decoder of unsigned varints
+     */
+    private static long readVarint(byte[] buffer) {
+        long value = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            value |= (long) (buffer[i] & 0x7F) << (7 * i);
+        }
+        return value;
+    }
+
+    @Test
+    public void varintEncoding() {
+        assertArrayEquals(new byte[]{0}, varint(0));
+        assertArrayEquals(new byte[]{0x7F}, varint(127));
+        assertArrayEquals(new byte[]{(byte) 0x80, 0x01}, varint(128));
+        assertArrayEquals(new byte[]{(byte) 0xAC, 0x02}, varint(300));
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xFF, 0x03}, varint(0xFFFF));
+        //negative values are treated as unsigned and use the 10 bytes
+        assertEquals(10, varint(-1).length);
+        assertEquals(0x01, varint(-1)[9]);
+    }
+
+    @Test
+    public void varintRoundTrip() {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 48, Long.MAX_VALUE, Long.MIN_VALUE, -1};
+        for (long value : values) {
+            assertEquals(value, readVarint(varint(value)));
+        }
+    }
+
+    @Test
+    public void zigzagMapsSmallMagnitudesToSmallValues() {
+        assertEquals(0, CaptureFormat.zigzag(0));
+        assertEquals(1, CaptureFormat.zigzag(-1));
+        assertEquals(2, CaptureFormat.zigzag(1));
+        assertEquals(3, CaptureFormat.zigzag(-2));
+        assertEquals(-1, CaptureFormat.zigzag(Long.MIN_VALUE));
+        assertEquals(-2, CaptureFormat.zigzag(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void zigzagRoundTrip() {
+        long[] values = {0, 1, -1, 63, -64, 1000, -5000, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            assertEquals(value, CaptureFormat.unzigzag(CaptureFormat.zigzag(value)));
+        }
+    }
+}
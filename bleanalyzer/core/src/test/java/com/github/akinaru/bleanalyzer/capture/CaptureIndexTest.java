@@ -0,0 +1,252 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.akinaru.bleanalyzer.capture.CaptureLogs.assertFramesEquals;
+import static com.github.akinaru.bleanalyzer.capture.CaptureLogs.frame;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Capture index recovery and indexed queries
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureIndexTest {
+
+    private final static long START_TIME = 1500000000000L;
+
+    private final static byte[] PAYLOAD = {0x02, 0x01, 0x06, 0x04, 0x09, 'D', 'E', 'V'};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * frames of devices 0 to addressCount - 1 every 10ms
+     */
+    private static List<CaptureFrame> frames(int count, int addressCount, long seed) {
+        Random random = new Random(seed);
+        List<CaptureFrame> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            frames.add(frame(i * 10L, 0xA00000000000L + random.nextInt(addressCount), -40 - random.nextInt(50),
+                    PAYLOAD));
+        }
+        return frames;
+    }
+
+    private File log(List<CaptureFrame> frames) throws IOException {
+        File file = folder.newFile("test" + CaptureFormat.EXTENSION);
+        CaptureLogs.write(file, START_TIME, frames);
+        return file;
+    }
+
+    @Test
+    public void missingIndexIsRebuilt() throws IOException {
+
+        File file = folder.newFile("test" + CaptureFormat.EXTENSION);
+        List<CaptureIndex.Block> written = CaptureLogs.write(file, START_TIME, frames(10000, 50, 1));
+        File indexFile = CaptureIndex.indexFile(file);
+        assertFalse(indexFile.exists());
+
+        CaptureIndex index = CaptureIndex.load(file);
+        assertBlocksEquals(written, index.getBlocks());
+        assertEquals(10000, index.getFrameCount());
+        assertTrue(indexFile.exists());
+        assertEquals(CaptureIndex.HEADER_SIZE + written.size() * CaptureIndex.BLOCK_ENTRY_SIZE, indexFile.length());
+
+        //index file is used as is once written
+        assertBlocksEquals(written, CaptureIndex.read(indexFile));
+        assertBlocksEquals(written, CaptureIndex.load(file).getBlocks());
+    }
+
+    @Test
+    public void tornTrailingEntryIsIgnored() throws IOException {
+
+        File file = log(frames(10000, 50, 2));
+        List<CaptureIndex.Block> expected = CaptureIndex.load(file).getBlocks();
+        File indexFile = CaptureIndex.indexFile(file);
+
+        //crash while appending an entry
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try {
+            raf.seek(raf.length());
+            raf.write(new byte[CaptureIndex.BLOCK_ENTRY_SIZE / 2]);
+        } finally {
+            raf.close();
+        }
+        assertBlocksEquals(expected, CaptureIndex.read(indexFile));
+        assertBlocksEquals(expected, CaptureIndex.load(file).getBlocks());
+    }
+
+    @Test
+    public void indexLongerThanLogIsRebuilt() throws IOException {
+
+        List<CaptureFrame> frames = frames(10000, 50, 3);
+        File file = folder.newFile("test" + CaptureFormat.EXTENSION);
+        List<CaptureIndex.Block> written = CaptureLogs.write(file, START_TIME, frames);
+        assertTrue(written.size() > 2);
+        CaptureIndex.load(file);
+
+        //log replaced by a shorter one (first blocks only) while its index was kept
+        CaptureLogs.truncate(file, written.get(1).getEndOffset());
+
+        CaptureIndex index = CaptureIndex.load(file);
+        assertBlocksEquals(written.subList(0, 2), index.getBlocks());
+        assertBlocksEquals(written.subList(0, 2), CaptureIndex.read(CaptureIndex.indexFile(file)));
+    }
+
+    @Test
+    public void indexShorterThanLogIsCompleted() throws IOException {
+
+        List<CaptureFrame> frames = frames(10000, 50, 4);
+        File file = folder.newFile("test" + CaptureFormat.EXTENSION);
+        List<CaptureIndex.Block> written = new ArrayList<>(CaptureLogs.write(file, START_TIME, frames.subList(0, 6000)));
+        assertEquals(written.size(), CaptureIndex.load(file).getBlocks().size());
+
+        //crash after log blocks were written but before their index entries
+        written.addAll(CaptureLogs.append(file, frames.subList(6000, 10000)));
+
+        CaptureIndex index = CaptureIndex.load(file);
+        assertBlocksEquals(written, index.getBlocks());
+        assertEquals(10000, index.getFrameCount());
+        assertBlocksEquals(written, CaptureIndex.read(CaptureIndex.indexFile(file)));
+    }
+
+    @Test
+    public void invalidIndexIsRebuilt() throws IOException {
+
+        File file = log(frames(5000, 50, 5));
+        List<CaptureIndex.Block> expected = CaptureIndex.load(file).getBlocks();
+
+        CaptureLogs.overwrite(CaptureIndex.indexFile(file), 0, new byte[]{'X'});
+        assertBlocksEquals(expected, CaptureIndex.load(file).getBlocks());
+
+        assertBlocksEquals(expected, CaptureIndex.rebuild(file).getBlocks());
+        assertBlocksEquals(expected, CaptureIndex.build(file).getBlocks());
+    }
+
+    @Test
+    public void queryMatchesBruteForce() throws IOException {
+
+        List<CaptureFrame> frames = frames(50000, 300, 6);
+        File file = log(frames);
+        CaptureIndex index = CaptureIndex.load(file);
+
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20; i++) {
+            long from = random.nextInt(500000);
+            long to = from + random.nextInt(100000);
+            long address = (i % 4 == 0) ? -1 : 0xA00000000000L + random.nextInt(300);
+            assertQuery(index, file, frames, from, to, address);
+        }
+        assertQuery(index, file, frames, Long.MIN_VALUE, Long.MAX_VALUE, -1);
+        assertQuery(index, file, frames, 600000, 700000, -1);
+    }
+
+    @Test
+    public void bloomFalsePositiveBlockIsRejected() throws IOException {
+
+        //many addresses per block so that bloom filters have false positives
+        List<CaptureFrame> frames = frames(20000, 5000, 8);
+        File file = log(frames);
+        List<CaptureIndex.Block> blocks = CaptureIndex.build(file).getBlocks();
+
+        CaptureIndex.Block falsePositive = blocks.get(0);
+        long absent = -1;
+        for (long candidate = 0xB00000000000L; absent == -1; candidate++) {
+            if (falsePositive.getAddresses().mightContain(candidate)) {
+                absent = candidate;
+            }
+        }
+
+        //device appearing only in a new block at the end of the log
+        List<CaptureFrame> all = new ArrayList<>(frames);
+        List<CaptureFrame> tail = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tail.add(frame(300000 + i, absent, -50, PAYLOAD));
+        }
+        all.addAll(tail);
+        CaptureLogs.append(file, tail);
+        CaptureIndex index = CaptureIndex.load(file);
+
+        List<CaptureIndex.Block> candidates = index.findBlocks(Long.MIN_VALUE, Long.MAX_VALUE, absent);
+        assertEquals(falsePositive.getOffset(), candidates.get(0).getOffset());
+
+        CaptureQuery query = assertQuery(index, file, all, Long.MIN_VALUE, Long.MAX_VALUE, absent);
+        assertEquals(candidates.size(), query.getBlocksRead());
+    }
+
+    /**
+     * check query results against a scan of all frames
+     */
+    private static CaptureQuery assertQuery(CaptureIndex index, File file, List<CaptureFrame> frames, long from,
+                                            long to, long address) throws IOException {
+
+        List<CaptureFrame> expected = new ArrayList<>();
+        for (int i = 0; i < frames.size(); i++) {
+            CaptureFrame frame = frames.get(i);
+            if (frame.getTimestamp() >= from && frame.getTimestamp() <= to &&
+                    (address == -1 || frame.getAddress48() == address)) {
+                expected.add(frame);
+            }
+        }
+
+        List<CaptureFrame> actual = new ArrayList<>();
+        CaptureQuery query = index.query(file, from, to, address);
+        try {
+            CaptureFrame frame = new CaptureFrame();
+            while (query.next(frame)) {
+                actual.add(frame);
+                frame = new CaptureFrame();
+            }
+        } finally {
+            query.close();
+        }
+        assertFramesEquals(expected, actual);
+        return query;
+    }
+
+    private static void assertBlocksEquals(List<CaptureIndex.Block> expected, List<CaptureIndex.Block> actual) {
+        assertEquals("block count", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            CaptureIndex.Block lhs = expected.get(i);
+            CaptureIndex.Block rhs = actual.get(i);
+            assertEquals("offset of block " + i, lhs.getOffset(), rhs.getOffset());
+            assertEquals("end offset of block " + i, lhs.getEndOffset(), rhs.getEndOffset());
+            assertEquals("min timestamp of block " + i, lhs.getMinTimestamp(), rhs.getMinTimestamp());
+            assertEquals("max timestamp of block " + i, lhs.getMaxTimestamp(), rhs.getMaxTimestamp());
+            assertEquals("frame count of block " + i, lhs.getFrameCount(), rhs.getFrameCount());
+            assertArrayEquals("addresses of block " + i, lhs.getAddresses().getWords(), rhs.getAddresses().getWords());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Capture logs written with the block encoder, cutting blocks like CaptureWriter but without its writer thread so
+ * that block boundaries are deterministic
+ *
+ * @author Bertrand Martel
+ */
+final class CaptureLogs {
+
+    private CaptureLogs() {
+    }
+
+    static CaptureFrame frame(long timestamp, long address48, int rssi, byte[] payload) {
+        CaptureFrame frame = new CaptureFrame();
+        frame.set(timestamp, address48, rssi, payload);
+        return frame;
+    }
+
+    /**
+     * create a capture log
+     *
+     * @return blocks written
+     */
+    static List<CaptureIndex.Block> write(File file, long startTime, List<CaptureFrame> frames) throws IOException {
+
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(CaptureFormat.HEADER_SIZE);
+            header.putInt(CaptureFormat.MAGIC);
+            header.putShort(CaptureFormat.VERSION);
+            header.putShort((short) 0);
+            header.putLong(startTime);
+            header.flip();
+            writeFully(channel, header);
+            return writeBlocks(channel, frames);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * append blocks at the end of an existing capture log (capture continued after its index was written)
+     *
+     * @return blocks written
+     */
+    static List<CaptureIndex.Block> append(File file, List<CaptureFrame> frames) throws IOException {
+
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        try {
+            channel.position(channel.size());
+            return writeBlocks(channel, frames);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static List<CaptureIndex.Block> writeBlocks(FileChannel channel, List<CaptureFrame> frames)
+            throws IOException {
+
+        List<CaptureIndex.Block> blocks = new ArrayList<>();
+        CaptureBlockEncoder encoder = new CaptureBlockEncoder();
+
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                CaptureFrame frame = frames.get(i);
+                if (!encoder.accepts(frame.getTimestamp())) {
+                    blocks.add(writeBlock(channel, encoder));
+                }
+                byte[] payload = frame.getPayload();
+                encoder.add(frame.getTimestamp(), frame.getAddress48(), frame.getRssi(), payload, 0, payload.length);
+            }
+            if (!encoder.isEmpty()) {
+                blocks.add(writeBlock(channel, encoder));
+            }
+        } finally {
+            encoder.release();
+        }
+        return blocks;
+    }
+
+    private static CaptureIndex.Block writeBlock(FileChannel channel, CaptureBlockEncoder encoder) throws IOException {
+        CaptureIndex.Block block = encoder.encode(channel.position());
+        writeFully(channel, encoder.getOutput());
+        return block;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * read all frames of a capture log
+     */
+    static List<CaptureFrame> readAll(File file) throws IOException {
+
+        List<CaptureFrame> frames = new ArrayList<>();
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            CaptureFrame frame = new CaptureFrame();
+            while (reader.next(frame)) {
+                frames.add(frame);
+                frame = new CaptureFrame();
+            }
+        } finally {
+            reader.close();
+        }
+        return frames;
+    }
+
+    /**
+     * truncate or overwrite part of a file
+     */
+    static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    static void overwrite(File file, long offset, byte[] data) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            raf.write(data);
+        } finally {
+            raf.close();
+        }
+    }
+
+    static void assertFramesEquals(List<CaptureFrame> expected, List<CaptureFrame> actual) {
+        assertEquals("frame count", expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertFrameEquals("frame " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    static void assertFrameEquals(String message, CaptureFrame expected, CaptureFrame actual) {
+        assertEquals(message + " timestamp", expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(message + " address", expected.getAddress48(), actual.getAddress48());
+        assertEquals(message + " rssi", expected.getRssi(), actual.getRssi());
+        assertArrayEquals(message + " payload", expected.getPayload(), actual.getPayload());
+    }
+}
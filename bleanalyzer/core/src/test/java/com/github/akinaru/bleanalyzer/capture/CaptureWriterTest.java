@@ -0,0 +1,191 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.capture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.akinaru.bleanalyzer.capture.CaptureLogs.assertFramesEquals;
+import static com.github.akinaru.bleanalyzer.capture.CaptureLogs.frame;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Double buffered capture writer
+ *
+ * @author Bertrand Martel
+ */
+public class CaptureWriterTest {
+
+    private final static long START_TIME = 1500000000000L;
+
+    /**
+     * smallest buffer accepted by the writer, filled quickly by back to back appends
+     */
+    private final static int MIN_BUFFER_SIZE = 17 + CaptureFormat.MAX_PAYLOAD_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] payload(int i) {
+        return new byte[]{0x02, 0x01, 0x06, 0x05, (byte) 0xFF, (byte) (i >> 16), (byte) (i >> 8), (byte) i};
+    }
+
+    private File log() throws IOException {
+        return folder.newFile("test" + CaptureFormat.EXTENSION);
+    }
+
+    @Test
+    public void closePersistsEveryAcceptedFrame() throws IOException {
+
+        File file = log();
+        CaptureWriter writer = new CaptureWriter(file, START_TIME);
+        List<CaptureFrame> accepted = new ArrayList<>();
+
+        for (int i = 0; i < 20000; i++) {
+            CaptureFrame frame = frame(i, 0x010203040500L + i % 32, -30 - i % 70, payload(i % 100));
+            if (writer.append(frame.getTimestamp(), frame.getAddress48(), frame.getRssi(), frame.getPayload())) {
+                accepted.add(frame);
+            }
+        }
+        writer.close();
+
+        CaptureReader reader = new CaptureReader(file);
+        try {
+            assertEquals(START_TIME, reader.getStartTime());
+        } finally {
+            reader.close();
+        }
+        assertFramesEquals(accepted, CaptureLogs.readAll(file));
+        assertEquals(accepted.size() + writer.getDroppedCount(), writer.getFrameCount());
+    }
+
+    @Test
+    public void backToBackAppendsAccountForEveryFrame() throws IOException {
+
+        File file = log();
+        CaptureWriter writer = new CaptureWriter(file, START_TIME, MIN_BUFFER_SIZE);
+        int count = 300000;
+        int accepted = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (writer.append(i, 0xAABBCCDDEE00L + i % 8, -60, payload(i))) {
+                accepted++;
+            }
+        }
+        writer.close();
+
+        List<CaptureFrame> read = CaptureLogs.readAll(file);
+
+        assertEquals(count, writer.getFrameCount());
+        assertEquals(read.size() + writer.getDroppedCount(), writer.getFrameCount());
+        assertEquals(accepted, read.size());
+
+        //frames which were not dropped are written once and in order
+        long previous = -1;
+        for (int i = 0; i < read.size(); i++) {
+            long timestamp = read.get(i).getTimestamp();
+            assertTrue(timestamp > previous);
+            assertEquals(timestamp & 0xFF, read.get(i).getPayload()[7] & 0xFF);
+            previous = timestamp;
+        }
+    }
+
+    @Test
+    public void appendAfterCloseIsRejected() throws IOException {
+
+        File file = log();
+        CaptureWriter writer = new CaptureWriter(file, START_TIME);
+        assertTrue(writer.append(0, 1, -50, payload(0)));
+        writer.close();
+
+        assertFalse(writer.append(1, 1, -50, payload(1)));
+        assertEquals(1, writer.getFrameCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(1, CaptureLogs.readAll(file).size());
+    }
+
+    @Test
+    public void nullAndOversizedPayloads() throws IOException {
+
+        File file = log();
+        CaptureWriter writer = new CaptureWriter(file, START_TIME);
+        byte[] oversized = new byte[CaptureFormat.MAX_PAYLOAD_SIZE + 10];
+        assertTrue(writer.append(0, 1, -50, null));
+        assertTrue(writer.append(1, 1, -50, oversized));
+        writer.close();
+
+        List<CaptureFrame> read = CaptureLogs.readAll(file);
+        assertEquals(0, read.get(0).getPayload().length);
+        assertEquals(CaptureFormat.MAX_PAYLOAD_SIZE, read.get(1).getPayload().length);
+    }
+
+    @Test
+    public void partialBlockIsWrittenAtSync() throws Exception {
+
+        File file = log();
+        CaptureWriter writer = new CaptureWriter(file, START_TIME);
+        try {
+            List<CaptureFrame> frames = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                frames.add(frame(i, 0x665544332211L, -50, payload(i)));
+                assertTrue(writer.append(i, 0x665544332211L, -50, payload(i)));
+            }
+            //block is far from full : it is only written by the periodic sync
+            long deadline = System.currentTimeMillis() + 10000;
+            List<CaptureFrame> read = CaptureLogs.readAll(file);
+            while (read.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+                read = CaptureLogs.readAll(file);
+            }
+            assertFramesEquals(frames, read);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void indexIsWrittenAlongsideLog() throws IOException {
+
+        File file = log();
+        CaptureWriter writer = new CaptureWriter(file, START_TIME);
+        for (int i = 0; i < 10000; i++) {
+            //several blocks cut on time span
+            writer.append(i * 2L, 0x0A0B0C0D0E00L + i % 16, -50, payload(i));
+        }
+        writer.close();
+
+        List<CaptureIndex.Block> expected = CaptureIndex.build(file).getBlocks();
+        List<CaptureIndex.Block> written = CaptureIndex.read(CaptureIndex.indexFile(file));
+        assertTrue(expected.size() > 1);
+        assertEquals(expected.size(), written.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getOffset(), written.get(i).getOffset());
+            assertEquals(expected.get(i).getFrameCount(), written.get(i).getFrameCount());
+        }
+        assertEquals(writer.getFrameCount() - writer.getDroppedCount(), CaptureIndex.load(file).getFrameCount());
+    }
+}
@@ -0,0 +1,94 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sorted map with access by position
+ *
+ * @author Bertrand Martel
+ */
+public class IndexedTreeMapTest {
+
+    @Test
+    public void positionsFollowKeyOrder() {
+
+        IndexedTreeMap<String, Integer> map = new IndexedTreeMap<>();
+
+        assertNull(map.put("c", 3));
+        assertNull(map.put("a", 1));
+        assertNull(map.put("b", 2));
+        assertEquals(Integer.valueOf(2), map.put("b", 20));
+
+        assertEquals(3, map.size());
+        assertEquals(Integer.valueOf(1), map.getAt(0));
+        assertEquals(Integer.valueOf(20), map.getAt(1));
+        assertEquals(2, map.indexOf("c"));
+        assertEquals(-1, map.indexOf("d"));
+
+        assertEquals(Integer.valueOf(1), map.remove("a"));
+        assertNull(map.remove("a"));
+        assertEquals(0, map.indexOf("b"));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getAtRejectsPositionPastEnd() {
+        IndexedTreeMap<String, Integer> map = new IndexedTreeMap<>();
+        map.put("a", 1);
+        map.getAt(1);
+    }
+
+    @Test
+    public void randomOperationsMatchTreeMap() {
+
+        IndexedTreeMap<Integer, Integer> map = new IndexedTreeMap<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+
+            Integer key = random.nextInt(500);
+
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.containsKey(key) ? expected.headMap(key).size() : -1, map.indexOf(key));
+        }
+
+        ArrayList<Integer> values = new ArrayList<>(expected.values());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(values.get(i), map.getAt(i));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Bounded ring buffer of timestamps
+ *
+ * @author Bertrand Martel
+ */
+public class LongRingBufferTest {
+
+    private static long[] content(ILongHistory history) {
+        long[] values = new long[history.size()];
+        assertEquals(values.length, history.copyTo(values));
+        return values;
+    }
+
+    @Test
+    public void growsUpToMaxCapacity() {
+
+        LongRingBuffer buffer = new LongRingBuffer(2, 8, LongRingBuffer.RETENTION_UNLIMITED);
+
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i * 10);
+        }
+        assertArrayEquals(new long[]{10, 20, 30, 40, 50}, content(buffer));
+        assertEquals(50, buffer.getLast());
+        assertEquals(10, buffer.getFirstTimestamp());
+    }
+
+    @Test
+    public void oldestEntriesAreOverwrittenWhenFull() {
+
+        LongRingBuffer buffer = new LongRingBuffer(4, 4, LongRingBuffer.RETENTION_UNLIMITED);
+
+        for (int i = 1; i <= 10; i++) {
+            buffer.add(i);
+        }
+        assertArrayEquals(new long[]{7, 8, 9, 10}, content(buffer));
+        assertEquals(7, buffer.get(0));
+        assertEquals(10, buffer.getTotalCount());
+        //first timestamp survives eviction
+        assertEquals(1, buffer.getFirstTimestamp());
+    }
+
+    @Test
+    public void entriesOutsideRetentionAreEvicted() {
+
+        LongRingBuffer buffer = new LongRingBuffer(4, 16, 100);
+
+        buffer.add(0);
+        buffer.add(50);
+        buffer.add(120);
+        buffer.add(200);
+
+        assertArrayEquals(new long[]{120, 200}, content(buffer));
+        assertEquals(4, buffer.getTotalCount());
+
+        buffer.setRetention(LongRingBuffer.RETENTION_UNLIMITED);
+        buffer.add(1000);
+        assertArrayEquals(new long[]{120, 200, 1000}, content(buffer));
+    }
+
+    @Test
+    public void countAfterAcrossWrapAround() {
+
+        LongRingBuffer buffer = new LongRingBuffer(4, 4, LongRingBuffer.RETENTION_UNLIMITED);
+
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(i * 10);
+        }
+        assertEquals(2, buffer.countAfter(40));
+        assertEquals(4, buffer.countAfter(0));
+        assertEquals(0, buffer.countAfter(60));
+    }
+
+    @Test
+    public void copyToTruncatesToDestination() {
+
+        LongRingBuffer buffer = new LongRingBuffer(4, 4, LongRingBuffer.RETENTION_UNLIMITED);
+
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(i);
+        }
+        long[] dest = new long[3];
+        assertEquals(3, buffer.copyTo(dest));
+        assertArrayEquals(new long[]{3, 4, 5}, dest);
+    }
+
+    @Test
+    public void clearResetsCounters() {
+
+        LongRingBuffer buffer = new LongRingBuffer(2, 4, LongRingBuffer.RETENTION_UNLIMITED);
+        buffer.add(5);
+        buffer.clear();
+
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getTotalCount());
+
+        buffer.add(7);
+        assertEquals(7, buffer.getFirstTimestamp());
+        assertEquals(1, buffer.asReadOnly().size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getLastOfEmptyBufferFails() {
+        new LongRingBuffer(2, 4, LongRingBuffer.RETENTION_UNLIMITED).getLast();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacityIsRejected() {
+        new LongRingBuffer(8, 4, LongRingBuffer.RETENTION_UNLIMITED);
+    }
+}
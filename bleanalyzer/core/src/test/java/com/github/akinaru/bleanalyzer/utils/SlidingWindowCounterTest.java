@@ -0,0 +1,126 @@
+/****************************************************************************
+ * This file is part of Bluetooth LE Analyzer.                              *
+ * <p/>                                                                     *
+ * Copyright (C) 2017  Bertrand Martel                                      *
+ * <p/>                                                                     *
+ * Foobar is free software: you can redistribute it and/or modify           *
+ * it under the terms of the GNU General Public License as published by     *
+ * the Free Software Foundation, either version 3 of the License, or        *
+ * (at your option) any later version.                                      *
+ * <p/>                                                                     *
+ * Foobar is distributed in the hope that it will be useful,                *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of           *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the            *
+ * GNU General Public License for more details.                             *
+ * <p/>                                                                     *
+ * You should have received a copy of the GNU General Public License        *
+ * along with Foobar.  If not, see <http://www.gnu.org/licenses/>.          *
+ */
+package com.github.akinaru.bleanalyzer.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Bucketed windowed counter
+ *
+ * @author Bertrand Martel
+ */
+public class SlidingWindowCounterTest {
+
+    private final static int BUCKET_MILLIS = 50;
+
+    private final static int BUCKET_COUNT = 21;
+
+    private final static int MAX_WINDOW = BUCKET_MILLIS * (BUCKET_COUNT - 1);
+
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(BUCKET_MILLIS, BUCKET_COUNT);
+
+    @Test
+    public void countsCompleteBucketsExactly() {
+
+        counter.add(1000);
+        counter.add(1049);
+        counter.add(1050);
+        counter.add(1099);
+        counter.add(1100);
+
+        //bucket of now is not complete yet
+        assertEquals(0, counter.count(50, 1049));
+        assertEquals(2, counter.count(50, 1050));
+        assertEquals(2, counter.count(50, 1149));
+        assertEquals(4, counter.count(100, 1149));
+        assertEquals(5, counter.count(150, 1150));
+        assertEquals(5, counter.count(MAX_WINDOW, 1150));
+        assertEquals(5, counter.getTotalCount());
+    }
+
+    @Test
+    public void bucketsAreReusedOnWrapAround() {
+
+        //one event per bucket over several spans
+        for (int i = 0; i < BUCKET_COUNT * 3; i++) {
+            counter.add(i * BUCKET_MILLIS + 10);
+        }
+        long now = BUCKET_COUNT * 3 * BUCKET_MILLIS;
+
+        assertEquals(1, counter.count(BUCKET_MILLIS, now));
+        assertEquals(10, counter.count(10 * BUCKET_MILLIS, now));
+        assertEquals(BUCKET_COUNT - 1, counter.count(MAX_WINDOW, now));
+    }
+
+    @Test
+    public void gapLongerThanSpanResetsBuckets() {
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counter.add(i * BUCKET_MILLIS);
+        }
+        long ts = BUCKET_COUNT * BUCKET_MILLIS + 5 * MAX_WINDOW;
+        counter.add(ts);
+
+        assertEquals(1, counter.count(MAX_WINDOW, ts + BUCKET_MILLIS));
+        //windows ending after the last event only see elapsed buckets
+        assertEquals(0, counter.count(MAX_WINDOW, ts + 2 * MAX_WINDOW));
+        assertEquals(BUCKET_COUNT + 1, counter.getTotalCount());
+    }
+
+    @Test
+    public void lateEventsAreCountedInTheirBucket() {
+
+        counter.add(1000);
+        counter.add(2000);
+        //late but still covered by buckets
+        counter.add(1010);
+        //older than the span of buckets
+        counter.add(2000 - BUCKET_COUNT * BUCKET_MILLIS);
+
+        assertEquals(2, counter.count(BUCKET_MILLIS, 1050));
+        assertEquals(2, counter.count(MAX_WINDOW, 2000));
+        assertEquals(1, counter.count(BUCKET_MILLIS, 2050));
+        assertEquals(4, counter.getTotalCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowLargerThanSpanIsRejected() {
+        counter.count(MAX_WINDOW + BUCKET_MILLIS, 1000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void windowNotMultipleOfBucketIsRejected() {
+        counter.count(BUCKET_MILLIS + 1, 1000);
+    }
+
+    @Test
+    public void clearResetsCounts() {
+
+        counter.add(1000);
+        counter.clear();
+
+        assertEquals(0, counter.count(MAX_WINDOW, 1050));
+        assertEquals(0, counter.getTotalCount());
+
+        counter.add(10);
+        assertEquals(1, counter.count(BUCKET_MILLIS, 50));
+    }
+}